@@ -0,0 +1,494 @@
+#!/bin/bash
+
+# Wallet API Benchmark Script
+# Fires concurrent requests at a running wallet API and reports throughput and latency percentiles.
+#
+# Usage: ./benchmark.sh <scenario> [label]
+#
+# Scenarios:
+#   contention  Concurrent charges against a small set of hot accounts. Start the API once per
+#               strategy and compare the reports, e.g.
+#                 java -jar target/wallet-api-1.0.0.jar --wallet.concurrency.strategy=PESSIMISTIC
+#                 java -jar target/wallet-api-1.0.0.jar --wallet.concurrency.strategy=ATOMIC_UPDATE
+#   skew        Runs contention at increasing key skew (HOT_PERCENT of charges on one account) and
+#               prints one summary row per level together with the optimistic conflict counters.
+#               Run it against PESSIMISTIC and OPTIMISTIC servers to find the crossover point.
+#   admission   Measures the admission layer: the same charge load with the layer disabled and with
+#               limits too high to reject anything, then one hot user under the configured limits.
+#               The contention and skew scenarios should be run with --wallet.admission.enabled=false.
+#   reads       Many concurrent balance reads of ACCOUNTS accounts (default 1), reporting how many
+#               reads were served by joining an identical in-flight query.
+#   projections Single-account reads and HISTORY_LIMIT-row history pages of an account holding
+#               HISTORY_ROWS transactions, reporting latency and the heap allocated per request.
+#               Run it with --wallet.admission.enabled=false.
+#   subscribers Opens SUBSCRIBERS idle balance event streams spread over ACCOUNTS accounts and
+#               reports live threads and heap with and without them, then runs a charge load while
+#               they are connected. Raise the open-file limit (ulimit -n) for large values.
+#   import      Creates REQUESTS accounts one POST at a time, then bulk-imports IMPORT_ROWS accounts
+#               with opening balances through the admin import endpoint and prints its report.
+#               Run it with --wallet.admission.enabled=false.
+#   billing     Imports ACCOUNTS accounts, submits a charge run of BILLING_ROWS rows spread over them
+#               (about 1% of them charged more than the account holds) and prints its progress
+#               until it finishes. Kill and restart the API mid-run to watch it resume.
+#   replica     Balance reads served by a follower at REPLICA_URL, then 50 writes on the primary each
+#               followed by a read-your-writes read on the follower (X-Wallet-Min-Version), e.g.
+#                 java -jar target/wallet-api-1.0.0.jar --server.port=8090 --wallet.replica.enabled=true \
+#                   --spring.datasource.url=jdbc:sqlite:wallet-replica.db
+#   audit       Charge load over ACCOUNTS accounts (default 64), then the audit events written and
+#               dropped meanwhile and the backlog left. Compare a server started with
+#               --wallet.audit.enabled=false against the defaults to see the per-request overhead,
+#               and one with a tiny --wallet.audit.buffer-size to see the DROP and BLOCK policies.
+#               Run it with --wallet.admission.enabled=false.
+#   cluster     Charge load spread evenly over the nodes in CLUSTER_URLS; each node forwards charges
+#               for accounts it does not own. Run it against 1, 2 and 3 nodes to see aggregate
+#               throughput per node count, e.g. for node n in 1..3 (members file lists n1..nN):
+#                 java -jar target/wallet-api-1.0.0.jar --server.port=808$n --wallet.cluster.enabled=true \
+#                   --wallet.cluster.node-id=n$n --wallet.cluster.members-file=cluster.members \
+#                   --spring.datasource.url=jdbc:sqlite:wallet-n$n.db --wallet.admission.enabled=false
+#   backup      Imports IMPORT_ROWS accounts to grow the database, runs a charge load over ACCOUNTS
+#               accounts (default 64), then the same load while backups run back to back, and
+#               prints both latency reports and the backups taken. Tune the cost with
+#               --wallet.backup.pages-per-step and --wallet.backup.step-pause. Run it with
+#               --wallet.admission.enabled=false.
+#
+# Scenarios that charge the same accounts over and over exceed the default velocity limits
+# (50 charges per account per 24h) within seconds; run them with --wallet.velocity.enabled=false.
+#
+# Tunables (environment variables):
+#   BASE_URL     API base URL               (default http://localhost:8080/api/wallet)
+#   REQUESTS     number of measured requests (default 2000)
+#   CONCURRENCY  parallel clients            (default 32)
+#   ACCOUNTS     number of accounts to spread the load over (default 1)
+#   HOT_PERCENT  share of charges sent to the first account (default 0, uniform)
+#   SKEW_LEVELS  HOT_PERCENT values used by the skew scenario (default "0 25 50 75 100")
+#   SUBSCRIBERS  event streams opened by the subscribers scenario (default 1000)
+#   HISTORY_ROWS transactions written for the projections scenario (default 2000)
+#   HISTORY_LIMIT page size of the history reads in the projections scenario (default 500)
+#   BILLING_ROWS rows in the charge run of the billing scenario (default 100000)
+#   IMPORT_ROWS  rows streamed by the import scenario (default 100000)
+#   REPLICA_URL  API base URL of a follower    (default http://localhost:8090/api/wallet)
+#   CLUSTER_URLS space-separated API base URLs of the cluster nodes (default BASE_URL);
+#                CONCURRENCY clients are started per node
+
+BASE_URL=${BASE_URL:-http://localhost:8080/api/wallet}
+REQUESTS=${REQUESTS:-2000}
+CONCURRENCY=${CONCURRENCY:-32}
+ACCOUNTS=${ACCOUNTS:-1}
+HOT_PERCENT=${HOT_PERCENT:-0}
+SKEW_LEVELS=${SKEW_LEVELS:-0 25 50 75 100}
+SUBSCRIBERS=${SUBSCRIBERS:-1000}
+IMPORT_ROWS=${IMPORT_ROWS:-100000}
+BILLING_ROWS=${BILLING_ROWS:-100000}
+HISTORY_ROWS=${HISTORY_ROWS:-2000}
+HISTORY_LIMIT=${HISTORY_LIMIT:-500}
+CLUSTER_URLS=${CLUSTER_URLS:-$BASE_URL}
+REPLICA_URL=${REPLICA_URL:-http://localhost:8090/api/wallet}
+
+RUN_ID="bench-$(date +%s)-$$"
+WORK_DIR=$(mktemp -d)
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+post() {
+    curl -s -o /dev/null -H "Content-Type: application/json" -X POST -d "$2" "$BASE_URL$1"
+}
+
+# Reads one JSON body per line from $2 and POSTs each to path $1 with $CONCURRENCY clients.
+# Writes "<http status> <seconds>" per request to $3.
+fire() {
+    local started ended
+    started=$(date +%s.%N)
+    xargs -d '\n' -P "$CONCURRENCY" -I{} \
+        curl -s -o /dev/null -w '%{http_code} %{time_total}\n' \
+        -H "Content-Type: application/json" -X POST -d '{}' "$BASE_URL$1" < "$2" > "$3"
+    ended=$(date +%s.%N)
+    echo "$started $ended" > "$3.elapsed"
+}
+
+# Reads one path per line from $1 and GETs each with $CONCURRENCY clients; output as for fire
+fire_get() {
+    local started ended
+    started=$(date +%s.%N)
+    xargs -d '\n' -P "$CONCURRENCY" -I{} \
+        curl -s -o /dev/null -w '%{http_code} %{time_total}\n' "$BASE_URL{}" < "$1" > "$2"
+    ended=$(date +%s.%N)
+    echo "$started $ended" > "$2.elapsed"
+}
+
+# Prints status breakdown, throughput and latency percentiles for a result file written by fire
+report() {
+    local label=$1 results=$2 elapsed
+    elapsed=$(awk '{ print $2 - $1 }' "$results.elapsed")
+
+    echo "=== $label ==="
+    echo "Requests:    $(wc -l < "$results") in ${elapsed}s (concurrency $CONCURRENCY)"
+    awk -v e="$elapsed" 'END { printf "Throughput:  %.1f req/s\n", NR / e }' "$results"
+    echo "Status codes:"
+    awk '{ print $1 }' "$results" | sort | uniq -c | awk '{ printf "  %s x %s\n", $2, $1 }'
+    awk '{ print $2 * 1000 }' "$results" | sort -n | awk '
+        function pct(p,  i) { i = int(NR * p); return v[i < 1 ? 1 : i] }
+        { v[NR] = $1 }
+        END { printf "Latency ms:  p50=%.2f p95=%.2f p99=%.2f max=%.2f\n", pct(0.50), pct(0.95), pct(0.99), v[NR] }'
+    echo
+}
+
+setup_accounts() {
+    local opening=$1 i
+    for ((i = 0; i < ACCOUNTS; i++)); do
+        post /account "{\"username\": \"$RUN_ID-$i\"}"
+        post /topup "{\"username\": \"$RUN_ID-$i\", \"amount\": $opening, \"idempotencyKey\": \"$RUN_ID-open-$i\"}"
+    done
+}
+
+# Fires REQUESTS charges of $2 at the accounts created by setup_accounts and reports them;
+# $3 names the idempotency keys, for scenarios that run the load more than once
+charge_load() {
+    local label=$1 amount=$2 keys=${3:-charge} i account
+    for ((i = 0; i < REQUESTS; i++)); do
+        # Deterministic spread: HOT_PERCENT of the charges go to account 0, the rest round-robin
+        if (( (i * 37) % 100 < HOT_PERCENT )); then account=0; else account=$((i % ACCOUNTS)); fi
+        echo "{\"username\": \"$RUN_ID-$account\", \"amount\": $amount, \"idempotencyKey\": \"$RUN_ID-$keys-$i\"}"
+    done > "$WORK_DIR/charges"
+
+    fire /charge "$WORK_DIR/charges" "$WORK_DIR/charge-results"
+    report "$label" "$WORK_DIR/charge-results"
+}
+
+contention() {
+    local label=${1:-contention} opening amount=1.00 i
+    # Leave some accounts short of funds so the insufficient-balance path is exercised too
+    opening=$(awk -v r="$REQUESTS" -v a="$ACCOUNTS" 'BEGIN { printf "%.2f", (r / a) * 0.9 }')
+
+    echo "Preparing $ACCOUNTS account(s) with opening balance $opening..."
+    setup_accounts "$opening"
+    charge_load "$label" "$amount"
+
+    # Every successful charge must be reflected exactly once in the balances
+    local succeeded expected actual=0 balance
+    succeeded=$(awk '$1 == 200' "$WORK_DIR/charge-results" | wc -l)
+    expected=$(awk -v o="$opening" -v a="$ACCOUNTS" -v s="$succeeded" -v m="$amount" \
+        'BEGIN { printf "%.2f", o * a - s * m }')
+    for ((i = 0; i < ACCOUNTS; i++)); do
+        balance=$(curl -s "$BASE_URL/account/$RUN_ID-$i" | sed -n 's/.*"balance":\([0-9.]*\).*/\1/p')
+        actual=$(awk -v x="$actual" -v y="$balance" 'BEGIN { printf "%.2f", x + y }')
+    done
+    echo "Balance check: expected $expected, actual $actual"
+}
+
+# Reads a counter from the actuator metrics endpoint, 0 when it is not registered
+metric() {
+    local value
+    value=$(curl -s "${BASE_URL%/api/wallet}/actuator/metrics/$1" | sed -n 's/.*"value":\([0-9.E]*\).*/\1/p')
+    awk -v v="${value:-0}" 'BEGIN { printf "%d", v }'
+}
+
+skew() {
+    local label=${1:-skew} level out conflicts retries
+    [ "$ACCOUNTS" -lt 2 ] && ACCOUNTS=64
+    printf "%-8s %-12s %-10s %-10s %-8s %-10s %-8s\n" "hot%" "req/s" "p50 ms" "p99 ms" "non-200" "conflicts" "retries"
+    for level in $SKEW_LEVELS; do
+        conflicts=$(metric wallet.optimistic.conflicts)
+        retries=$(metric wallet.optimistic.retries)
+        RUN_ID="bench-$(date +%s)-$$-$level"
+        out=$(HOT_PERCENT=$level contention "$label-$level")
+        printf "%-8s %-12s %-10s %-10s %-8s %-10s %-8s\n" "$level" \
+            "$(echo "$out" | sed -n 's/^Throughput: *\([0-9.]*\).*/\1/p')" \
+            "$(echo "$out" | sed -n 's/.*p50=\([0-9.]*\).*/\1/p')" \
+            "$(echo "$out" | sed -n 's/.*p99=\([0-9.]*\).*/\1/p')" \
+            "$(awk '$1 != 200' "$WORK_DIR/charge-results" | wc -l)" \
+            "$(($(metric wallet.optimistic.conflicts) - conflicts))" \
+            "$(($(metric wallet.optimistic.retries) - retries))"
+    done
+}
+
+admission() {
+    local admin="$BASE_URL/admin/admission" original unlimited
+    original=$(curl -s "$admin")
+    unlimited='{"enabled": true, "perUserRate": 1e9, "perUserBurst": 1000000000, "globalRate": 1e9, "globalBurst": 1000000000}'
+    [ "$ACCOUNTS" -lt 2 ] && ACCOUNTS=64
+
+    curl -s -o /dev/null -X PUT -H "Content-Type: application/json" \
+        -d "${original/\"enabled\":true/\"enabled\":false}" "$admin"
+    RUN_ID="bench-$(date +%s)-$$-off"
+    contention "admission disabled"
+
+    curl -s -o /dev/null -X PUT -H "Content-Type: application/json" -d "$unlimited" "$admin"
+    RUN_ID="bench-$(date +%s)-$$-on"
+    contention "admission enabled, nothing rejected"
+
+    curl -s -o /dev/null -X PUT -H "Content-Type: application/json" -d "$original" "$admin"
+    RUN_ID="bench-$(date +%s)-$$-hot"
+    ACCOUNTS=1 contention "single hot user, configured limits $original"
+}
+
+reads() {
+    local label=${1:-reads} i executed coalesced
+    setup_accounts 100.00
+    for ((i = 0; i < REQUESTS; i++)); do
+        echo "/account/$RUN_ID-$((i % ACCOUNTS))"
+    done > "$WORK_DIR/reads"
+
+    executed=$(metric wallet.reads.executed)
+    coalesced=$(metric wallet.reads.coalesced)
+    fire_get "$WORK_DIR/reads" "$WORK_DIR/read-results"
+    report "$label" "$WORK_DIR/read-results"
+
+    executed=$(($(metric wallet.reads.executed) - executed))
+    coalesced=$(($(metric wallet.reads.coalesced) - coalesced))
+    awk -v e="$executed" -v c="$coalesced" 'BEGIN {
+        printf "Coalescing:  %d queries, %d joined reads (%.1f%% of reads served without a query)\n",
+            e, c, ((e + c) > 0 ? 100 * c / (e + c) : 0) }'
+}
+
+# Prints live threads, heap used and open event streams as reported by the actuator
+# GETs each path in $2 and reports latency together with the heap allocated per request
+read_allocation() {
+    local label=$1 allocated
+    allocated=$(metric jvm.gc.memory.allocated)
+    fire_get "$2" "$2-results"
+    report "$label" "$2-results"
+    # The JVM counts allocations at young collections, so use enough requests to span several
+    allocated=$(($(metric jvm.gc.memory.allocated) - allocated))
+    awk -v a="$allocated" -v n="$(wc -l < "$2")" 'BEGIN { printf "Allocated:   %.1f KB per request\n\n", a / n / 1024 }'
+}
+
+projections() {
+    local i
+    ACCOUNTS=1 setup_accounts 0.01
+    for ((i = 0; i < HISTORY_ROWS; i++)); do
+        echo "{\"username\": \"$RUN_ID-0\", \"amount\": 1.00, \"idempotencyKey\": \"$RUN_ID-history-$i\"}"
+    done > "$WORK_DIR/history-topups"
+    # One writer, so the history is built without lock contention
+    CONCURRENCY=1 fire /topup "$WORK_DIR/history-topups" "$WORK_DIR/history-topup-results"
+
+    for ((i = 0; i < REQUESTS; i++)); do
+        echo "/account/$RUN_ID-0"
+    done > "$WORK_DIR/account-reads"
+    read_allocation "single-account reads" "$WORK_DIR/account-reads"
+
+    for ((i = 0; i < REQUESTS / 10; i++)); do
+        echo "/account/$RUN_ID-0/transactions?limit=$HISTORY_LIMIT"
+    done > "$WORK_DIR/history-reads"
+    read_allocation "history pages of $HISTORY_LIMIT rows" "$WORK_DIR/history-reads"
+}
+
+server_footprint() {
+    local heap
+    heap=$(curl -s "${BASE_URL%/api/wallet}/actuator/metrics/jvm.memory.used?tag=area:heap" \
+        | sed -n 's/.*"value":\([0-9.E]*\).*/\1/p')
+    awk -v l="$1" -v t="$(metric jvm.threads.live)" -v h="${heap:-0}" -v s="$(metric wallet.events.subscribers)" \
+        'BEGIN { printf "%-28s threads=%d heap=%.1fMB streams=%d\n", l, t, h / 1048576, s }'
+}
+
+subscribers() {
+    local i pids=()
+    [ "$ACCOUNTS" -lt 2 ] && ACCOUNTS=100
+    setup_accounts 1000000.00
+    server_footprint "before subscribing:"
+
+    for ((i = 0; i < SUBSCRIBERS; i++)); do
+        curl -s -N -o /dev/null "$BASE_URL/account/$RUN_ID-$((i % ACCOUNTS))/events" &
+        pids+=($!)
+    done
+    sleep 5
+    server_footprint "with $SUBSCRIBERS idle streams:"
+
+    charge_load "charges with $SUBSCRIBERS subscribers connected" 1.00
+    server_footprint "after charge load:"
+
+    kill "${pids[@]}" 2> /dev/null
+    wait 2> /dev/null
+}
+
+import_accounts() {
+    local i
+    for ((i = 0; i < REQUESTS; i++)); do
+        echo "{\"username\": \"$RUN_ID-single-$i\"}"
+    done > "$WORK_DIR/accounts"
+    fire /account "$WORK_DIR/accounts" "$WORK_DIR/account-results"
+    report "account creation, one request per account" "$WORK_DIR/account-results"
+
+    # Every tenth row repeats an earlier username and is skipped
+    awk -v n="$IMPORT_ROWS" -v id="$RUN_ID" 'BEGIN {
+        print "username,balance"
+        for (i = 0; i < n; i++) printf "%s-import-%d,%d.%02d\n", id, (i % 10 == 9 ? i - 1 : i), i % 500, i % 100 }' \
+        > "$WORK_DIR/import.csv"
+
+    echo "=== bulk import of $IMPORT_ROWS rows ==="
+    curl -s -H "Content-Type: text/csv" -X POST --data-binary @"$WORK_DIR/import.csv" "$BASE_URL/admin/import"
+    echo
+}
+
+billing() {
+    local id status
+    awk -v n="$ACCOUNTS" -v id="$RUN_ID" 'BEGIN {
+        print "username,balance"
+        for (i = 0; i < n; i++) printf "%s-%d,1000.00\n", id, i }' > "$WORK_DIR/billing-accounts.csv"
+    curl -s -o /dev/null -H "Content-Type: text/csv" -X POST --data-binary @"$WORK_DIR/billing-accounts.csv" \
+        "$BASE_URL/admin/import"
+
+    awk -v n="$BILLING_ROWS" -v a="$ACCOUNTS" -v id="$RUN_ID" 'BEGIN {
+        print "username,amount"
+        for (i = 0; i < n; i++) printf "%s-%d,%s\n", id, i % a, (i % 100 == 99 ? "5000.00" : "1.00") }' \
+        > "$WORK_DIR/billing.csv"
+    id=$(curl -s -H "Content-Type: text/csv" -X POST --data-binary @"$WORK_DIR/billing.csv" \
+        "$BASE_URL/admin/charge-runs?keyPrefix=$RUN_ID" | sed -n 's/^{"id":\([0-9]*\).*/\1/p')
+    echo "=== charge run $id of $BILLING_ROWS rows over $ACCOUNTS accounts ==="
+    while true; do
+        status=$(curl -s "$BASE_URL/admin/charge-runs/$id")
+        echo "$status"
+        case "$status" in
+            *'"status":"COMPLETED"'* | *'"status":"FAILED"'*) break ;;
+        esac
+        sleep 5
+    done
+}
+
+audit() {
+    local written dropped
+    [ "$ACCOUNTS" -lt 2 ] && ACCOUNTS=64
+    setup_accounts "$REQUESTS.00"
+    written=$(metric 'wallet.audit.events?tag=result:written')
+    dropped=$(metric 'wallet.audit.events?tag=result:dropped')
+    charge_load "${1:-audit}" 1.00
+
+    # Give the writer a moment to catch up before reading the counters
+    sleep 1
+    written=$(awk -v a="$(metric 'wallet.audit.events?tag=result:written')" -v b="$written" 'BEGIN { print a - b }')
+    dropped=$(awk -v a="$(metric 'wallet.audit.events?tag=result:dropped')" -v b="$dropped" 'BEGIN { print a - b }')
+    echo "Audit:       $written events written, $dropped dropped, backlog $(metric wallet.audit.backlog)"
+}
+
+replica() {
+    local i version
+    setup_accounts 100.00
+    # Wait for the follower to apply the opening balances
+    version=$(curl -s -H "Content-Type: application/json" -X POST \
+        -d "{\"username\": \"$RUN_ID-0\", \"amount\": 1.00, \"idempotencyKey\": \"$RUN_ID-sync\"}" \
+        "$BASE_URL/topup" | sed -n 's/.*"id":\([0-9]*\).*/\1/p')
+    curl -s -o /dev/null -H "X-Wallet-Min-Version: $version" "$REPLICA_URL/account/$RUN_ID-0"
+
+    for ((i = 0; i < REQUESTS; i++)); do
+        echo "/account/$RUN_ID-$((i % ACCOUNTS))"
+    done > "$WORK_DIR/reads"
+    BASE_URL=$REPLICA_URL fire_get "$WORK_DIR/reads" "$WORK_DIR/replica-results"
+    report "reads on the follower" "$WORK_DIR/replica-results"
+
+    local started ended
+    started=$(date +%s.%N)
+    for ((i = 0; i < 50; i++)); do
+        version=$(curl -s -H "Content-Type: application/json" -X POST \
+            -d "{\"username\": \"$RUN_ID-0\", \"amount\": 1.00, \"idempotencyKey\": \"$RUN_ID-ryw-$i\"}" \
+            "$BASE_URL/topup" | sed -n 's/.*"id":\([0-9]*\).*/\1/p')
+        curl -s -o /dev/null -w '%{http_code} %{time_total}\n' -H "X-Wallet-Min-Version: $version" \
+            "$REPLICA_URL/account/$RUN_ID-0"
+    done > "$WORK_DIR/ryw-results"
+    ended=$(date +%s.%N)
+    echo "$started $ended" > "$WORK_DIR/ryw-results.elapsed"
+    report "read-your-writes reads on the follower (latency includes replication wait)" "$WORK_DIR/ryw-results"
+    echo "Follower lag:  $(BASE_URL=$REPLICA_URL metric wallet.replica.lag.versions) versions behind the primary"
+}
+
+# Status of the newest backup on the server
+backup_status() {
+    curl -s "$BASE_URL/admin/backups" | sed -n 's/^\[{[^}]*"status":"\([A-Z]*\)".*/\1/p'
+}
+
+backup() {
+    local taken
+    [ "$ACCOUNTS" -lt 2 ] && ACCOUNTS=64
+    awk -v n="$IMPORT_ROWS" -v id="$RUN_ID" 'BEGIN {
+        print "username,balance"
+        for (i = 0; i < n; i++) printf "%s-filler-%d,100.00\n", id, i }' > "$WORK_DIR/filler.csv"
+    echo "Importing $IMPORT_ROWS accounts to give the backup something to copy..."
+    curl -s -o /dev/null -H "Content-Type: text/csv" -X POST --data-binary @"$WORK_DIR/filler.csv" \
+        "$BASE_URL/admin/import"
+    setup_accounts "$REQUESTS.00"
+
+    charge_load "charges without a backup" 1.00 baseline
+
+    # Back-to-back backups for as long as the second load runs
+    (
+        while [ ! -f "$WORK_DIR/load-done" ]; do
+            post /admin/backups '{}'
+            while [ "$(backup_status)" = RUNNING ]; do sleep 0.05; done
+        done
+    ) &
+    charge_load "charges during back-to-back backups" 1.00 during
+    touch "$WORK_DIR/load-done"
+    wait
+
+    taken=$(curl -s "$BASE_URL/admin/backups" | grep -o '"status":"COMPLETED"' | wc -l)
+    echo "Backups:     $taken completed during the load (newest of up to 20 runs below)"
+    curl -s "$BASE_URL/admin/backups" | sed 's/^\[\({[^}]*}\).*/\1/'
+    echo
+}
+
+cluster() {
+    local urls=($CLUSTER_URLS) node i account
+    local label=${1:-"charges over ${#urls[@]} node(s)"}
+    BASE_URL=${urls[0]} setup_accounts 1000000.00
+
+    for ((node = 0; node < ${#urls[@]}; node++)); do
+        for ((i = node; i < REQUESTS; i += ${#urls[@]})); do
+            account=$((i % ACCOUNTS))
+            echo "{\"username\": \"$RUN_ID-$account\", \"amount\": 1.00, \"idempotencyKey\": \"$RUN_ID-charge-$i\"}"
+        done > "$WORK_DIR/charges-$node"
+    done
+
+    for ((node = 0; node < ${#urls[@]}; node++)); do
+        BASE_URL=${urls[node]} fire /charge "$WORK_DIR/charges-$node" "$WORK_DIR/cluster-results-$node" &
+    done
+    wait
+
+    for ((node = 0; node < ${#urls[@]}; node++)); do
+        cat "$WORK_DIR/cluster-results-$node"
+    done > "$WORK_DIR/cluster-results"
+    # Wall clock from the first client start to the last client finish
+    cat "$WORK_DIR"/cluster-results-*.elapsed \
+        | awk 'NR == 1 || $1 < s { s = $1 } NR == 1 || $2 > e { e = $2 } END { print s, e }' \
+        > "$WORK_DIR/cluster-results.elapsed"
+    report "$label" "$WORK_DIR/cluster-results"
+}
+
+case "$1" in
+    contention)
+        contention "$2"
+        ;;
+    skew)
+        skew "$2"
+        ;;
+    admission)
+        admission
+        ;;
+    reads)
+        reads "$2"
+        ;;
+    projections)
+        projections
+        ;;
+    subscribers)
+        subscribers
+        ;;
+    import)
+        import_accounts
+        ;;
+    billing)
+        billing
+        ;;
+    replica)
+        replica
+        ;;
+    audit)
+        audit "$2"
+        ;;
+    cluster)
+        cluster "$2"
+        ;;
+    backup)
+        backup
+        ;;
+    *)
+        echo "Usage: $0 <contention|skew|admission|reads|projections|subscribers|import|billing|replica|cluster|audit|backup> [label]"
+        exit 1
+        ;;
+esac
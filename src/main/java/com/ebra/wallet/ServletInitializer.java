@@ -1,4 +1,4 @@
-package com.example.wallet;
+package com.ebra.wallet;
 
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
@@ -2,10 +2,12 @@ package com.ebra.wallet;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @SpringBootApplication
 @EnableTransactionManagement
+@EnableScheduling
 public class WalletApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(WalletApplication.class, args);
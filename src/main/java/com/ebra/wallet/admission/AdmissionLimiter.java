@@ -0,0 +1,147 @@
+package com.ebra.wallet.admission;
+
+import com.ebra.wallet.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory admission control for wallet mutations. Each request must take a token from
+ * its user's bucket and from the global bucket before any database work is done.
+ *
+ * <p>Per-user buckets live in a ConcurrentHashMap (lock-free reads, per-bin locking on insert).
+ * The map is bounded by {@code maxTrackedUsers}. When it is full, unknown users are only
+ * checked against the global bucket until the idle sweep frees room.
+ */
+@Component
+public class AdmissionLimiter {
+
+    private final ConcurrentHashMap<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final TokenBucket globalBucket;
+    private final LongSupplier nanoClock;
+    private final int maxTrackedUsers;
+    private final long idleNanos;
+
+    private volatile AdmissionLimits limits;
+
+    private final Counter rejectedPerUser;
+    private final Counter rejectedGlobal;
+    private final Counter untracked;
+
+    @Autowired
+    public AdmissionLimiter(@Value("${wallet.admission.enabled:true}") boolean enabled,
+                            @Value("${wallet.admission.per-user.rate:20}") double perUserRate,
+                            @Value("${wallet.admission.per-user.burst:40}") int perUserBurst,
+                            @Value("${wallet.admission.global.rate:2000}") double globalRate,
+                            @Value("${wallet.admission.global.burst:4000}") int globalBurst,
+                            @Value("${wallet.admission.max-tracked-users:100000}") int maxTrackedUsers,
+                            @Value("${wallet.admission.idle-eviction:5m}") Duration idleEviction,
+                            MeterRegistry registry) {
+        this(new AdmissionLimits(enabled, perUserRate, perUserBurst, globalRate, globalBurst),
+                maxTrackedUsers, idleEviction, registry, System::nanoTime);
+    }
+
+    AdmissionLimiter(AdmissionLimits limits, int maxTrackedUsers, Duration idleEviction,
+                     MeterRegistry registry, LongSupplier nanoClock) {
+        this.limits = limits;
+        this.maxTrackedUsers = maxTrackedUsers;
+        this.idleNanos = idleEviction.toNanos();
+        this.nanoClock = nanoClock;
+        this.globalBucket = new TokenBucket(nanoClock.getAsLong());
+
+        this.rejectedPerUser = Counter.builder("wallet.admission.rejected")
+                .description("Mutations rejected before reaching the database")
+                .tag("limit", "user")
+                .register(registry);
+        this.rejectedGlobal = Counter.builder("wallet.admission.rejected")
+                .description("Mutations rejected before reaching the database")
+                .tag("limit", "global")
+                .register(registry);
+        this.untracked = Counter.builder("wallet.admission.untracked")
+                .description("Requests checked against the global limit only because the user table was full")
+                .register(registry);
+        Gauge.builder("wallet.admission.tracked.users", userBuckets, ConcurrentHashMap::size)
+                .description("Users with a live token bucket")
+                .register(registry);
+    }
+
+    /**
+     * Takes one token for the user and one from the global bucket
+     *
+     * @throws RateLimitExceededException when either bucket is empty
+     */
+    public void acquire(String username) {
+        AdmissionLimits current = limits;
+        if (!current.enabled()) {
+            return;
+        }
+
+        long now = nanoClock.getAsLong();
+        TokenBucket userBucket = userBucket(username, now);
+        if (userBucket != null) {
+            long waitNanos = userBucket.tryAcquire(now, current.perUserIntervalNanos(), current.perUserBurst());
+            if (waitNanos > 0) {
+                rejectedPerUser.increment();
+                throw new RateLimitExceededException("Too many requests for user: " + username,
+                        retryAfterSeconds(waitNanos));
+            }
+        }
+
+        long waitNanos = globalBucket.tryAcquire(now, current.globalIntervalNanos(), current.globalBurst());
+        if (waitNanos > 0) {
+            rejectedGlobal.increment();
+            throw new RateLimitExceededException("Too many requests, try again later",
+                    retryAfterSeconds(waitNanos));
+        }
+    }
+
+    public AdmissionLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Replaces the limits; takes effect for the next request without resetting any bucket
+     */
+    public void updateLimits(AdmissionLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Drops buckets that have been full for the idle period. A full bucket holds no state,
+     * so evicting it never lets a user through sooner than keeping it would.
+     */
+    @Scheduled(fixedDelayString = "${wallet.admission.eviction-interval-millis:30000}")
+    public void evictIdle() {
+        long now = nanoClock.getAsLong();
+        userBuckets.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+    }
+
+    int trackedUsers() {
+        return userBuckets.size();
+    }
+
+    private TokenBucket userBucket(String username, long now) {
+        TokenBucket bucket = userBuckets.get(username);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (userBuckets.mappingCount() >= maxTrackedUsers) {
+            untracked.increment();
+            return null;
+        }
+        return userBuckets.computeIfAbsent(username, key -> new TokenBucket(now));
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+}
@@ -0,0 +1,28 @@
+package com.ebra.wallet.admission;
+
+/**
+ * Rates are in requests per second; bursts are bucket capacities
+ */
+public record AdmissionLimits(boolean enabled,
+                              double perUserRate,
+                              int perUserBurst,
+                              double globalRate,
+                              int globalBurst) {
+
+    public AdmissionLimits {
+        if (perUserRate <= 0 || globalRate <= 0) {
+            throw new IllegalArgumentException("Admission rates must be greater than zero");
+        }
+        if (perUserBurst < 1 || globalBurst < 1) {
+            throw new IllegalArgumentException("Admission bursts must be at least 1");
+        }
+    }
+
+    long perUserIntervalNanos() {
+        return (long) (1_000_000_000L / perUserRate);
+    }
+
+    long globalIntervalNanos() {
+        return (long) (1_000_000_000L / globalRate);
+    }
+}
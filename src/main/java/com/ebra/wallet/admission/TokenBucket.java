@@ -0,0 +1,46 @@
+package com.ebra.wallet.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket kept as a single "theoretical arrival time" (the GCRA form of a
+ * token bucket). A request is admitted when the bucket would not be pushed more than one
+ * burst ahead of the current time; admitting it advances the arrival time by one interval.
+ */
+final class TokenBucket {
+
+    private final AtomicLong theoreticalArrival;
+
+    TokenBucket(long nowNanos) {
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Tries to take one token.
+     *
+     * @param intervalNanos time to refill one token
+     * @param burst         bucket capacity
+     * @return 0 when admitted, otherwise the nanoseconds until a token becomes available
+     */
+    long tryAcquire(long nowNanos, long intervalNanos, int burst) {
+        long tolerance = intervalNanos * (burst - 1);
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long base = arrival - nowNanos > 0 ? arrival : nowNanos;
+            long ahead = base - nowNanos;
+            if (ahead > tolerance) {
+                return ahead - tolerance;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * A bucket that has been full for at least {@code idleNanos} carries no state worth keeping
+     */
+    boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - theoreticalArrival.get() >= idleNanos;
+    }
+}
@@ -0,0 +1,28 @@
+package com.ebra.wallet.audit;
+
+import java.math.BigDecimal;
+
+/**
+ * One preallocated slot of the audit ring buffer. Producers overwrite the fields in place, so
+ * recording an event allocates nothing; the writer reads them before the slot is reused.
+ */
+final class AuditEvent {
+
+    long timestampMillis;
+    AuditOp op;
+    // The username, or hold:<id> for operations on a hold
+    String subject;
+    BigDecimal amount;
+    AuditOutcome outcome;
+    long latencyNanos;
+
+    void set(long timestampMillis, AuditOp op, String subject, BigDecimal amount, AuditOutcome outcome,
+             long latencyNanos) {
+        this.timestampMillis = timestampMillis;
+        this.op = op;
+        this.subject = subject;
+        this.amount = amount;
+        this.outcome = outcome;
+        this.latencyNanos = latencyNanos;
+    }
+}
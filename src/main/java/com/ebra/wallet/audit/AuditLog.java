@@ -0,0 +1,229 @@
+package com.ebra.wallet.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Audit trail of wallet mutations that stays off the request path: a request only copies a
+ * fixed set of fields (operation, subject, amount, outcome, latency) into a preallocated ring
+ * buffer, and a background thread writes them in batches to rolling files as tab-separated
+ * lines. When the buffer is full the configured {@link OverflowPolicy} applies.
+ */
+@Component
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final Duration SHUTDOWN_WAIT = Duration.ofSeconds(10);
+
+    private final boolean enabled;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxBlockNanos;
+    private final int batchSize;
+    private final AuditRingBuffer buffer;
+    private final RollingAuditFile file;
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Thread writer;
+
+    // Used by the writer thread only
+    private final StringBuilder line = new StringBuilder(160);
+    private boolean failing;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public AuditLog(MeterRegistry registry,
+                    @Value("${wallet.audit.enabled:true}") boolean enabled,
+                    @Value("${wallet.audit.directory:audit}") Path directory,
+                    @Value("${wallet.audit.buffer-size:65536}") int bufferSize,
+                    @Value("${wallet.audit.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                    @Value("${wallet.audit.max-block:100ms}") Duration maxBlock,
+                    @Value("${wallet.audit.batch-size:1024}") int batchSize,
+                    @Value("${wallet.audit.max-file-size:64MB}") DataSize maxFileSize,
+                    @Value("${wallet.audit.max-files:10}") int maxFiles) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Audit batch size must be positive");
+        }
+        this.enabled = enabled;
+        this.overflowPolicy = overflowPolicy;
+        this.maxBlockNanos = maxBlock.toNanos();
+        this.batchSize = batchSize;
+        this.written = eventCounter(registry, "written");
+        this.dropped = eventCounter(registry, "dropped");
+        this.failed = eventCounter(registry, "failed");
+        if (!enabled) {
+            this.buffer = null;
+            this.file = null;
+            this.writer = null;
+            return;
+        }
+
+        this.buffer = new AuditRingBuffer(bufferSize);
+        this.file = new RollingAuditFile(directory, maxFileSize.toBytes(), maxFiles);
+        Gauge.builder("wallet.audit.backlog", buffer, AuditRingBuffer::size)
+                .description("Audit events waiting to be written")
+                .register(registry);
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Audit log writing to {} ({} slots, {} when full)", directory.resolve(RollingAuditFile.FILE_NAME),
+                buffer.capacity(), overflowPolicy);
+    }
+
+    /**
+     * Runs a mutation and records its outcome and latency
+     */
+    public <T> T audit(AuditOp op, String subject, BigDecimal amount, Supplier<T> mutation) {
+        long startNanos = System.nanoTime();
+        try {
+            T result = mutation.get();
+            record(op, subject, amount, AuditOutcome.OK, startNanos);
+            return result;
+        } catch (RuntimeException ex) {
+            record(op, subject, amount, AuditOutcome.of(ex), startNanos);
+            throw ex;
+        }
+    }
+
+    /**
+     * Queues an event; never waits longer than the overflow policy allows
+     *
+     * @param startNanos {@link System#nanoTime()} when the operation started
+     */
+    public void record(AuditOp op, String subject, BigDecimal amount, AuditOutcome outcome, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long timestampMillis = System.currentTimeMillis();
+        if (buffer.tryPublish(timestampMillis, op, subject, amount, outcome, now - startNanos)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            long deadline = now + maxBlockNanos;
+            do {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                if (buffer.tryPublish(timestampMillis, op, subject, amount, outcome, now - startNanos)) {
+                    return;
+                }
+            } while (System.nanoTime() - deadline < 0);
+        }
+        dropped.increment();
+    }
+
+    /**
+     * Writes out what is queued and closes the file
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(SHUTDOWN_WAIT.toMillis());
+    }
+
+    private void writeLoop() {
+        while (running) {
+            int drained = buffer.drain(batchSize, this::append);
+            if (drained < batchSize) {
+                flush();
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        while (buffer.drain(batchSize, this::append) > 0) {
+            // Drain what producers published before shutdown
+        }
+        flush();
+        try {
+            file.close();
+        } catch (IOException ex) {
+            log.warn("Closing the audit log failed: {}", ex.getMessage());
+        }
+    }
+
+    private void append(AuditEvent event) {
+        line.setLength(0);
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(event.timestampMillis), line);
+        line.append('\t').append(event.op.name()).append('\t');
+        appendField(event.subject);
+        line.append('\t');
+        line.append(event.amount != null ? event.amount.toPlainString() : "-");
+        line.append('\t').append(event.outcome.name())
+                .append('\t').append(TimeUnit.NANOSECONDS.toMicros(event.latencyNanos))
+                .append('\n');
+
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            file.write(bytes, bytes.length);
+            written.increment();
+            if (failing) {
+                failing = false;
+                log.info("Audit log writes recovered");
+            }
+        } catch (IOException ex) {
+            failed.increment();
+            if (!failing) {
+                failing = true;
+                log.warn("Writing the audit log failed, events are lost until it recovers: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private void appendField(String value) {
+        if (value == null) {
+            line.append('-');
+            return;
+        }
+        // Keeps one event per line and one field per column
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            line.append(Character.isISOControl(c) ? '?' : c);
+        }
+    }
+
+    private void flush() {
+        try {
+            file.flush();
+        } catch (IOException ex) {
+            if (!failing) {
+                failing = true;
+                log.warn("Flushing the audit log failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private static Counter eventCounter(MeterRegistry registry, String result) {
+        return Counter.builder("wallet.audit.events")
+                .description("Audit events, by whether they were written, dropped on a full buffer " +
+                        "or lost to a write error")
+                .tag("result", result)
+                .register(registry);
+    }
+}
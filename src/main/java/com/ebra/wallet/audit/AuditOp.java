@@ -0,0 +1,8 @@
+package com.ebra.wallet.audit;
+
+/**
+ * Wallet mutations recorded in the audit log
+ */
+public enum AuditOp {
+    CREATE_ACCOUNT, TOP_UP, CHARGE, HOLD, CAPTURE, RELEASE, EXPIRE
+}
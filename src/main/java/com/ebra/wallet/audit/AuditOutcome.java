@@ -0,0 +1,41 @@
+package com.ebra.wallet.audit;
+
+import com.ebra.wallet.exception.ConcurrentUpdateException;
+import com.ebra.wallet.exception.DuplicateTransactionException;
+import com.ebra.wallet.exception.HoldNotActiveException;
+import com.ebra.wallet.exception.HoldNotFoundException;
+import com.ebra.wallet.exception.InsufficientBalanceException;
+import com.ebra.wallet.exception.UserAlreadyExistsException;
+import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.exception.VelocityLimitExceededException;
+
+/**
+ * Result of an audited mutation, named after the error codes the API returns
+ */
+public enum AuditOutcome {
+    OK, USER_NOT_FOUND, USER_ALREADY_EXISTS, INSUFFICIENT_BALANCE, DUPLICATE_TRANSACTION, CONCURRENT_UPDATE,
+    HOLD_NOT_FOUND, HOLD_NOT_ACTIVE, VELOCITY_LIMIT_EXCEEDED, INVALID_REQUEST, ERROR;
+
+    public static AuditOutcome of(Throwable failure) {
+        if (failure instanceof UserNotFoundException) {
+            return USER_NOT_FOUND;
+        } else if (failure instanceof UserAlreadyExistsException) {
+            return USER_ALREADY_EXISTS;
+        } else if (failure instanceof InsufficientBalanceException) {
+            return INSUFFICIENT_BALANCE;
+        } else if (failure instanceof DuplicateTransactionException) {
+            return DUPLICATE_TRANSACTION;
+        } else if (failure instanceof ConcurrentUpdateException) {
+            return CONCURRENT_UPDATE;
+        } else if (failure instanceof HoldNotFoundException) {
+            return HOLD_NOT_FOUND;
+        } else if (failure instanceof HoldNotActiveException) {
+            return HOLD_NOT_ACTIVE;
+        } else if (failure instanceof VelocityLimitExceededException) {
+            return VELOCITY_LIMIT_EXCEEDED;
+        } else if (failure instanceof IllegalArgumentException) {
+            return INVALID_REQUEST;
+        }
+        return ERROR;
+    }
+}
@@ -0,0 +1,98 @@
+package com.ebra.wallet.audit;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer, single-consumer queue of audit events over a preallocated array.
+ *
+ * <p>A producer claims the next sequence number with a compare-and-set, fills the slot at
+ * {@code sequence & mask} and then marks it published. The consumer reads published slots in
+ * sequence order and frees them by advancing its own sequence, which producers compare against
+ * to tell that the buffer is full. Nothing is allocated and no lock is taken per event.
+ */
+final class AuditRingBuffer {
+
+    private final AuditEvent[] slots;
+    private final int mask;
+    // Next sequence a producer will claim
+    private final AtomicLong claimed = new AtomicLong();
+    // Per slot, the sequence last published there plus one (0 = never published)
+    private final AtomicLongArray published;
+    // Next sequence the consumer will read; every slot before it is free
+    private volatile long consumed;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    AuditRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Audit buffer size must be between 1 and 2^30");
+        }
+        int size = Math.max(1, Integer.highestOneBit(capacity - 1) << 1);
+        this.slots = new AuditEvent[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AuditEvent();
+        }
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+    }
+
+    /**
+     * Records an event, or returns false at once if the buffer is full
+     */
+    boolean tryPublish(long timestampMillis, AuditOp op, String subject, BigDecimal amount, AuditOutcome outcome,
+                       long latencyNanos) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & mask);
+        slots[index].set(timestampMillis, op, subject, amount, outcome, latencyNanos);
+        // Release store: the consumer sees the fields once it sees the sequence
+        published.lazySet(index, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Hands up to max published events to the sink in sequence order, then frees their slots.
+     * Only one thread may drain.
+     *
+     * @return the number of events drained
+     */
+    int drain(int max, Consumer<AuditEvent> sink) {
+        long next = consumed;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (next & mask);
+            // Stops at a slot whose producer claimed it but has not finished writing
+            if (published.get(index) != next + 1) {
+                break;
+            }
+            sink.accept(slots[index]);
+            slots[index].subject = null;
+            slots[index].amount = null;
+            next++;
+            drained++;
+        }
+        consumed = next;
+        return drained;
+    }
+
+    /**
+     * Events claimed and not yet drained
+     */
+    long size() {
+        return claimed.get() - consumed;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,9 @@
+package com.ebra.wallet.audit;
+
+/**
+ * What a request does when the audit buffer is full: DROP the event, or BLOCK until the
+ * writer frees a slot (bounded by wallet.audit.max-block, after which the event is dropped)
+ */
+public enum OverflowPolicy {
+    DROP, BLOCK
+}
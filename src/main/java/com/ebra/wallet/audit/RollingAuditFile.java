@@ -0,0 +1,88 @@
+package com.ebra.wallet.audit;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends to {@code audit.log} in a directory and rolls it to {@code audit.log.1},
+ * {@code audit.log.2}, ... once it reaches the size limit, deleting the oldest beyond the
+ * number of files kept. Used by the audit writer thread only.
+ */
+final class RollingAuditFile implements Closeable {
+
+    static final String FILE_NAME = "audit.log";
+
+    private final Path directory;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private OutputStream out;
+    private long size;
+
+    RollingAuditFile(Path directory, long maxFileSize, int maxFiles) {
+        if (maxFileSize < 1 || maxFiles < 1) {
+            throw new IllegalArgumentException("Audit file size and file count must be positive");
+        }
+        this.directory = directory;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+    }
+
+    void write(byte[] bytes, int length) throws IOException {
+        if (out == null) {
+            open();
+        } else if (size > 0 && size + length > maxFileSize) {
+            roll();
+        }
+        out.write(bytes, 0, length);
+        size += length;
+    }
+
+    void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(FILE_NAME);
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND), 64 * 1024);
+        size = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        close();
+        Path current = directory.resolve(FILE_NAME);
+        if (maxFiles == 1) {
+            Files.delete(current);
+        } else {
+            Files.deleteIfExists(rolled(maxFiles - 1));
+            for (int i = maxFiles - 2; i >= 1; i--) {
+                if (Files.exists(rolled(i))) {
+                    Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(current, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    private Path rolled(int index) {
+        return directory.resolve(FILE_NAME + "." + index);
+    }
+}
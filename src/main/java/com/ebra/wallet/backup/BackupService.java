@@ -0,0 +1,331 @@
+package com.ebra.wallet.backup;
+
+import com.ebra.wallet.dto.BackupReport;
+import com.ebra.wallet.exception.BackupInProgressException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Online backups of the SQLite database, taken while top-ups and charges keep running.
+ *
+ * <p>A backup pins a read transaction on its own connection and copies that snapshot with
+ * SQLite's incremental backup API, {@code pagesPerStep} pages at a time with a pause between
+ * steps to cap the I/O it takes from writers. In WAL mode writers commit to the log meanwhile
+ * and the snapshot stays consistent; in rollback-journal mode a pinned reader would block them,
+ * so the database is copied in a single step instead.
+ *
+ * <p>The copy is written as {@code wallet-<timestamp>.db.partial}, switched to a self-contained
+ * rollback-journal file, checked with {@code PRAGMA integrity_check} and against the ledger
+ * version read from the snapshot, and only then renamed into place. The newest {@code retain}
+ * snapshots are kept. One backup runs at a time.
+ */
+@Service
+public class BackupService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupService.class);
+
+    private static final String PREFIX = "wallet-";
+    private static final String SUFFIX = ".db";
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmssSSS");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("wallet-\\d{8}-\\d{9}\\.db(\\.partial)?");
+    private static final int MAX_REPORTS = 20;
+    // While the source is locked, e.g. by a checkpoint
+    private static final int BUSY_SLEEP_MILLIS = 100;
+    private static final int BUSY_RETRIES = 100;
+    private static final Duration SHUTDOWN_WAIT = Duration.ofSeconds(30);
+
+    private final DataSource dataSource;
+    private final Path directory;
+    private final int pagesPerStep;
+    private final long stepPauseMillis;
+    private final int retain;
+    private final ExecutorService executor;
+    private final Deque<BackupRun> runs = new ArrayDeque<>();
+    private final Counter completed;
+    private final Counter failed;
+    private final Timer duration;
+
+    private BackupRun running;
+    private volatile boolean stopping;
+
+    @Autowired
+    public BackupService(DataSource dataSource, MeterRegistry registry,
+                         @Value("${wallet.backup.directory:backups}") Path directory,
+                         @Value("${wallet.backup.pages-per-step:64}") int pagesPerStep,
+                         @Value("${wallet.backup.step-pause:20ms}") Duration stepPause,
+                         @Value("${wallet.backup.retain:7}") int retain) {
+        if (pagesPerStep < 1 || retain < 1) {
+            throw new IllegalArgumentException("Backup pages per step and retained snapshots must be positive");
+        }
+        this.dataSource = dataSource;
+        this.directory = directory;
+        this.pagesPerStep = pagesPerStep;
+        this.stepPauseMillis = stepPause.toMillis();
+        this.retain = retain;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "backup"));
+        this.completed = Counter.builder("wallet.backups")
+                .description("Online backups, by result")
+                .tag("result", "completed")
+                .register(registry);
+        this.failed = Counter.builder("wallet.backups")
+                .description("Online backups, by result")
+                .tag("result", "failed")
+                .register(registry);
+        this.duration = Timer.builder("wallet.backup.duration")
+                .description("Time to copy and verify a snapshot")
+                .register(registry);
+    }
+
+    /**
+     * Starts a backup in the background
+     *
+     * @throws BackupInProgressException if one is already running
+     */
+    public synchronized BackupReport start() {
+        if (running != null) {
+            throw new BackupInProgressException("Backup " + running.name + " is still running");
+        }
+        BackupRun run = new BackupRun(PREFIX + TIMESTAMP.format(LocalDateTime.now()) + SUFFIX);
+        running = run;
+        runs.addFirst(run);
+        if (runs.size() > MAX_REPORTS) {
+            runs.removeLast();
+        }
+        executor.execute(() -> execute(run));
+        return run.toReport();
+    }
+
+    /**
+     * Takes a backup on the configured schedule, if any
+     */
+    @Scheduled(cron = "${wallet.backup.cron:-}")
+    public void scheduledBackup() {
+        try {
+            start();
+        } catch (BackupInProgressException ex) {
+            log.warn("Skipping scheduled backup: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Backups started since this node came up, newest first
+     */
+    public synchronized List<BackupReport> getReports() {
+        return runs.stream().map(BackupRun::toReport).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // A running backup stops pausing and finishes; it holds no lock writers wait for
+        stopping = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_WAIT.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Backup still running after {}s; its partial file is removed on the next backup",
+                    SHUTDOWN_WAIT.toSeconds());
+        }
+    }
+
+    private void execute(BackupRun run) {
+        long started = System.nanoTime();
+        Path partial = directory.resolve(run.name + PARTIAL_SUFFIX);
+        try {
+            Files.createDirectories(directory);
+            long ledgerVersion = copy(run, partial);
+            verify(partial, ledgerVersion);
+            Path snapshot = directory.resolve(run.name);
+            Files.move(partial, snapshot, StandardCopyOption.ATOMIC_MOVE);
+            run.finish(BackupStatus.COMPLETED, Files.size(snapshot), ledgerVersion, null);
+            completed.increment();
+            log.info("Backup {} completed: {} pages, ledger version {}, {} ms", run.name, run.totalPages,
+                    ledgerVersion, (System.nanoTime() - started) / 1_000_000);
+            prune();
+        } catch (Exception ex) {
+            run.finish(BackupStatus.FAILED, 0, null, ex.getMessage());
+            failed.increment();
+            log.error("Backup {} failed", run.name, ex);
+            deleteQuietly(partial);
+        } finally {
+            duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            synchronized (this) {
+                running = null;
+            }
+        }
+    }
+
+    /**
+     * Copies a pinned snapshot of the database to the file and returns its ledger version
+     */
+    private long copy(BackupRun run, Path destination) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean wal = "wal".equalsIgnoreCase(queryString(connection, "PRAGMA journal_mode"));
+            if (!wal) {
+                log.warn("Database is not in WAL mode; backup {} is copied in one step and blocks writers meanwhile",
+                        run.name);
+            }
+            connection.setAutoCommit(false);
+            try {
+                // The first read starts the transaction the backup then copies from
+                long ledgerVersion = queryLong(connection, "SELECT coalesce(max(id), 0) FROM transactions");
+                int pageCount = (int) queryLong(connection, "PRAGMA page_count");
+                run.progress(pageCount, 0);
+                SQLiteConnection sqlite = connection.unwrap(SQLiteConnection.class);
+                int rc = sqlite.getDatabase().backup("main", destination.toString(), (remaining, total) -> {
+                    run.progress(total, total - remaining);
+                    pause();
+                }, BUSY_SLEEP_MILLIS, BUSY_RETRIES, wal ? pagesPerStep : -1);
+                if (rc != 0) {
+                    throw new SQLException("SQLite backup failed with code " + rc);
+                }
+                run.progress(pageCount, pageCount);
+                return ledgerVersion;
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Makes the copy a standalone file and checks that it is intact and holds the snapshot
+     */
+    private static void verify(Path file, long ledgerVersion) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            queryString(connection, "PRAGMA journal_mode=DELETE");
+            String integrity = queryString(connection, "PRAGMA integrity_check");
+            if (!"ok".equals(integrity)) {
+                throw new SQLException("Snapshot failed the integrity check: " + integrity);
+            }
+            long copied = queryLong(connection, "SELECT coalesce(max(id), 0) FROM transactions");
+            if (copied != ledgerVersion) {
+                throw new SQLException("Snapshot holds ledger version " + copied + ", expected " + ledgerVersion);
+            }
+        }
+    }
+
+    /**
+     * Deletes snapshots beyond the newest {@code retain} and partial files of earlier runs
+     */
+    private void prune() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()).matches())) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PARTIAL_SUFFIX)) {
+                    deleteQuietly(file);
+                } else if (name.endsWith(SUFFIX)) {
+                    snapshots.add(file);
+                }
+            }
+        }
+        // Timestamped names sort in creation order
+        snapshots.sort(Comparator.comparing(Path::getFileName).reversed());
+        for (Path old : snapshots.subList(Math.min(retain, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(old);
+            log.info("Deleted backup {} beyond the {} retained", old.getFileName(), retain);
+        }
+    }
+
+    private void pause() {
+        if (stepPauseMillis <= 0 || stopping) {
+            return;
+        }
+        try {
+            Thread.sleep(stepPauseMillis);
+        } catch (InterruptedException ex) {
+            // Called back from the native backup loop: finish the copy without pauses
+            stopping = true;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Could not delete {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private static String queryString(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            return result.next() ? result.getString(1) : null;
+        }
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Progress of one backup, written by the backup thread and read by report requests
+     */
+    private static final class BackupRun {
+        private final String name;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile BackupStatus status = BackupStatus.RUNNING;
+        private volatile int totalPages;
+        private volatile int copiedPages;
+        private volatile long bytes;
+        private volatile Long ledgerVersion;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        private BackupRun(String name) {
+            this.name = name;
+        }
+
+        private void progress(int totalPages, int copiedPages) {
+            this.totalPages = totalPages;
+            this.copiedPages = copiedPages;
+        }
+
+        private void finish(BackupStatus status, long bytes, Long ledgerVersion, String error) {
+            this.bytes = bytes;
+            this.ledgerVersion = ledgerVersion;
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.status = status;
+        }
+
+        private BackupReport toReport() {
+            return new BackupReport(name, status, totalPages, copiedPages, bytes, ledgerVersion, error,
+                    startedAt, finishedAt);
+        }
+    }
+}
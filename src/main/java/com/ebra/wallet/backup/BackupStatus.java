@@ -0,0 +1,5 @@
+package com.ebra.wallet.backup;
+
+public enum BackupStatus {
+    RUNNING, COMPLETED, FAILED
+}
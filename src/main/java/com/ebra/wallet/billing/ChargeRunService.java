@@ -0,0 +1,493 @@
+package com.ebra.wallet.billing;
+
+import com.ebra.wallet.dto.ChargeRunReport;
+import com.ebra.wallet.entity.ChargeOutcome;
+import com.ebra.wallet.entity.ChargeRun;
+import com.ebra.wallet.entity.ChargeRunStatus;
+import com.ebra.wallet.exception.ChargeRunNotFoundException;
+import com.ebra.wallet.exception.ChargeRunsUnavailableException;
+import com.ebra.wallet.exception.ConcurrentUpdateException;
+import com.ebra.wallet.exception.DuplicateTransactionException;
+import com.ebra.wallet.exception.InsufficientBalanceException;
+import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.exception.VelocityLimitExceededException;
+import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.repository.ChargeRunRepository;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.service.WalletService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs bulk charges, such as a month of subscription billing, submitted as CSV rows of
+ * {@code username,amount}.
+ *
+ * <p>The input is spooled to disk and processed in chunks. Within a chunk the rows are split
+ * into partitions by username and the partitions are charged in parallel, each in file order,
+ * so the charges of one user keep their order. Each row goes through
+ * {@link WalletService#charge} with the idempotency key {@code <keyPrefix>:<line>}, and after
+ * every chunk the line reached and the outcome counts are checkpointed. A run cut short by a
+ * crash or shutdown resumes from its checkpoint on the next start; rows of the unfinished chunk
+ * that were already charged come back as duplicates instead of being charged twice. Those the
+ * run itself charged before the restart, told apart by a ledger entry newer than the run's
+ * start, still count as CHARGED; ALREADY_CHARGED is left for rows an earlier run charged.
+ *
+ * <p>Rows are charged against this node's accounts only, so with clustering enabled, where
+ * other nodes own part of the accounts, charge runs are refused rather than reporting those
+ * accounts as not found.
+ */
+@Service
+public class ChargeRunService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChargeRunService.class);
+
+    private static final int MAX_KEY_PREFIX_LENGTH = 100;
+    private static final long RETRY_BACKOFF_MILLIS = 5;
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 1000;
+    private static final Duration SHUTDOWN_WAIT = Duration.ofSeconds(30);
+    private static final String CLUSTERED_ERROR =
+            "Charge runs are not available while clustering is enabled; charge accounts through the API";
+
+    private final ChargeRunRepository chargeRunRepository;
+    private final WalletService walletService;
+    private final TransactionRepository transactionRepository;
+    private final Path spoolDirectory;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxAttempts;
+    private final long progressInterval;
+    private final boolean clustered;
+    private final Map<ChargeOutcome, Counter> outcomeCounters = new EnumMap<>(ChargeOutcome.class);
+    // Runs one charge run at a time; the workers charge the partitions of its current chunk
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+    private final Map<Long, RunProgress> activeRuns = new ConcurrentHashMap<>();
+
+    private volatile boolean stopping;
+
+    @Autowired
+    public ChargeRunService(ChargeRunRepository chargeRunRepository, WalletService walletService,
+                            TransactionRepository transactionRepository, MeterRegistry registry,
+                            @Value("${wallet.charge-runs.directory:charge-runs}") Path spoolDirectory,
+                            @Value("${wallet.charge-runs.chunk-size:1000}") int chunkSize,
+                            @Value("${wallet.charge-runs.parallelism:4}") int parallelism,
+                            @Value("${wallet.charge-runs.max-attempts:10}") int maxAttempts,
+                            @Value("${wallet.charge-runs.progress-interval:100000}") long progressInterval,
+                            @Value("${wallet.cluster.enabled:false}") boolean clustered) {
+        if (chunkSize < 1 || parallelism < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Charge run chunk size, parallelism and attempts must be positive");
+        }
+        this.chargeRunRepository = chargeRunRepository;
+        this.walletService = walletService;
+        this.transactionRepository = transactionRepository;
+        this.spoolDirectory = spoolDirectory;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.maxAttempts = maxAttempts;
+        this.progressInterval = progressInterval;
+        this.clustered = clustered;
+        for (ChargeOutcome outcome : ChargeOutcome.values()) {
+            outcomeCounters.put(outcome, Counter.builder("wallet.charge-runs.rows")
+                    .description("Rows of bulk charge runs, by outcome")
+                    .tag("outcome", outcome.name())
+                    .register(registry));
+        }
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "charge-run"));
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "charge-run-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Spools the input to disk and queues the run. Rows are charged with idempotency keys
+     * {@code <keyPrefix>:<line>}, so submitting the same file with the same prefix again
+     * charges nobody twice.
+     */
+    public ChargeRunReport submit(InputStream input, String keyPrefix) throws IOException {
+        if (clustered) {
+            throw new ChargeRunsUnavailableException(CLUSTERED_ERROR);
+        }
+        if (keyPrefix == null || keyPrefix.isBlank() || keyPrefix.length() > MAX_KEY_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("Key prefix must be 1 to " + MAX_KEY_PREFIX_LENGTH + " characters");
+        }
+
+        Files.createDirectories(spoolDirectory);
+        Path file = Files.createTempFile(spoolDirectory, "charge-run-", ".csv");
+        long rows = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+             BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            String text;
+            for (long line = 1; (text = reader.readLine()) != null; line++) {
+                writer.write(text);
+                writer.newLine();
+                if (isRow(line, text)) {
+                    rows++;
+                }
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+
+        ChargeRun run = save(new ChargeRun(keyPrefix, file.toString(), rows));
+        log.info("Charge run {} queued: {} rows, key prefix '{}'", run.getId(), rows, keyPrefix);
+        Long id = run.getId();
+        coordinator.execute(() -> execute(id));
+        return report(run);
+    }
+
+    public ChargeRunReport getReport(Long id) {
+        return report(chargeRunRepository.findById(id)
+                .orElseThrow(() -> new ChargeRunNotFoundException("Charge run not found: " + id)));
+    }
+
+    /**
+     * Picks up the runs a previous process queued or left unfinished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedRuns() {
+        for (ChargeRun run : chargeRunRepository.findByStatusInOrderByIdAsc(
+                List.of(ChargeRunStatus.QUEUED, ChargeRunStatus.RUNNING))) {
+            if (clustered) {
+                // Queued before clustering was enabled
+                log.warn("Not resuming charge run {}: {}", run.getId(), CLUSTERED_ERROR);
+                run.setStatus(ChargeRunStatus.FAILED);
+                run.setError(CLUSTERED_ERROR);
+                run.setFinishedAt(LocalDateTime.now());
+                save(run);
+                continue;
+            }
+            log.info("Resuming charge run {} after line {}", run.getId(), run.getCheckpointLine());
+            Long id = run.getId();
+            coordinator.execute(() -> execute(id));
+        }
+    }
+
+    /**
+     * Lets the current chunk finish and checkpoint; the run continues on the next start
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        coordinator.shutdown();
+        coordinator.awaitTermination(SHUTDOWN_WAIT.toMillis(), TimeUnit.MILLISECONDS);
+        workers.shutdown();
+    }
+
+    void execute(Long id) {
+        ChargeRun run = chargeRunRepository.findById(id).orElse(null);
+        if (run == null || run.getStatus() == ChargeRunStatus.COMPLETED || run.getStatus() == ChargeRunStatus.FAILED) {
+            return;
+        }
+
+        RunProgress progress = new RunProgress(run);
+        activeRuns.put(id, progress);
+        try {
+            // Set when an earlier process started the run and may have charged past its checkpoint
+            LocalDateTime resumedFrom = run.getStartedAt();
+            run.setStatus(ChargeRunStatus.RUNNING);
+            if (run.getStartedAt() == null) {
+                run.setStartedAt(LocalDateTime.now());
+            }
+            run = save(run);
+
+            if (!process(run, progress, resumedFrom)) {
+                log.info("Charge run {} paused after line {}", id, progress.checkpointLine);
+                return;
+            }
+            Files.deleteIfExists(Path.of(run.getInputFile()));
+            progress.copyTo(run);
+            run.setStatus(ChargeRunStatus.COMPLETED);
+            run.setFinishedAt(LocalDateTime.now());
+            save(run);
+            log.info("Charge run {} finished: {} rows, {} rows/s, {}", id, run.getProcessedRows(),
+                    Math.round(progress.rowsPerSecond()), progress.outcomes());
+        } catch (IOException | RuntimeException ex) {
+            log.error("Charge run {} failed after line {}", id, progress.checkpointLine, ex);
+            progress.copyTo(run);
+            run.setStatus(ChargeRunStatus.FAILED);
+            run.setError(ex.getMessage());
+            run.setFinishedAt(LocalDateTime.now());
+            save(run);
+        } finally {
+            activeRuns.remove(id);
+        }
+    }
+
+    /**
+     * Charges the rows after the checkpoint chunk by chunk
+     *
+     * @param resumedFrom start of the run if it is being resumed, otherwise null
+     * @return false if the run was stopped before the end of its input
+     */
+    private boolean process(ChargeRun run, RunProgress progress, LocalDateTime resumedFrom) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(run.getInputFile()), StandardCharsets.UTF_8)) {
+            long line = 0;
+            while (line < run.getCheckpointLine() && reader.readLine() != null) {
+                line++;
+            }
+
+            long nextProgress = progress.processed() + progressInterval;
+            List<ChargeRow> chunk = new ArrayList<>(chunkSize);
+            String text;
+            do {
+                if (stopping) {
+                    return false;
+                }
+                text = reader.readLine();
+                if (text != null && isRow(++line, text)) {
+                    chunk.add(ChargeRow.parse(line, text));
+                }
+                if (chunk.size() == chunkSize || text == null) {
+                    // Only the first chunk after the checkpoint can hold rows charged before the restart
+                    chargeChunk(run.getKeyPrefix(), chunk, progress, resumedFrom);
+                    resumedFrom = null;
+                    chunk.clear();
+                    progress.checkpointLine = line;
+                    progress.copyTo(run);
+                    run = save(run);
+                    if (progress.processed() >= nextProgress) {
+                        log.info("Charge run {}: {} of {} rows, {} rows/s", run.getId(), progress.processed(),
+                                run.getTotalRows(), Math.round(progress.rowsPerSecond()));
+                        nextProgress += progressInterval;
+                    }
+                }
+            } while (text != null);
+            return true;
+        }
+    }
+
+    private void chargeChunk(String keyPrefix, List<ChargeRow> chunk, RunProgress progress,
+                             LocalDateTime resumedFrom) {
+        List<List<ChargeRow>> partitions = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (ChargeRow row : chunk) {
+            int partition = row.username() == null ? 0 : Math.floorMod(row.username().hashCode(), parallelism);
+            partitions.get(partition).add(row);
+        }
+
+        List<Future<?>> pending = new ArrayList<>(parallelism);
+        for (List<ChargeRow> partition : partitions) {
+            if (!partition.isEmpty()) {
+                pending.add(workers.submit(() -> partition.forEach(
+                        row -> progress.record(charge(keyPrefix, row, resumedFrom)))));
+            }
+        }
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while charging a chunk", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Charging a chunk failed", ex.getCause());
+        }
+    }
+
+    private ChargeOutcome charge(String keyPrefix, ChargeRow row, LocalDateTime resumedFrom) {
+        if (row.amount() == null) {
+            return ChargeOutcome.INVALID;
+        }
+        String idempotencyKey = keyPrefix + ":" + row.line();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                walletService.charge(row.username(), row.amount(), idempotencyKey);
+                return ChargeOutcome.CHARGED;
+            } catch (DuplicateTransactionException ex) {
+                return resumedFrom != null && chargedSince(idempotencyKey, resumedFrom)
+                        ? ChargeOutcome.CHARGED
+                        : ChargeOutcome.ALREADY_CHARGED;
+            } catch (InsufficientBalanceException ex) {
+                return ChargeOutcome.INSUFFICIENT_BALANCE;
+            } catch (UserNotFoundException ex) {
+                return ChargeOutcome.USER_NOT_FOUND;
+            } catch (VelocityLimitExceededException ex) {
+                // Expected for many rows of a large run; counted, not logged
+                return ChargeOutcome.VELOCITY_LIMITED;
+            } catch (IllegalArgumentException ex) {
+                return ChargeOutcome.INVALID;
+            } catch (ConcurrentUpdateException | TransientDataAccessException ex) {
+                if (attempt >= maxAttempts) {
+                    log.warn("Charge {} failed after {} attempts: {}", idempotencyKey, attempt, ex.getMessage());
+                    return ChargeOutcome.FAILED;
+                }
+                pause(attempt);
+            } catch (RuntimeException ex) {
+                log.warn("Charge {} failed: {}", idempotencyKey, ex.getMessage());
+                return ChargeOutcome.FAILED;
+            }
+        }
+    }
+
+    /**
+     * Whether the charge with this key was made by the run that started at the given time, rather
+     * than by an earlier run with the same key prefix; runs execute one at a time
+     */
+    private boolean chargedSince(String idempotencyKey, LocalDateTime startedAt) {
+        return transactionRepository.findByIdempotencyKey(idempotencyKey)
+                .map(Transaction::getCreatedAt)
+                .filter(createdAt -> !createdAt.isBefore(startedAt.truncatedTo(ChronoUnit.MILLIS)))
+                .isPresent();
+    }
+
+    /**
+     * Saves the run, retrying while another writer holds the database lock
+     */
+    private ChargeRun save(ChargeRun run) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return chargeRunRepository.save(run);
+            } catch (TransientDataAccessException ex) {
+                if (attempt >= maxAttempts) {
+                    throw ex;
+                }
+                pause(attempt);
+            }
+        }
+    }
+
+    /**
+     * Jittered exponential backoff, so partitions that collided on the database lock spread out
+     */
+    private static void pause(int attempt) {
+        long ceiling = Math.min(MAX_RETRY_BACKOFF_MILLIS, RETRY_BACKOFF_MILLIS << Math.min(attempt, 10));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a charge", ex);
+        }
+    }
+
+    private ChargeRunReport report(ChargeRun run) {
+        RunProgress progress = activeRuns.get(run.getId());
+        Map<ChargeOutcome, Long> outcomes;
+        Double rowsPerSecond = null;
+        if (progress != null) {
+            outcomes = progress.outcomes();
+            rowsPerSecond = progress.rowsPerSecond();
+        } else {
+            outcomes = new EnumMap<>(ChargeOutcome.class);
+            for (ChargeOutcome outcome : ChargeOutcome.values()) {
+                outcomes.put(outcome, run.getCount(outcome));
+            }
+        }
+        long processed = outcomes.values().stream().mapToLong(Long::longValue).sum();
+        return new ChargeRunReport(run.getId(), run.getStatus(), run.getKeyPrefix(), run.getTotalRows(), processed,
+                outcomes, rowsPerSecond, run.getError(), run.getCreatedAt(), run.getStartedAt(),
+                run.getFinishedAt());
+    }
+
+    /**
+     * The first line is a header if it is exactly {@code username,amount}; blank lines are ignored
+     */
+    private static boolean isRow(long line, String text) {
+        return !text.isBlank() && !(line == 1 && text.replace(" ", "").strip().equalsIgnoreCase("username,amount"));
+    }
+
+    /**
+     * One input row; a row that cannot be parsed has no amount
+     */
+    record ChargeRow(long line, String username, BigDecimal amount) {
+
+        static ChargeRow parse(long line, String text) {
+            int comma = text.indexOf(',');
+            String username = comma < 0 ? "" : text.substring(0, comma).strip();
+            if (username.isEmpty()) {
+                return new ChargeRow(line, null, null);
+            }
+            try {
+                return new ChargeRow(line, username, new BigDecimal(text.substring(comma + 1).strip()));
+            } catch (NumberFormatException ex) {
+                return new ChargeRow(line, username, null);
+            }
+        }
+    }
+
+    /**
+     * Live counts of a run while it executes, starting from its last checkpoint
+     */
+    private final class RunProgress {
+        private final Map<ChargeOutcome, LongAdder> counts = new EnumMap<>(ChargeOutcome.class);
+        private final long startNanos = System.nanoTime();
+        private final long processedAtStart;
+        private volatile long checkpointLine;
+
+        private RunProgress(ChargeRun run) {
+            for (ChargeOutcome outcome : ChargeOutcome.values()) {
+                LongAdder count = new LongAdder();
+                count.add(run.getCount(outcome));
+                counts.put(outcome, count);
+            }
+            this.processedAtStart = run.getProcessedRows();
+            this.checkpointLine = run.getCheckpointLine();
+        }
+
+        private void record(ChargeOutcome outcome) {
+            counts.get(outcome).increment();
+            outcomeCounters.get(outcome).increment();
+        }
+
+        private long processed() {
+            return counts.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        private Map<ChargeOutcome, Long> outcomes() {
+            Map<ChargeOutcome, Long> outcomes = new EnumMap<>(ChargeOutcome.class);
+            counts.forEach((outcome, count) -> outcomes.put(outcome, count.sum()));
+            return outcomes;
+        }
+
+        private double rowsPerSecond() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+            return (processed() - processedAtStart) * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /**
+         * Writes the counts and the line reached into the entity for the next checkpoint
+         */
+        private void copyTo(ChargeRun run) {
+            counts.forEach((outcome, count) -> run.setCount(outcome, count.sum()));
+            run.setCheckpointLine(checkpointLine);
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.ebra.wallet.cluster;
+
+import com.ebra.wallet.entity.HoldStatus;
+import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.entity.User;
+import com.ebra.wallet.repository.HoldRepository;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves accounts to their new owner after a membership change.
+ *
+ * <p>Accounts are read, sent, and once the new owner has committed them deleted in a second
+ * short transaction. No transaction is open during the call, so a slow owner does not hold
+ * SQLite's single write lock. An account that changed after it was read is kept and sent again
+ * on the next pass. The new owner inserts accounts it does not have, catches up accounts whose
+ * ledger is a prefix of the one sent, and reports any other account under the same username as
+ * a conflict, which the previous owner keeps; so a repeated handoff is harmless and a different
+ * account is never overwritten. The previous owner lists the accounts it keeps this way for an
+ * operator to reconcile and offers them again on every pass; meanwhile requests for the username
+ * go to the owner's account. Accounts move in the background sweep, or immediately when the new
+ * owner is asked for one it does not hold.
+ *
+ * <p>Hold ids are local to the node that issued them, so an account with held funds stays where
+ * its holds are and moves on a later pass once they are captured, released or expired; its
+ * resolved holds are deleted with it. The new owner likewise refuses to catch up an account
+ * that has held funds of its own. Until such an account moves, its holder announces it to the
+ * owner on every pass, and the owner sends the account's requests there, including attempts to
+ * create it again.
+ */
+@Service
+@ConditionalOnProperty(name = "wallet.cluster.enabled", havingValue = "true")
+public class AccountHandoffService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountHandoffService.class);
+
+    private static final int MAX_PULLED_TRACKED = 100_000;
+    // A holder that stops announcing an account for this many sweep intervals is forgotten
+    private static final int HOLDER_TTL_INTERVALS = 6;
+
+    private final ClusterMembership membership;
+    private final ClusterClient clusterClient;
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final HoldRepository holdRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration holderTtl;
+    private final Counter handedOff;
+    private final Counter received;
+    private final Counter conflicts;
+
+    // Usernames already pulled since the last membership change
+    private final Set<String> pulled = ConcurrentHashMap.newKeySet();
+    private volatile Instant pulledFor;
+    // Membership change the sweep has scanned every account for; null until the first sweep
+    private Instant sweptFor;
+    // Accounts this node no longer owns but still holds; retried on every sweep
+    private final Set<String> kept = ConcurrentHashMap.newKeySet();
+    // Accounts this node keeps because their owner refused them, by username
+    private final Map<String, HandoffConflict> refusedByOwner = new ConcurrentHashMap<>();
+    // Accounts this node owns that another node has announced it still holds
+    private final Map<String, Holder> heldElsewhere = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AccountHandoffService(ClusterMembership membership, ClusterClient clusterClient,
+                                 UserRepository userRepository, TransactionRepository transactionRepository,
+                                 HoldRepository holdRepository, PlatformTransactionManager transactionManager,
+                                 MeterRegistry registry,
+                                 @Value("${wallet.cluster.handoff-batch-size:100}") int batchSize,
+                                 @Value("${wallet.cluster.handoff-interval-millis:10000}") long intervalMillis) {
+        this.membership = membership;
+        this.clusterClient = clusterClient;
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.holdRepository = holdRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.holderTtl = Duration.ofMillis(intervalMillis * HOLDER_TTL_INTERVALS);
+        this.handedOff = Counter.builder("wallet.cluster.handoff.sent")
+                .description("Accounts handed to their new owner")
+                .register(registry);
+        this.received = Counter.builder("wallet.cluster.handoff.received")
+                .description("Accounts taken over from their previous owner")
+                .register(registry);
+        this.conflicts = Counter.builder("wallet.cluster.handoff.conflicts")
+                .description("Handed-off accounts refused because the new owner holds a different account")
+                .register(registry);
+        Gauge.builder("wallet.cluster.handoff.refused", refusedByOwner, Map::size)
+                .description("Accounts kept here because their owner refused them")
+                .register(registry);
+    }
+
+    /**
+     * Hands every local account this node no longer owns to its owner. Scans all accounts once
+     * after each membership change, then retries only the accounts it had to keep.
+     */
+    @Scheduled(fixedDelayString = "${wallet.cluster.handoff-interval-millis:10000}")
+    public synchronized void sweep() {
+        Instant changedAt = membership.getChangedAt();
+        if (changedAt.equals(sweptFor)) {
+            handOffAll(List.copyOf(kept));
+            return;
+        }
+
+        kept.removeIf(membership::isLocal);
+        refusedByOwner.keySet().removeIf(membership::isLocal);
+        long lastId = 0;
+        List<User> page;
+        do {
+            page = userRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+            List<String> usernames = new ArrayList<>(page.size());
+            for (User user : page) {
+                usernames.add(user.getUsername());
+                lastId = user.getId();
+            }
+            if (!handOffAll(usernames)) {
+                return;
+            }
+        } while (page.size() == batchSize);
+        sweptFor = changedAt;
+    }
+
+    /**
+     * Hands one account to its owner now, if this node still holds it and no longer owns it
+     *
+     * @return whether this node still holds the account and serves its requests
+     */
+    public boolean release(String username) {
+        if (membership.isLocal(username)) {
+            return false;
+        }
+        handOff(membership.ownerOf(username), List.of(username));
+        return isKeptHere(username);
+    }
+
+    /**
+     * Whether this node still holds an account it no longer owns and its owner has not refused;
+     * requests for it are served here
+     */
+    public boolean isKeptHere(String username) {
+        return kept.contains(username) && !refusedByOwner.containsKey(username);
+    }
+
+    /**
+     * Lists the accounts this node keeps because their owner refused them, for an operator to reconcile
+     */
+    public List<HandoffConflict> getRefused() {
+        return refusedByOwner.values().stream()
+                .sorted(Comparator.comparing(HandoffConflict::username))
+                .toList();
+    }
+
+    /**
+     * Returns the node still holding an account this node owns, or null if it is held here
+     */
+    public String holderOf(String username) {
+        Holder holder = heldElsewhere.get(username);
+        if (holder == null) {
+            return null;
+        }
+        if (System.nanoTime() - holder.announcedAtNanos() > holderTtl.toNanos()) {
+            heldElsewhere.remove(username, holder);
+            return null;
+        }
+        return holder.node();
+    }
+
+    /**
+     * Records accounts of this node that another node keeps for now
+     */
+    public void recordHeld(HeldAccounts held) {
+        long now = System.nanoTime();
+        for (String username : held.usernames()) {
+            heldElsewhere.put(username, new Holder(held.node(), now));
+        }
+    }
+
+    /**
+     * Makes sure an account this node owns is not still held by its previous owner, pulling it
+     * over once per membership change
+     */
+    public void pullIfMoved(String username) {
+        String previousOwner = membership.previousOwnerOf(username);
+        if (previousOwner == null || pulled.contains(username)) {
+            return;
+        }
+        Instant changedAt = membership.getChangedAt();
+        if (!changedAt.equals(pulledFor) || pulled.size() >= MAX_PULLED_TRACKED) {
+            pulled.clear();
+            pulledFor = changedAt;
+        }
+        try {
+            if (clusterClient.requestRelease(membership.addressOfAny(previousOwner), username)) {
+                recordHeld(new HeldAccounts(previousOwner, List.of(username)));
+            }
+            pulled.add(username);
+        } catch (IOException ex) {
+            log.warn("Could not pull {} from {}: {}", username, previousOwner, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stores accounts handed over by their previous owner. An account this node already has is
+     * only updated if it is the same account with no history or holds of its own since it was
+     * handed over.
+     */
+    public HandoffResult accept(List<AccountTransfer> accounts) {
+        List<String> refused = new ArrayList<>();
+        Integer accepted = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (AccountTransfer account : accounts) {
+                Optional<User> existing = userRepository.findByUsername(account.username());
+                if (existing.isEmpty()) {
+                    User user = new User(account.username());
+                    user.setCreatedAt(account.createdAt());
+                    storeAccount(user, account, 0);
+                    count++;
+                    continue;
+                }
+
+                User user = existing.get();
+                List<Transaction> ledger = transactionRepository.findByUserOrderByIdAsc(user);
+                if (!isSameAccount(user, account) || !isPrefix(ledger, account.ledger())) {
+                    refused.add(account.username());
+                } else if (ledger.size() < account.ledger().size() && hasHolds(user)) {
+                    // Its holds were placed against the balance this node has
+                    refused.add(account.username());
+                } else if (ledger.size() < account.ledger().size()) {
+                    // Changed on the previous owner after an earlier handoff of it was accepted
+                    storeAccount(user, account, ledger.size());
+                    count++;
+                }
+            }
+            return count;
+        });
+        received.increment(accepted);
+        for (AccountTransfer account : accounts) {
+            if (!refused.contains(account.username())) {
+                heldElsewhere.remove(account.username());
+            }
+        }
+        if (!refused.isEmpty()) {
+            conflicts.increment(refused.size());
+            log.warn("Refused handoff of {}: a different account, or the same one with history or holds of its " +
+                    "own, exists here", refused);
+        }
+        return new HandoffResult(accepted, refused);
+    }
+
+    private void storeAccount(User user, AccountTransfer account, int knownEntries) {
+        user.setBalance(account.balance());
+        user.setVelocityTier(account.velocityTier());
+        user.setUpdatedAt(account.updatedAt());
+        user = userRepository.save(user);
+
+        for (AccountTransfer.LedgerEntry entry : account.ledger().subList(knownEntries, account.ledger().size())) {
+            if (transactionRepository.existsByIdempotencyKey(entry.idempotencyKey())) {
+                continue;
+            }
+            Transaction transaction = new Transaction(user, entry.type(), entry.amount(),
+                    entry.balanceBefore(), entry.balanceAfter(), entry.idempotencyKey());
+            transaction.setCreatedAt(entry.createdAt());
+            transactionRepository.save(transaction);
+        }
+    }
+
+    // Timestamps are stored to the millisecond
+    private static boolean isSameAccount(User user, AccountTransfer account) {
+        return user.getCreatedAt().truncatedTo(ChronoUnit.MILLIS)
+                .equals(account.createdAt().truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    private boolean hasHolds(User user) {
+        return user.getHeldBalance().signum() != 0 || holdRepository.existsByUserAndStatus(user, HoldStatus.ACTIVE);
+    }
+
+    private static boolean isPrefix(List<Transaction> ledger, List<AccountTransfer.LedgerEntry> sent) {
+        if (ledger.size() > sent.size()) {
+            return false;
+        }
+        for (int i = 0; i < ledger.size(); i++) {
+            if (!ledger.get(i).getIdempotencyKey().equals(sent.get(i).idempotencyKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands the given accounts this node no longer owns to their owners, in batches
+     *
+     * @return false if an owner could not be reached; the sweep tries again on its next run
+     */
+    private boolean handOffAll(Collection<String> usernames) {
+        Map<String, List<String>> byOwner = new HashMap<>();
+        for (String username : usernames) {
+            if (membership.isLocal(username)) {
+                kept.remove(username);
+                refusedByOwner.remove(username);
+            } else {
+                byOwner.computeIfAbsent(membership.ownerOf(username), key -> new ArrayList<>()).add(username);
+            }
+        }
+        for (Map.Entry<String, List<String>> owned : byOwner.entrySet()) {
+            List<String> batch = owned.getValue();
+            for (int from = 0; from < batch.size(); from += batchSize) {
+                try {
+                    handOff(owned.getKey(), batch.subList(from, Math.min(from + batchSize, batch.size())));
+                } catch (RuntimeException ex) {
+                    log.warn("Handoff of {} accounts to {} failed, will retry: {}",
+                            batch.size(), owned.getKey(), ex.getMessage());
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends accounts to their owner and deletes the ones it committed. The rest are kept for the
+     * next pass, and those kept for their holds are announced to the owner.
+     */
+    private void handOff(String owner, List<String> usernames) {
+        URI address = membership.addressOf(owner);
+        List<String> held = new ArrayList<>();
+        Set<String> refused = ConcurrentHashMap.newKeySet();
+        Set<String> present = ConcurrentHashMap.newKeySet();
+        List<AccountTransfer> accounts = transactionTemplate.execute(status -> {
+            List<AccountTransfer> read = new ArrayList<>(usernames.size());
+            for (String username : usernames) {
+                Optional<User> user = userRepository.findByUsername(username);
+                if (user.isEmpty()) {
+                    continue;
+                }
+                present.add(username);
+                if (hasHolds(user.get())) {
+                    held.add(username);
+                } else {
+                    read.add(AccountTransfer.of(user.get(), transactionRepository.findByUserOrderByIdAsc(user.get())));
+                }
+            }
+            return read;
+        });
+
+        if (!accounts.isEmpty()) {
+            HandoffResult result = call(() -> clusterClient.sendAccounts(address, accounts));
+            refused.addAll(result.conflicts());
+            List<String> deleted = transactionTemplate.execute(status -> {
+                List<String> done = new ArrayList<>();
+                for (AccountTransfer account : accounts) {
+                    if (refused.contains(account.username())) {
+                        continue;
+                    }
+                    Optional<User> user = userRepository.findByUsername(account.username());
+                    if (user.isEmpty()) {
+                        continue;
+                    }
+                    List<Transaction> ledger = transactionRepository.findByUserOrderByIdAsc(user.get());
+                    if (hasHolds(user.get())) {
+                        // Held while it was sent
+                        held.add(account.username());
+                        continue;
+                    }
+                    if (!AccountTransfer.of(user.get(), ledger).equals(account)) {
+                        // Written to after it was read; the owner catches up on the next pass
+                        continue;
+                    }
+                    holdRepository.deleteByUser(user.get());
+                    transactionRepository.deleteAllInBatch(ledger);
+                    userRepository.delete(user.get());
+                    done.add(account.username());
+                }
+                return done;
+            });
+            handedOff.increment(deleted.size());
+            present.removeAll(deleted);
+        }
+
+        Instant now = Instant.now();
+        for (AccountTransfer account : accounts) {
+            String username = account.username();
+            if (!refused.contains(username) || !present.contains(username)) {
+                refusedByOwner.remove(username);
+            } else if (!refusedByOwner.containsKey(username)
+                    || !refusedByOwner.get(username).owner().equals(owner)) {
+                log.warn("{} refused {}; keeping it here until it is reconciled", owner, username);
+                refusedByOwner.put(username, new HandoffConflict(username, owner, now));
+            }
+        }
+        for (String username : usernames) {
+            if (present.contains(username)) {
+                kept.add(username);
+            } else {
+                kept.remove(username);
+                refusedByOwner.remove(username);
+            }
+        }
+        // The owner has an account of its own under a refused username, so it keeps serving that one
+        held.removeIf(refusedByOwner::containsKey);
+        if (!held.isEmpty()) {
+            log.debug("Keeping {} here until their holds are resolved", held);
+            call(() -> {
+                clusterClient.announceHeld(address, new HeldAccounts(membership.getNodeId(), held));
+                return null;
+            });
+        }
+    }
+
+    private static <T> T call(ClusterCall<T> call) {
+        try {
+            return call.run();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing off accounts", ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ClusterCall<T> {
+        T run() throws IOException, InterruptedException;
+    }
+
+    private record Holder(String node, long announcedAtNanos) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.ebra.wallet.cluster;
+
+import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.entity.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * An account and its ledger as moved from its previous owner to its new owner
+ */
+public record AccountTransfer(String username, BigDecimal balance, String velocityTier, LocalDateTime createdAt,
+                              LocalDateTime updatedAt, List<LedgerEntry> ledger) {
+
+    public record LedgerEntry(TransactionType type, BigDecimal amount, BigDecimal balanceBefore,
+                              BigDecimal balanceAfter, String idempotencyKey, LocalDateTime createdAt) {
+
+        static LedgerEntry of(Transaction transaction) {
+            return new LedgerEntry(transaction.getType(), transaction.getAmount(), transaction.getBalanceBefore(),
+                    transaction.getBalanceAfter(), transaction.getIdempotencyKey(), transaction.getCreatedAt());
+        }
+    }
+
+    static AccountTransfer of(User user, List<Transaction> ledger) {
+        return new AccountTransfer(user.getUsername(), user.getBalance(), user.getVelocityTier(), user.getCreatedAt(),
+                user.getUpdatedAt(), ledger.stream().map(LedgerEntry::of).toList());
+    }
+}
@@ -0,0 +1,116 @@
+package com.ebra.wallet.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * HTTP calls between cluster nodes. One shared client keeps connections to peers alive.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.cluster.enabled", havingValue = "true")
+public class ClusterClient {
+
+    /** Marks a request already forwarded once; the receiver handles it instead of forwarding again */
+    public static final String FORWARDED_BY_HEADER = "X-Wallet-Forwarded-By";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final ClusterMembership membership;
+    private final Duration requestTimeout;
+
+    @Autowired
+    public ClusterClient(ObjectMapper objectMapper, ClusterMembership membership,
+                         @Value("${wallet.cluster.connect-timeout:2s}") Duration connectTimeout,
+                         @Value("${wallet.cluster.request-timeout:10s}") Duration requestTimeout) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.objectMapper = objectMapper;
+        this.membership = membership;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Sends a client request on to the node that owns its account and returns the owner's response as is
+     */
+    public HttpResponse<byte[]> forward(URI node, String method, String pathAndQuery, String contentType,
+                                        byte[] body) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(node.resolve(pathAndQuery))
+                .timeout(requestTimeout)
+                .header(FORWARDED_BY_HEADER, membership.getNodeId())
+                .method(method, body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Hands accounts to their new owner; returns only once the owner has committed them
+     */
+    public HandoffResult sendAccounts(URI node, List<AccountTransfer> accounts)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(node.resolve("/api/wallet/cluster/handoff"))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(accounts)))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, node);
+        return objectMapper.readValue(response.body(), HandoffResult.class);
+    }
+
+    /**
+     * Asks the previous owner of an account to hand it over now rather than on its next sweep
+     *
+     * @return whether the previous owner keeps the account for now, answered with 409 Conflict
+     */
+    public boolean requestRelease(URI node, String username) throws IOException, InterruptedException {
+        String path = "/api/wallet/cluster/release/" + UriUtils.encodePathSegment(username, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(node.resolve(path))
+                .timeout(requestTimeout)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == HttpStatus.CONFLICT.value()) {
+            return true;
+        }
+        expectSuccess(response, node);
+        return false;
+    }
+
+    /**
+     * Tells the owner of accounts that this node keeps them for now, so it sends their requests here
+     */
+    public void announceHeld(URI node, HeldAccounts held) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(node.resolve("/api/wallet/cluster/held"))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(held)))
+                .build();
+        expectSuccess(httpClient.send(request, HttpResponse.BodyHandlers.ofString()), node);
+    }
+
+    private static void expectSuccess(HttpResponse<String> response, URI node) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Node " + node + " answered " + response.statusCode() + ": " + response.body());
+        }
+    }
+}
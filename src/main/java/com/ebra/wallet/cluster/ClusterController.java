@@ -0,0 +1,79 @@
+package com.ebra.wallet.cluster;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/wallet/cluster")
+@ConditionalOnProperty(name = "wallet.cluster.enabled", havingValue = "true")
+public class ClusterController {
+
+    private final ClusterMembership membership;
+    private final AccountHandoffService handoffService;
+
+    @Autowired
+    public ClusterController(ClusterMembership membership, AccountHandoffService handoffService) {
+        this.membership = membership;
+        this.handoffService = handoffService;
+    }
+
+    /**
+     * Shows this node's view of the cluster, and optionally which node owns a username
+     * GET /api/wallet/cluster/members?username=...
+     */
+    @GetMapping("/members")
+    public ResponseEntity<ClusterView> getMembers(@RequestParam(value = "username", required = false) String username) {
+        return ResponseEntity.ok(new ClusterView(membership.getNodeId(), membership.getRing().members(),
+                username == null ? null : membership.ownerOf(username)));
+    }
+
+    /**
+     * Takes over accounts handed off by their previous owner
+     * POST /api/wallet/cluster/handoff
+     */
+    @PostMapping("/handoff")
+    public ResponseEntity<HandoffResult> acceptHandoff(@RequestBody List<AccountTransfer> accounts) {
+        return ResponseEntity.ok(handoffService.accept(accounts));
+    }
+
+    /**
+     * Hands one account to its new owner now; 409 Conflict if this node has to keep it for now
+     * POST /api/wallet/cluster/release/{username}
+     */
+    @PostMapping("/release/{username}")
+    public ResponseEntity<Void> release(@PathVariable String username) {
+        if (handoffService.release(username)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Records accounts of this node that another node keeps for now
+     * POST /api/wallet/cluster/held
+     */
+    @PostMapping("/held")
+    public ResponseEntity<Void> recordHeld(@RequestBody HeldAccounts held) {
+        handoffService.recordHeld(held);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Lists accounts kept on this node because their owner refused them, for an operator to reconcile
+     * GET /api/wallet/cluster/conflicts
+     */
+    @GetMapping("/conflicts")
+    public ResponseEntity<List<HandoffConflict>> getConflicts() {
+        return ResponseEntity.ok(handoffService.getRefused());
+    }
+
+    public record ClusterView(String nodeId, Map<String, URI> members, String owner) {
+    }
+}
@@ -0,0 +1,224 @@
+package com.ebra.wallet.cluster;
+
+import com.ebra.wallet.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Routes account requests to the node that owns the username. Mutations carry the username
+ * in their JSON body, reads in their path. Requests for accounts owned elsewhere are proxied
+ * to the owner; event streams are redirected there instead, so no node holds a stream open
+ * on another node's behalf. New holds are routed like other mutations; later calls on a hold go
+ * to the node named in its reference, the node that issued it, which keeps the account until
+ * its holds are resolved. Until then the owner sends all of the account's requests on to that
+ * node, which handles them, or returns them if it has handed the account over meanwhile; so a
+ * request takes at most two hops.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.cluster.enabled", havingValue = "true")
+public class ClusterForwardingFilter extends OncePerRequestFilter {
+
+    private static final Set<String> MUTATION_PATHS = Set.of("/api/wallet/account", "/api/wallet/topup",
+            "/api/wallet/charge", "/api/wallet/holds");
+    private static final Pattern ACCOUNT_PATH = Pattern.compile("^/api/wallet/account/([^/]+)(/.*)?$");
+    private static final Pattern HOLD_PATH = Pattern.compile("^/api/wallet/holds/([^/]+)(/.*)?$");
+    private static final Set<String> RELAYED_HEADERS = Set.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.RETRY_AFTER);
+
+    private final ClusterMembership membership;
+    private final ClusterClient clusterClient;
+    private final AccountHandoffService handoffService;
+    private final ObjectMapper objectMapper;
+    private final Counter forwarded;
+
+    @Autowired
+    public ClusterForwardingFilter(ClusterMembership membership, ClusterClient clusterClient,
+                                   AccountHandoffService handoffService, ObjectMapper objectMapper,
+                                   MeterRegistry registry) {
+        this.membership = membership;
+        this.clusterClient = clusterClient;
+        this.handoffService = handoffService;
+        this.objectMapper = objectMapper;
+        this.forwarded = Counter.builder("wallet.cluster.forwarded")
+                .description("Requests proxied to the node owning the account or hold")
+                .register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        byte[] body = new byte[0];
+        String username = null;
+
+        Matcher holdPath = HOLD_PATH.matcher(path);
+        if (holdPath.matches() && request.getHeader(ClusterClient.FORWARDED_BY_HEADER) == null) {
+            String issuer = HoldReferences.nodeOf(UriUtils.decode(holdPath.group(1), StandardCharsets.UTF_8));
+            URI address = issuer == null || issuer.equals(membership.getNodeId()) ? null
+                    : membership.addressOfAny(issuer);
+            if (address == null) {
+                // Ours, or not routable; the controller answers
+                chain.doFilter(request, response);
+                return;
+            }
+            forward(address, request, pathAndQuery(request, path), request.getInputStream().readAllBytes(),
+                    response);
+            return;
+        }
+
+        if ("POST".equals(request.getMethod()) && MUTATION_PATHS.contains(path)) {
+            body = request.getInputStream().readAllBytes();
+            username = usernameFromBody(body);
+            request = new CachedBodyRequest(request, body);
+        } else if ("GET".equals(request.getMethod())) {
+            Matcher matcher = ACCOUNT_PATH.matcher(path);
+            if (matcher.matches()) {
+                username = UriUtils.decode(matcher.group(1), StandardCharsets.UTF_8);
+            }
+        }
+
+        String forwardedBy = request.getHeader(ClusterClient.FORWARDED_BY_HEADER);
+        URI target = null;
+        if (username != null && membership.isLocal(username)) {
+            handoffService.pullIfMoved(username);
+            String holder = handoffService.holderOf(username);
+            if (holder != null && !holder.equals(forwardedBy)) {
+                // The previous owner keeps the account until its holds are resolved
+                target = membership.addressOfAny(holder);
+            }
+        } else if (username != null && !handoffService.isKeptHere(username)) {
+            String owner = membership.ownerOf(username);
+            if (forwardedBy == null || forwardedBy.equals(owner)) {
+                // From its owner only if this node has handed the account over since
+                target = membership.addressOf(owner);
+            }
+        }
+
+        if (target == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String pathAndQuery = pathAndQuery(request, path);
+        if (path.endsWith("/events")) {
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION, target.resolve(pathAndQuery).toString());
+            return;
+        }
+        forward(target, request, pathAndQuery, body, response);
+    }
+
+    private void forward(URI node, HttpServletRequest request, String pathAndQuery, byte[] body,
+                         HttpServletResponse response) throws IOException {
+        HttpResponse<byte[]> ownerResponse;
+        try {
+            ownerResponse = clusterClient.forward(node, request.getMethod(), pathAndQuery,
+                    request.getContentType(), body);
+        } catch (IOException ex) {
+            writeError(response, "Node " + node + " is unavailable");
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            writeError(response, "Interrupted while forwarding to " + node);
+            return;
+        }
+        forwarded.increment();
+
+        response.setStatus(ownerResponse.statusCode());
+        ownerResponse.headers().map().forEach((name, values) -> {
+            if (RELAYED_HEADERS.stream().anyMatch(name::equalsIgnoreCase)) {
+                values.forEach(value -> response.addHeader(name, value));
+            }
+        });
+        response.getOutputStream().write(ownerResponse.body());
+    }
+
+    private static String pathAndQuery(HttpServletRequest request, String path) {
+        return request.getQueryString() == null ? path : path + "?" + request.getQueryString();
+    }
+
+    private String usernameFromBody(byte[] body) {
+        try {
+            JsonNode username = objectMapper.readTree(body).get("username");
+            return username != null && username.isTextual() ? username.asText() : null;
+        } catch (IOException ex) {
+            // Let the controller reject the malformed body
+            return null;
+        }
+    }
+
+    private void writeError(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse("NODE_UNAVAILABLE", message, LocalDateTime.now()));
+    }
+
+    /**
+     * Replays a body that was already read to find the username
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+    }
+}
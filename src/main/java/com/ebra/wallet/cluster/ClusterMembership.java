@@ -0,0 +1,170 @@
+package com.ebra.wallet.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Static cluster membership read from a members file, one {@code node-id=http://host:port}
+ * per line. The file is re-read when it changes; every node must see the same file.
+ *
+ * <p>After a change the previous ring is kept for the handoff window, so a new owner knows
+ * which node may still hold an account it has just taken over.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.cluster.enabled", havingValue = "true")
+public class ClusterMembership {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterMembership.class);
+
+    private final String nodeId;
+    private final Path membersFile;
+    private final int virtualNodes;
+    private final Duration handoffWindow;
+
+    private volatile State state;
+    private FileTime loadedModifiedTime;
+
+    @Autowired
+    public ClusterMembership(@Value("${wallet.cluster.node-id}") String nodeId,
+                             @Value("${wallet.cluster.members-file}") Path membersFile,
+                             @Value("${wallet.cluster.virtual-nodes:128}") int virtualNodes,
+                             @Value("${wallet.cluster.handoff-window:5m}") Duration handoffWindow) {
+        this.nodeId = nodeId;
+        this.membersFile = membersFile;
+        this.virtualNodes = virtualNodes;
+        this.handoffWindow = handoffWindow;
+        this.loadedModifiedTime = modifiedTime();
+        HashRing ring = new HashRing(readMembers(), virtualNodes);
+        requireSelf(ring);
+        this.state = new State(ring, null, Instant.now());
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public HashRing getRing() {
+        return state.ring();
+    }
+
+    /**
+     * Returns the id of the node owning the username
+     */
+    public String ownerOf(String username) {
+        return state.ring().owner(username);
+    }
+
+    public boolean isLocal(String username) {
+        return nodeId.equals(ownerOf(username));
+    }
+
+    public URI addressOf(String node) {
+        return state.ring().address(node);
+    }
+
+    /**
+     * Returns the node that owned the username before the last membership change, if that was
+     * another node and the change is recent enough that it may still hold the account
+     */
+    public String previousOwnerOf(String username) {
+        State current = state;
+        if (current.previous() == null || current.changedAt().plus(handoffWindow).isBefore(Instant.now())) {
+            return null;
+        }
+        String previousOwner = current.previous().owner(username);
+        return previousOwner.equals(current.ring().owner(username)) ? null : previousOwner;
+    }
+
+    /**
+     * Address of a node in the current or the previous ring; a node that just left is only in the previous one
+     */
+    public URI addressOfAny(String node) {
+        State current = state;
+        URI address = current.ring().address(node);
+        return address != null || current.previous() == null ? address : current.previous().address(node);
+    }
+
+    /**
+     * Re-reads the members file when it has changed
+     */
+    @Scheduled(fixedDelayString = "${wallet.cluster.refresh-interval-millis:5000}")
+    public synchronized void refresh() {
+        FileTime modified = modifiedTime();
+        if (modified.equals(loadedModifiedTime)) {
+            return;
+        }
+        // A node missing from the new file is leaving: it forwards everything and hands its accounts off
+        HashRing ring;
+        try {
+            ring = new HashRing(readMembers(), virtualNodes);
+        } catch (RuntimeException ex) {
+            log.warn("Ignoring invalid cluster members file {}: {}", membersFile, ex.getMessage());
+            return;
+        }
+        loadedModifiedTime = modified;
+        if (!ring.members().equals(state.ring().members())) {
+            log.info("Cluster membership changed to {}", ring.members().keySet());
+            state = new State(ring, state.ring(), Instant.now());
+        }
+    }
+
+    /**
+     * When membership last changed; lets the handoff sweep tell whether it has caught up
+     */
+    public Instant getChangedAt() {
+        return state.changedAt();
+    }
+
+    private Map<String, URI> readMembers() {
+        Map<String, URI> members = new LinkedHashMap<>();
+        try {
+            for (String line : Files.readAllLines(membersFile)) {
+                String entry = line.strip();
+                if (entry.isEmpty() || entry.startsWith("#")) {
+                    continue;
+                }
+                int separator = entry.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Expected node-id=url but got: " + entry);
+                }
+                members.put(entry.substring(0, separator).strip(), URI.create(entry.substring(separator + 1).strip()));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read cluster members file " + membersFile, ex);
+        }
+        return members;
+    }
+
+    private void requireSelf(HashRing ring) {
+        if (ring.address(nodeId) == null) {
+            throw new IllegalArgumentException("Node " + nodeId + " is not listed in " + membersFile);
+        }
+    }
+
+    private FileTime modifiedTime() {
+        try {
+            return Files.getLastModifiedTime(membersFile);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read cluster members file " + membersFile, ex);
+        }
+    }
+
+    private record State(HashRing ring, HashRing previous, Instant changedAt) {
+    }
+}
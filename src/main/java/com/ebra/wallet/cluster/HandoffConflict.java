@@ -0,0 +1,9 @@
+package com.ebra.wallet.cluster;
+
+import java.time.Instant;
+
+/**
+ * An account kept on this node because its owner holds a different account under the same username
+ */
+public record HandoffConflict(String username, String owner, Instant refusedSince) {
+}
@@ -0,0 +1,10 @@
+package com.ebra.wallet.cluster;
+
+import java.util.List;
+
+/**
+ * What the new owner did with handed-off accounts. Conflicting accounts exist on the new owner
+ * with a different history; their previous owner keeps its copy.
+ */
+public record HandoffResult(int accepted, List<String> conflicts) {
+}
@@ -0,0 +1,63 @@
+package com.ebra.wallet.cluster;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring of cluster members. Each member is placed at
+ * {@code virtualNodes} points; a key belongs to the first point at or after its hash.
+ * Adding or removing a member only moves the keys of the ranges it gains or loses.
+ */
+public final class HashRing {
+
+    private final Map<String, URI> members;
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    public HashRing(Map<String, URI> members, int virtualNodes) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one member");
+        }
+        this.members = Collections.unmodifiableMap(new LinkedHashMap<>(members));
+        for (String nodeId : members.keySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // On the rare hash collision the smaller node id wins, so every node builds the same ring
+                points.merge(hash(nodeId + "#" + i), nodeId, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the member owning the key
+     */
+    public String owner(String key) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    public URI address(String nodeId) {
+        return members.get(nodeId);
+    }
+
+    public Map<String, URI> members() {
+        return members;
+    }
+
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("MD5 is not available", ex);
+        }
+    }
+}
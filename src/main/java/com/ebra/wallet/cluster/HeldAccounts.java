@@ -0,0 +1,9 @@
+package com.ebra.wallet.cluster;
+
+import java.util.List;
+
+/**
+ * Accounts a node no longer owns but keeps for now, announced to their owner
+ */
+public record HeldAccounts(String node, List<String> usernames) {
+}
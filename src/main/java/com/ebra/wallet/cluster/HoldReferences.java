@@ -0,0 +1,50 @@
+package com.ebra.wallet.cluster;
+
+import com.ebra.wallet.exception.HoldNotFoundException;
+
+/**
+ * Hold references as used in a cluster, {@code <node>-<id>}. Hold ids are only unique within
+ * the node that issued them, so the reference names that node and requests can be routed to it.
+ */
+public final class HoldReferences {
+
+    private HoldReferences() {
+    }
+
+    public static String of(String node, Long holdId) {
+        return node + "-" + holdId;
+    }
+
+    /**
+     * Returns the node that issued the hold, or null if the reference does not name one
+     */
+    public static String nodeOf(String reference) {
+        int dash = reference.lastIndexOf('-');
+        return dash > 0 ? reference.substring(0, dash) : null;
+    }
+
+    /**
+     * Returns the local id of a hold issued by this node
+     *
+     * @param node this node's id, or null outside a cluster, where references are plain ids
+     */
+    public static Long idOf(String reference, String node) {
+        String id = reference;
+        if (node != null) {
+            String issuer = nodeOf(reference);
+            if (issuer == null) {
+                throw new IllegalArgumentException("Hold reference must name the issuing node, as in " +
+                        of(node, 1L));
+            }
+            if (!issuer.equals(node)) {
+                throw new HoldNotFoundException("Hold not found: " + reference);
+            }
+            id = reference.substring(issuer.length() + 1);
+        }
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid hold reference: " + reference);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.ebra.wallet.controller;
+
+import com.ebra.wallet.admission.AdmissionLimiter;
+import com.ebra.wallet.admission.AdmissionLimits;
+import com.ebra.wallet.backup.BackupService;
+import com.ebra.wallet.billing.ChargeRunService;
+import com.ebra.wallet.dto.BackupReport;
+import com.ebra.wallet.dto.BalanceQueryBatch;
+import com.ebra.wallet.dto.ChargeRunReport;
+import com.ebra.wallet.dto.ImportReport;
+import com.ebra.wallet.dto.PointInTimeBalance;
+import com.ebra.wallet.dto.StatementProfileReport;
+import com.ebra.wallet.dto.VelocityUsage;
+import com.ebra.wallet.profiling.StatementProfiler;
+import com.ebra.wallet.service.AccountImportService;
+import com.ebra.wallet.service.BalanceHistoryService;
+import com.ebra.wallet.service.ImportFormat;
+import com.ebra.wallet.velocity.VelocityLimiter;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/wallet/admin")
+public class AdminController {
+
+    private final AdmissionLimiter admissionLimiter;
+    private final AccountImportService accountImportService;
+    private final ChargeRunService chargeRunService;
+    private final StatementProfiler statementProfiler;
+    private final BalanceHistoryService balanceHistoryService;
+    private final VelocityLimiter velocityLimiter;
+    private final BackupService backupService;
+
+    @Autowired
+    public AdminController(AdmissionLimiter admissionLimiter, AccountImportService accountImportService,
+                           ChargeRunService chargeRunService, StatementProfiler statementProfiler,
+                           BalanceHistoryService balanceHistoryService, VelocityLimiter velocityLimiter,
+                           BackupService backupService) {
+        this.admissionLimiter = admissionLimiter;
+        this.accountImportService = accountImportService;
+        this.chargeRunService = chargeRunService;
+        this.statementProfiler = statementProfiler;
+        this.balanceHistoryService = balanceHistoryService;
+        this.velocityLimiter = velocityLimiter;
+        this.backupService = backupService;
+    }
+
+    /**
+     * Gets the current admission limits
+     * GET /api/wallet/admin/admission
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<AdmissionLimits> getAdmissionLimits() {
+        return ResponseEntity.ok(admissionLimiter.getLimits());
+    }
+
+    /**
+     * Replaces the admission limits at runtime
+     * PUT /api/wallet/admin/admission
+     */
+    @PutMapping("/admission")
+    public ResponseEntity<AdmissionLimits> updateAdmissionLimits(@RequestBody AdmissionLimits limits) {
+        admissionLimiter.updateLimits(limits);
+        return ResponseEntity.ok(admissionLimiter.getLimits());
+    }
+
+    /**
+     * Bulk-imports accounts with opening balances, streamed from the request body
+     * POST /api/wallet/admin/import (text/csv or application/x-ndjson)
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", ImportFormat.NDJSON_MEDIA_TYPE})
+    public ResponseEntity<ImportReport> importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                       InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        return ResponseEntity.ok(accountImportService.importAccounts(reader, ImportFormat.fromContentType(contentType)));
+    }
+
+    /**
+     * Submits a bulk charge run of username,amount rows, streamed from the request body.
+     * The run executes in the background; poll its report for progress.
+     * POST /api/wallet/admin/charge-runs?keyPrefix=... (text/csv)
+     */
+    @PostMapping(value = "/charge-runs", consumes = "text/csv")
+    public ResponseEntity<ChargeRunReport> submitChargeRun(@RequestParam("keyPrefix") String keyPrefix,
+                                                           InputStream body) throws IOException {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(chargeRunService.submit(body, keyPrefix));
+    }
+
+    /**
+     * Gets the progress and outcome breakdown of a charge run
+     * GET /api/wallet/admin/charge-runs/{id}
+     */
+    @GetMapping("/charge-runs/{id}")
+    public ResponseEntity<ChargeRunReport> getChargeRun(@PathVariable Long id) {
+        return ResponseEntity.ok(chargeRunService.getReport(id));
+    }
+
+    /**
+     * Gets what a user has charged within the velocity window and the limits of their tier
+     * GET /api/wallet/admin/velocity/{username}
+     */
+    @GetMapping("/velocity/{username}")
+    public ResponseEntity<VelocityUsage> getVelocityUsage(@PathVariable String username) {
+        return ResponseEntity.ok(velocityLimiter.getUsage(username));
+    }
+
+    /**
+     * Moves a user to another velocity tier; without a tier, back to the default one
+     * PUT /api/wallet/admin/velocity/{username}?tier=premium
+     */
+    @PutMapping("/velocity/{username}")
+    public ResponseEntity<VelocityUsage> updateVelocityTier(
+            @PathVariable String username,
+            @RequestParam(value = "tier", required = false) String tier) {
+        return ResponseEntity.ok(velocityLimiter.updateTier(username, tier));
+    }
+
+    /**
+     * Gets the balance of each account at each given time, answered in the order of the queries.
+     * Reads this node's ledger only.
+     * POST /api/wallet/admin/balances
+     */
+    @PostMapping("/balances")
+    public ResponseEntity<List<PointInTimeBalance>> getBalancesAt(@Valid @RequestBody BalanceQueryBatch batch) {
+        return ResponseEntity.ok(balanceHistoryService.getBalancesAt(batch.getQueries()));
+    }
+
+    /**
+     * Starts an online backup of this node's database; poll the backup list for its outcome
+     * POST /api/wallet/admin/backups
+     */
+    @PostMapping("/backups")
+    public ResponseEntity<BackupReport> startBackup() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(backupService.start());
+    }
+
+    /**
+     * Gets the backups started since this node came up, newest first
+     * GET /api/wallet/admin/backups
+     */
+    @GetMapping("/backups")
+    public ResponseEntity<List<BackupReport>> getBackups() {
+        return ResponseEntity.ok(backupService.getReports());
+    }
+
+    /**
+     * Gets the slowest and most frequent SQL statements and suspected N+1 queries
+     * GET /api/wallet/admin/statements?limit=10
+     */
+    @GetMapping("/statements")
+    public ResponseEntity<StatementProfileReport> getStatementProfile(
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return ResponseEntity.ok(statementProfiler.report(limit));
+    }
+
+    /**
+     * Clears the statement profile, e.g. before a benchmark
+     * DELETE /api/wallet/admin/statements
+     */
+    @DeleteMapping("/statements")
+    public ResponseEntity<Void> resetStatementProfile() {
+        statementProfiler.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,88 @@
+package com.ebra.wallet.controller;
+
+import com.ebra.wallet.admission.AdmissionLimiter;
+import com.ebra.wallet.cluster.HoldReferences;
+import com.ebra.wallet.dto.CaptureRequest;
+import com.ebra.wallet.dto.HoldRequest;
+import com.ebra.wallet.dto.HoldResponse;
+import com.ebra.wallet.dto.TransactionResponse;
+import com.ebra.wallet.service.HoldService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/wallet/holds")
+@CrossOrigin(origins = "*")
+public class HoldController {
+
+    private final HoldService holdService;
+    private final AdmissionLimiter admissionLimiter;
+    // Set in a cluster, where holds are addressed by node-qualified references
+    private final String nodeId;
+
+    @Autowired
+    public HoldController(HoldService holdService, AdmissionLimiter admissionLimiter,
+                          @Value("${wallet.cluster.enabled:false}") boolean clustered,
+                          @Value("${wallet.cluster.node-id:}") String nodeId) {
+        this.holdService = holdService;
+        this.admissionLimiter = admissionLimiter;
+        this.nodeId = clustered ? nodeId : null;
+    }
+
+    /**
+     * Reserves funds on a user account
+     * POST /api/wallet/holds
+     */
+    @PostMapping
+    public ResponseEntity<HoldResponse> hold(@Valid @RequestBody HoldRequest request) {
+        admissionLimiter.acquire(request.getUsername());
+        Duration ttl = request.getTtlSeconds() != null ? Duration.ofSeconds(request.getTtlSeconds()) : null;
+        HoldResponse response = holdService.hold(
+                request.getUsername(),
+                request.getAmount(),
+                request.getIdempotencyKey(),
+                ttl
+        );
+        return ResponseEntity.status(HttpStatus.CREATED).body(referenced(response));
+    }
+
+    /**
+     * Charges all or part of a hold
+     * POST /api/wallet/holds/{id}/capture
+     */
+    @PostMapping("/{id}/capture")
+    public ResponseEntity<TransactionResponse> capture(@PathVariable String id,
+                                                       @Valid @RequestBody CaptureRequest request) {
+        TransactionResponse response = holdService.capture(HoldReferences.idOf(id, nodeId), request.getAmount(),
+                request.getIdempotencyKey());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Returns the held funds to the account
+     * POST /api/wallet/holds/{id}/release
+     */
+    @PostMapping("/{id}/release")
+    public ResponseEntity<HoldResponse> release(@PathVariable String id) {
+        return ResponseEntity.ok(referenced(holdService.release(HoldReferences.idOf(id, nodeId))));
+    }
+
+    /**
+     * Gets a hold
+     * GET /api/wallet/holds/{id}
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<HoldResponse> getHold(@PathVariable String id) {
+        return ResponseEntity.ok(referenced(holdService.getHold(HoldReferences.idOf(id, nodeId))));
+    }
+
+    private HoldResponse referenced(HoldResponse hold) {
+        return nodeId == null ? hold : hold.withReference(HoldReferences.of(nodeId, hold.id()));
+    }
+}
@@ -1,18 +1,29 @@
 package com.ebra.wallet.controller;
 
+import com.ebra.wallet.admission.AdmissionLimiter;
 import com.ebra.wallet.dto.ChargeRequest;
 import com.ebra.wallet.dto.CreateAccountRequest;
+import com.ebra.wallet.dto.PointInTimeBalance;
 import com.ebra.wallet.dto.TopUpRequest;
 import com.ebra.wallet.dto.TransactionResponse;
 import com.ebra.wallet.dto.UserResponse;
 import com.ebra.wallet.entity.Transaction;
 import com.ebra.wallet.entity.User;
+import com.ebra.wallet.service.BalanceEventService;
+import com.ebra.wallet.service.BalanceHistoryService;
 import com.ebra.wallet.service.WalletService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/wallet")
@@ -20,10 +31,21 @@ import org.springframework.web.bind.annotation.*;
 public class WalletController {
 
     private final WalletService walletService;
+    private final AdmissionLimiter admissionLimiter;
+    private final BalanceEventService balanceEventService;
+    private final BalanceHistoryService balanceHistoryService;
+    // Followers replicate the ledger but not holds
+    private final boolean replica;
 
     @Autowired
-    public WalletController(WalletService walletService) {
+    public WalletController(WalletService walletService, AdmissionLimiter admissionLimiter,
+                            BalanceEventService balanceEventService, BalanceHistoryService balanceHistoryService,
+                            @Value("${wallet.replica.enabled:false}") boolean replica) {
         this.walletService = walletService;
+        this.admissionLimiter = admissionLimiter;
+        this.balanceEventService = balanceEventService;
+        this.balanceHistoryService = balanceHistoryService;
+        this.replica = replica;
     }
 
     /**
@@ -32,6 +54,7 @@ public class WalletController {
      */
     @PostMapping("/account")
     public ResponseEntity<UserResponse> createAccount(@Valid @RequestBody CreateAccountRequest request) {
+        admissionLimiter.acquire(request.getUsername());
         User user = walletService.createAccount(request.getUsername());
         UserResponse response = mapToUserResponse(user);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -43,6 +66,7 @@ public class WalletController {
      */
     @PostMapping("/topup")
     public ResponseEntity<TransactionResponse> topUp(@Valid @RequestBody TopUpRequest request) {
+        admissionLimiter.acquire(request.getUsername());
         Transaction transaction = walletService.topUp(
                 request.getUsername(),
                 request.getAmount(),
@@ -58,6 +82,7 @@ public class WalletController {
      */
     @PostMapping("/charge")
     public ResponseEntity<TransactionResponse> charge(@Valid @RequestBody ChargeRequest request) {
+        admissionLimiter.acquire(request.getUsername());
         Transaction transaction = walletService.charge(
                 request.getUsername(),
                 request.getAmount(),
@@ -73,11 +98,51 @@ public class WalletController {
      */
     @GetMapping("/account/{username}")
     public ResponseEntity<UserResponse> getAccount(@PathVariable String username) {
-        User user = walletService.getUser(username);
-        UserResponse response = mapToUserResponse(user);
+        UserResponse response = walletService.getAccount(username);
+        return ResponseEntity.ok(replica ? response.withoutHolds() : response);
+    }
+
+    /**
+     * Gets the balance a user account had at the given time, from the ledger
+     * GET /api/wallet/account/{username}/balance?at=2024-01-31T23:59:59
+     */
+    @GetMapping("/account/{username}/balance")
+    public ResponseEntity<PointInTimeBalance> getBalanceAt(
+            @PathVariable String username,
+            @RequestParam("at") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(balanceHistoryService.getBalanceAt(username, at));
+    }
+
+    /**
+     * Gets the transaction history of a user account, newest first. Pass the id of the last
+     * transaction received as beforeId to get the next page.
+     * GET /api/wallet/account/{username}/transactions
+     */
+    @GetMapping("/account/{username}/transactions")
+    public ResponseEntity<List<TransactionResponse>> getTransactions(
+            @PathVariable String username,
+            @RequestParam(value = "beforeId", required = false) Long beforeId,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        List<TransactionResponse> response = walletService.getTransactions(username, beforeId, limit);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Streams balance changes of a user account as server-sent events. Clients resume after
+     * a disconnect by sending the last received event id in Last-Event-ID (or ?after=).
+     * GET /api/wallet/account/{username}/events
+     */
+    @GetMapping(path = "/account/{username}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAccountEvents(
+            @PathVariable String username,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(value = "after", required = false) Long after) {
+        // Fail with 404 before opening a stream for an unknown account
+        walletService.getAccount(username);
+        SseEmitter emitter = balanceEventService.subscribe(username, lastEventId != null ? lastEventId : after);
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Health check endpoint
      * GET /api/wallet/health
@@ -93,6 +158,7 @@ public class WalletController {
                 user.getId(),
                 user.getUsername(),
                 user.getBalance(),
+                user.getHeldBalance(),
                 user.getCreatedAt(),
                 user.getUpdatedAt()
         );
@@ -0,0 +1,9 @@
+package com.ebra.wallet.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * An account as created on the primary; its balance follows from the ledger changes
+ */
+public record AccountChange(Long id, String username, LocalDateTime createdAt) {
+}
@@ -0,0 +1,13 @@
+package com.ebra.wallet.dto;
+
+import com.ebra.wallet.backup.BackupStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of an online backup. {@code ledgerVersion} is the last transaction id in the
+ * snapshot; {@code bytes} is the size of the verified snapshot file.
+ */
+public record BackupReport(String name, BackupStatus status, int totalPages, int copiedPages, long bytes,
+                           Long ledgerVersion, String error, LocalDateTime startedAt, LocalDateTime finishedAt) {
+}
@@ -0,0 +1,16 @@
+package com.ebra.wallet.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Payload of a balance change pushed to subscribers; offset is also sent as the SSE event id
+ */
+public record BalanceEvent(long offset,
+                           Long transactionId,
+                           String username,
+                           String type,
+                           BigDecimal amount,
+                           BigDecimal balanceAfter,
+                           LocalDateTime createdAt) {
+}
@@ -0,0 +1,36 @@
+package com.ebra.wallet.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+public class BalanceQuery {
+    @NotBlank(message = "Username is required")
+    private String username;
+
+    @NotNull(message = "Time is required")
+    private LocalDateTime at;
+
+    public BalanceQuery() {}
+
+    public BalanceQuery(String username, LocalDateTime at) {
+        this.username = username;
+        this.at = at;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public LocalDateTime getAt() {
+        return at;
+    }
+
+    public void setAt(LocalDateTime at) {
+        this.at = at;
+    }
+}
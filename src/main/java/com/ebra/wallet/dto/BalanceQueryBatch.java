@@ -0,0 +1,24 @@
+package com.ebra.wallet.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+
+public class BalanceQueryBatch {
+    @NotEmpty(message = "At least one query is required")
+    private List<@Valid BalanceQuery> queries;
+
+    public BalanceQueryBatch() {}
+
+    public BalanceQueryBatch(List<BalanceQuery> queries) {
+        this.queries = queries;
+    }
+
+    public List<BalanceQuery> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<BalanceQuery> queries) {
+        this.queries = queries;
+    }
+}
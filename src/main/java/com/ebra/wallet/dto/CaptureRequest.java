@@ -0,0 +1,37 @@
+package com.ebra.wallet.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import java.math.BigDecimal;
+
+public class CaptureRequest {
+    // Optional; the whole held amount is captured when absent
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    private BigDecimal amount;
+
+    @NotBlank(message = "Idempotency key is required")
+    private String idempotencyKey;
+
+    public CaptureRequest() {}
+
+    public CaptureRequest(BigDecimal amount, String idempotencyKey) {
+        this.amount = amount;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+}
@@ -0,0 +1,10 @@
+package com.ebra.wallet.dto;
+
+import java.util.List;
+
+/**
+ * A page of the primary's change log: accounts and ledger rows past the requested offsets,
+ * read from one snapshot, plus the newest ledger version at that moment
+ */
+public record ChangeBatch(List<AccountChange> accounts, List<LedgerChange> transactions, long headVersion) {
+}
@@ -0,0 +1,17 @@
+package com.ebra.wallet.dto;
+
+import com.ebra.wallet.entity.ChargeOutcome;
+import com.ebra.wallet.entity.ChargeRunStatus;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Progress of a bulk charge run. {@code outcomes} breaks the processed rows down by what
+ * happened to them; {@code rowsPerSecond} is measured since the run last started or resumed.
+ */
+public record ChargeRunReport(Long id, ChargeRunStatus status, String keyPrefix, long totalRows,
+                              long processedRows, Map<ChargeOutcome, Long> outcomes, Double rowsPerSecond,
+                              String error, LocalDateTime createdAt, LocalDateTime startedAt,
+                              LocalDateTime finishedAt) {
+}
@@ -0,0 +1,9 @@
+package com.ebra.wallet.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * An active hold about to be expired, with what is needed to return its amount to the account
+ */
+public record ExpiringHold(Long id, Long userId, String username, BigDecimal amount) {
+}
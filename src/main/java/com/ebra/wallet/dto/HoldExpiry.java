@@ -0,0 +1,9 @@
+package com.ebra.wallet.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * When an active hold expires, as loaded into the expiry timer on startup
+ */
+public record HoldExpiry(Long id, LocalDateTime expiresAt) {
+}
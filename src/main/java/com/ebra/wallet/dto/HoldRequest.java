@@ -0,0 +1,62 @@
+package com.ebra.wallet.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+public class HoldRequest {
+    @NotBlank(message = "Username is required")
+    private String username;
+
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    private BigDecimal amount;
+
+    @NotBlank(message = "Idempotency key is required")
+    private String idempotencyKey;
+
+    // Optional; the configured default applies when absent
+    private Long ttlSeconds;
+
+    public HoldRequest() {}
+
+    public HoldRequest(String username, BigDecimal amount, String idempotencyKey, Long ttlSeconds) {
+        this.username = username;
+        this.amount = amount;
+        this.idempotencyKey = idempotencyKey;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public Long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(Long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+}
@@ -0,0 +1,31 @@
+package com.ebra.wallet.dto;
+
+import com.ebra.wallet.entity.HoldStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A hold as returned by the API; {@code capturedAmount} is set once it has been captured. In a
+ * cluster {@code reference} names the issuing node and is what later calls address the hold by.
+ */
+public record HoldResponse(Long id, String username, BigDecimal amount, BigDecimal capturedAmount,
+                           HoldStatus status, String idempotencyKey, LocalDateTime expiresAt,
+                           LocalDateTime createdAt, LocalDateTime resolvedAt,
+                           @JsonInclude(JsonInclude.Include.NON_NULL) String reference) {
+
+    /**
+     * Used by query constructor expressions and outside a cluster, where the id is the reference
+     */
+    public HoldResponse(Long id, String username, BigDecimal amount, BigDecimal capturedAmount,
+                        HoldStatus status, String idempotencyKey, LocalDateTime expiresAt,
+                        LocalDateTime createdAt, LocalDateTime resolvedAt) {
+        this(id, username, amount, capturedAmount, status, idempotencyKey, expiresAt, createdAt, resolvedAt, null);
+    }
+
+    public HoldResponse withReference(String reference) {
+        return new HoldResponse(id, username, amount, capturedAmount, status, idempotencyKey, expiresAt, createdAt,
+                resolvedAt, reference);
+    }
+}
@@ -0,0 +1,9 @@
+package com.ebra.wallet.dto;
+
+/**
+ * Outcome of a bulk account import. {@code skipped} counts usernames that already had an
+ * account or appeared earlier in the input; {@code invalid} counts rows that could not be parsed.
+ */
+public record ImportReport(long read, long imported, long skipped, long invalid,
+                           long elapsedMillis, double rowsPerSecond) {
+}
@@ -0,0 +1,31 @@
+package com.ebra.wallet.dto;
+
+import com.ebra.wallet.entity.IdempotencyKeys;
+import com.ebra.wallet.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A committed ledger row with the account it belongs to. The id is the ledger version.
+ */
+public record LedgerChange(Long id,
+                           Long userId,
+                           String username,
+                           TransactionType type,
+                           BigDecimal amount,
+                           BigDecimal balanceBefore,
+                           BigDecimal balanceAfter,
+                           String idempotencyKey,
+                           LocalDateTime createdAt) {
+
+    /**
+     * Used by query constructor expressions, which select the stored columns of the idempotency key
+     */
+    public LedgerChange(Long id, Long userId, String username, TransactionType type, BigDecimal amount,
+                        BigDecimal balanceBefore, BigDecimal balanceAfter, String storedIdempotencyKey,
+                        byte[] idempotencyId, LocalDateTime createdAt) {
+        this(id, userId, username, type, amount, balanceBefore, balanceAfter,
+                IdempotencyKeys.keyOf(storedIdempotencyKey, idempotencyId), createdAt);
+    }
+}
@@ -0,0 +1,10 @@
+package com.ebra.wallet.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A ledger row reduced to what a point-in-time balance needs
+ */
+public record LedgerPoint(Long transactionId, LocalDateTime createdAt, BigDecimal balanceAfter) {
+}
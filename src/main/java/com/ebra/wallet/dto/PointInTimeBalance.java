@@ -0,0 +1,12 @@
+package com.ebra.wallet.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An account's balance as of {@code at}, with the last transaction at or before that time;
+ * {@code transactionId} and {@code transactionAt} are null when there was none
+ */
+public record PointInTimeBalance(String username, LocalDateTime at, BigDecimal balance,
+                                 Long transactionId, LocalDateTime transactionAt) {
+}
@@ -0,0 +1,11 @@
+package com.ebra.wallet.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A charge in the ledger with its account's velocity tier, for rebuilding spend windows
+ */
+public record RecentCharge(Long transactionId, String username, String velocityTier,
+                           LocalDateTime createdAt, BigDecimal amount) {
+}
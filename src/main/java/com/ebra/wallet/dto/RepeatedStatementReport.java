@@ -0,0 +1,9 @@
+package com.ebra.wallet.dto;
+
+/**
+ * A SELECT that some requests ran many times over, the usual sign of an N+1 query:
+ * how many sampled requests did so, the most repetitions in one request, and the path of
+ * the latest such request
+ */
+public record RepeatedStatementReport(String sql, long requests, int maxRepetitions, String lastPath) {
+}
@@ -0,0 +1,11 @@
+package com.ebra.wallet.dto;
+
+import java.util.List;
+
+/**
+ * Top statements by p95 latency and by call count, and the suspected N+1 queries
+ */
+public record StatementProfileReport(double sampleRate, long windowSeconds, List<StatementReport> slowest,
+                                     List<StatementReport> mostFrequent,
+                                     List<RepeatedStatementReport> suspectedNPlusOne) {
+}
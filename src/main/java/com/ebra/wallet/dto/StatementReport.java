@@ -0,0 +1,10 @@
+package com.ebra.wallet.dto;
+
+/**
+ * Profile of one normalized SQL statement. {@code calls} counts every execution since the
+ * profiler started or was reset; the latencies cover the sampled executions in the rolling
+ * window and percentiles are bucket upper bounds, accurate to within 25%.
+ */
+public record StatementReport(String sql, long calls, long sampledCalls, double meanMillis, double p50Millis,
+                              double p95Millis, double p99Millis, double maxMillis) {
+}
@@ -1,44 +1,35 @@
 package com.ebra.wallet.dto;
 
+import com.ebra.wallet.entity.IdempotencyKeys;
+import com.ebra.wallet.entity.TransactionType;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
-public class TransactionResponse {
-    private Long id;
-    private String type;
-    private BigDecimal amount;
-    private BigDecimal balanceBefore;
-    private BigDecimal balanceAfter;
-    private String idempotencyKey;
-    private LocalDateTime createdAt;
-
-    public TransactionResponse() {}
+/**
+ * A ledger row as returned by the API. History reads project straight into this record,
+ * without loading the entities.
+ */
+public record TransactionResponse(Long id, String type, BigDecimal amount,
+                                  BigDecimal balanceBefore, BigDecimal balanceAfter,
+                                  String idempotencyKey, LocalDateTime createdAt) {
 
-    public TransactionResponse(Long id, String type, BigDecimal amount,
+    /**
+     * Used by query constructor expressions, which select the mapped enum
+     */
+    public TransactionResponse(Long id, TransactionType type, BigDecimal amount,
                                BigDecimal balanceBefore, BigDecimal balanceAfter,
                                String idempotencyKey, LocalDateTime createdAt) {
-        this.id = id;
-        this.type = type;
-        this.amount = amount;
-        this.balanceBefore = balanceBefore;
-        this.balanceAfter = balanceAfter;
-        this.idempotencyKey = idempotencyKey;
-        this.createdAt = createdAt;
+        this(id, type.name(), amount, balanceBefore, balanceAfter, idempotencyKey, createdAt);
     }
 
-    // Getters and setters
-    public Long getId() { return id; }
-    public void setId(Long id) { this.id = id; }
-    public String getType() { return type; }
-    public void setType(String type) { this.type = type; }
-    public BigDecimal getAmount() { return amount; }
-    public void setAmount(BigDecimal amount) { this.amount = amount; }
-    public BigDecimal getBalanceBefore() { return balanceBefore; }
-    public void setBalanceBefore(BigDecimal balanceBefore) { this.balanceBefore = balanceBefore; }
-    public BigDecimal getBalanceAfter() { return balanceAfter; }
-    public void setBalanceAfter(BigDecimal balanceAfter) { this.balanceAfter = balanceAfter; }
-    public String getIdempotencyKey() { return idempotencyKey; }
-    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
-    public LocalDateTime getCreatedAt() { return createdAt; }
-    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
-}
\ No newline at end of file
+    /**
+     * Used by query constructor expressions, which select the stored columns of the idempotency key
+     */
+    public TransactionResponse(Long id, TransactionType type, BigDecimal amount,
+                               BigDecimal balanceBefore, BigDecimal balanceAfter,
+                               String storedIdempotencyKey, byte[] idempotencyId, LocalDateTime createdAt) {
+        this(id, type, amount, balanceBefore, balanceAfter, IdempotencyKeys.keyOf(storedIdempotencyKey, idempotencyId),
+                createdAt);
+    }
+}
@@ -1,35 +1,29 @@
 package com.ebra.wallet.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
-public class UserResponse {
-    private Long id;
-    private String username;
-    private BigDecimal balance;
-    private LocalDateTime createdAt;
-    private LocalDateTime updatedAt;
-
-    public UserResponse() {}
+/**
+ * An account as returned by the API. Reads project straight into this record, without
+ * loading the entity. {@code heldBalance} is the part of the balance reserved by holds; it is
+ * left out, with the available balance, where holds are not known.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserResponse(Long id, String username, BigDecimal balance, BigDecimal heldBalance,
+                           LocalDateTime createdAt, LocalDateTime updatedAt) {
 
-    public UserResponse(Long id, String username, BigDecimal balance,
-                        LocalDateTime createdAt, LocalDateTime updatedAt) {
-        this.id = id;
-        this.username = username;
-        this.balance = balance;
-        this.createdAt = createdAt;
-        this.updatedAt = updatedAt;
+    @JsonProperty
+    public BigDecimal availableBalance() {
+        return heldBalance == null ? null : balance.subtract(heldBalance);
     }
 
-    // Getters and setters
-    public Long getId() { return id; }
-    public void setId(Long id) { this.id = id; }
-    public String getUsername() { return username; }
-    public void setUsername(String username) { this.username = username; }
-    public BigDecimal getBalance() { return balance; }
-    public void setBalance(BigDecimal balance) { this.balance = balance; }
-    public LocalDateTime getCreatedAt() { return createdAt; }
-    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
-    public LocalDateTime getUpdatedAt() { return updatedAt; }
-    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
-}
\ No newline at end of file
+    /**
+     * The same account without its held and available balances
+     */
+    public UserResponse withoutHolds() {
+        return new UserResponse(id, username, balance, null, createdAt, updatedAt);
+    }
+}
@@ -0,0 +1,10 @@
+package com.ebra.wallet.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * What an account has charged within the velocity window, against its tier's limits
+ */
+public record VelocityUsage(String username, String tier, int charges, BigDecimal amount,
+                            int maxCharges, BigDecimal maxAmount) {
+}
@@ -0,0 +1,9 @@
+package com.ebra.wallet.entity;
+
+/**
+ * What happened to one row of a charge run. VELOCITY_LIMITED rows were refused by the user's
+ * velocity limit and can be charged by resubmitting once the window has passed.
+ */
+public enum ChargeOutcome {
+    CHARGED, ALREADY_CHARGED, INSUFFICIENT_BALANCE, USER_NOT_FOUND, VELOCITY_LIMITED, INVALID, FAILED
+}
@@ -0,0 +1,190 @@
+package com.ebra.wallet.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A bulk charge run and its checkpoint: the input lines fully processed so far and how many
+ * rows ended in each {@link ChargeOutcome}
+ */
+@Entity
+@Table(name = "charge_runs", indexes = {
+        @Index(name = "idx_charge_runs_status", columnList = "status")
+})
+public class ChargeRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "key_prefix", nullable = false)
+    private String keyPrefix;
+
+    @Column(name = "input_file", nullable = false)
+    private String inputFile;
+
+    @Column(name = "total_rows", nullable = false)
+    private long totalRows;
+
+    @Column(name = "checkpoint_line", nullable = false)
+    private long checkpointLine;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ChargeRunStatus status;
+
+    @Column(nullable = false)
+    private long charged;
+
+    @Column(name = "already_charged", nullable = false)
+    private long alreadyCharged;
+
+    @Column(name = "insufficient_balance", nullable = false)
+    private long insufficientBalance;
+
+    @Column(name = "user_not_found", nullable = false)
+    private long userNotFound;
+
+    @Column(name = "velocity_limited", nullable = false, columnDefinition = "bigint default 0")
+    private long velocityLimited;
+
+    @Column(nullable = false)
+    private long invalid;
+
+    @Column(nullable = false)
+    private long failed;
+
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    // Constructors
+    public ChargeRun() {}
+
+    public ChargeRun(String keyPrefix, String inputFile, long totalRows) {
+        this.keyPrefix = keyPrefix;
+        this.inputFile = inputFile;
+        this.totalRows = totalRows;
+        this.status = ChargeRunStatus.QUEUED;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    /**
+     * Rows of the input that have been processed, whatever their outcome
+     */
+    public long getProcessedRows() {
+        return charged + alreadyCharged + insufficientBalance + userNotFound + velocityLimited + invalid + failed;
+    }
+
+    public long getCount(ChargeOutcome outcome) {
+        return switch (outcome) {
+            case CHARGED -> charged;
+            case ALREADY_CHARGED -> alreadyCharged;
+            case INSUFFICIENT_BALANCE -> insufficientBalance;
+            case USER_NOT_FOUND -> userNotFound;
+            case VELOCITY_LIMITED -> velocityLimited;
+            case INVALID -> invalid;
+            case FAILED -> failed;
+        };
+    }
+
+    public void setCount(ChargeOutcome outcome, long count) {
+        switch (outcome) {
+            case CHARGED -> charged = count;
+            case ALREADY_CHARGED -> alreadyCharged = count;
+            case INSUFFICIENT_BALANCE -> insufficientBalance = count;
+            case USER_NOT_FOUND -> userNotFound = count;
+            case VELOCITY_LIMITED -> velocityLimited = count;
+            case INVALID -> invalid = count;
+            case FAILED -> failed = count;
+        }
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public void setInputFile(String inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public long getCheckpointLine() {
+        return checkpointLine;
+    }
+
+    public void setCheckpointLine(long checkpointLine) {
+        this.checkpointLine = checkpointLine;
+    }
+
+    public ChargeRunStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ChargeRunStatus status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
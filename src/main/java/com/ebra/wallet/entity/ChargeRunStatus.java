@@ -0,0 +1,5 @@
+package com.ebra.wallet.entity;
+
+public enum ChargeRunStatus {
+    QUEUED, RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,5 @@
+package com.ebra.wallet.entity;
+
+public enum HoldStatus {
+    ACTIVE, CAPTURED, RELEASED, EXPIRED
+}
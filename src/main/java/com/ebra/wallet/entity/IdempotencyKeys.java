@@ -0,0 +1,77 @@
+package com.ebra.wallet.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The compact form of transaction idempotency keys. A key in canonical UUID form (lowercase,
+ * with dashes) is stored as its 16 bytes and nothing else, since the text can be rebuilt from
+ * them. Any other key is stored as the first 16 bytes of its SHA-256 together with the key
+ * itself, which lookups compare to tell a repeated key from a hash collision.
+ */
+public final class IdempotencyKeys {
+
+    public static final int ID_LENGTH = 16;
+
+    private static final int UUID_LENGTH = 36;
+
+    private IdempotencyKeys() {
+    }
+
+    /**
+     * The 16 bytes a key is indexed by
+     */
+    public static byte[] idOf(String key) {
+        UUID uuid = canonicalUuid(key);
+        if (uuid != null) {
+            return ByteBuffer.allocate(ID_LENGTH)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+        }
+        return Arrays.copyOf(sha256().digest(key.getBytes(StandardCharsets.UTF_8)), ID_LENGTH);
+    }
+
+    /**
+     * What is stored next to the id: null for a UUID key, otherwise the key
+     */
+    public static String storedFormOf(String key) {
+        return canonicalUuid(key) != null ? null : key;
+    }
+
+    /**
+     * Rebuilds a key from its stored columns
+     */
+    public static String keyOf(String storedForm, byte[] id) {
+        if (storedForm != null || id == null) {
+            return storedForm;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(id);
+        return new UUID(bytes.getLong(), bytes.getLong()).toString();
+    }
+
+    private static UUID canonicalUuid(String key) {
+        if (key.length() != UUID_LENGTH) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(key);
+            // fromString also accepts uppercase and unpadded forms, which are different keys
+            return uuid.toString().equals(key) ? uuid : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -7,7 +7,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_user_created_at", columnList = "user_id, created_at")
+})
 public class Transaction {
 
     @Id
@@ -32,8 +34,17 @@ public class Transaction {
     @Column(name = "balance_after", precision = 19, scale = 2, nullable = false)
     private BigDecimal balanceAfter;
 
+    // The key itself if it is a UUID, otherwise a hash of it (see IdempotencyKeys). Its unique index
+    // is created by IdempotencyKeyMigration; the SQLite dialect does not create unique indexes.
+    @Column(name = "idempotency_id", length = IdempotencyKeys.ID_LENGTH)
+    private byte[] idempotencyId;
+
+    // Null when the key is a UUID and idempotency_id already holds it
+    @Column(name = "idempotency_key")
+    private String storedIdempotencyKey;
+
     @NotBlank(message = "Idempotency key is required")
-    @Column(name = "idempotency_key", unique = true, nullable = false)
+    @Transient
     private String idempotencyKey;
 
     @Column(name = "created_at", nullable = false)
@@ -49,7 +60,7 @@ public class Transaction {
         this.amount = amount;
         this.balanceBefore = balanceBefore;
         this.balanceAfter = balanceAfter;
-        this.idempotencyKey = idempotencyKey;
+        setIdempotencyKey(idempotencyKey);
         this.createdAt = LocalDateTime.now();
     }
 
@@ -108,6 +119,12 @@ public class Transaction {
 
     public void setIdempotencyKey(String idempotencyKey) {
         this.idempotencyKey = idempotencyKey;
+        this.idempotencyId = idempotencyKey == null ? null : IdempotencyKeys.idOf(idempotencyKey);
+        this.storedIdempotencyKey = idempotencyKey == null ? null : IdempotencyKeys.storedFormOf(idempotencyKey);
+    }
+
+    public byte[] getIdempotencyId() {
+        return idempotencyId;
     }
 
     public LocalDateTime getCreatedAt() {
@@ -118,8 +135,16 @@ public class Transaction {
         this.createdAt = createdAt;
     }
 
+    // Keeps the time of an entry taken over from another node
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+
+    @PostLoad
+    protected void onLoad() {
+        idempotencyKey = IdempotencyKeys.keyOf(storedIdempotencyKey, idempotencyId);
     }
 }
\ No newline at end of file
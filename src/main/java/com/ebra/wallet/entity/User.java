@@ -24,12 +24,25 @@ public class User {
     @Column(precision = 19, scale = 2, nullable = false)
     private BigDecimal balance = BigDecimal.ZERO;
 
+    // Part of the balance reserved by active authorization holds; only the rest can be charged
+    @Column(name = "held_balance", precision = 19, scale = 2, nullable = false,
+            columnDefinition = "numeric(19,2) default 0")
+    private BigDecimal heldBalance = BigDecimal.ZERO;
+
+    // Velocity limit tier; null for the configured default tier
+    @Column(name = "velocity_tier")
+    private String velocityTier;
+
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version = 0L;
+
     // Constructors
     public User() {}
 
@@ -66,6 +79,29 @@ public class User {
         this.updatedAt = LocalDateTime.now();
     }
 
+    public BigDecimal getHeldBalance() {
+        return heldBalance;
+    }
+
+    public void setHeldBalance(BigDecimal heldBalance) {
+        this.heldBalance = heldBalance;
+    }
+
+    /**
+     * Balance not reserved by holds, which is what a charge or a new hold can use
+     */
+    public BigDecimal getAvailableBalance() {
+        return balance.subtract(heldBalance);
+    }
+
+    public String getVelocityTier() {
+        return velocityTier;
+    }
+
+    public void setVelocityTier(String velocityTier) {
+        this.velocityTier = velocityTier;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -82,10 +118,23 @@ public class User {
         this.updatedAt = updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    // Keeps the timestamps of an account taken over from another node
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (updatedAt == null) {
+            updatedAt = LocalDateTime.now();
+        }
     }
 
     @PreUpdate
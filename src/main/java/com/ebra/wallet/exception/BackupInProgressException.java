@@ -0,0 +1,7 @@
+package com.ebra.wallet.exception;
+
+public class BackupInProgressException extends RuntimeException {
+    public BackupInProgressException(String message) {
+        super(message);
+    }
+}
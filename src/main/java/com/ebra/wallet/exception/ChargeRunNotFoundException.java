@@ -0,0 +1,7 @@
+package com.ebra.wallet.exception;
+
+public class ChargeRunNotFoundException extends RuntimeException {
+    public ChargeRunNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ebra.wallet.exception;
+
+public class ChargeRunsUnavailableException extends RuntimeException {
+    public ChargeRunsUnavailableException(String message) {
+        super(message);
+    }
+}
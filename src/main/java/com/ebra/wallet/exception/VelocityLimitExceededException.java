@@ -0,0 +1,14 @@
+package com.ebra.wallet.exception;
+
+public class VelocityLimitExceededException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public VelocityLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
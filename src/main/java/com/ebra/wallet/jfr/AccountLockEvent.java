@@ -0,0 +1,31 @@
+package com.ebra.wallet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Time taken to get hold of an account row for a balance change: the locking read under the
+ * PESSIMISTIC strategy, the conditional UPDATE under ATOMIC_UPDATE. The stack trace shows who
+ * waited.
+ */
+@Name(AccountLockEvent.NAME)
+@Label("Account Lock Wait")
+@Category("Wallet")
+@Description("Locking read or conditional UPDATE of an account row before a balance change")
+public final class AccountLockEvent extends Event {
+
+    public static final String NAME = "com.ebra.wallet.AccountLock";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Username Hash")
+    @Description("64-bit FNV-1a hash of the username")
+    long usernameHash;
+
+    @Label("Strategy")
+    String strategy;
+}
@@ -0,0 +1,102 @@
+package com.ebra.wallet.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarizes the wallet events of a flight recording into latency percentiles per operation and
+ * phase, offline:
+ * <pre>
+ *   java -cp target/classes com.ebra.wallet.jfr.FlightRecordingAnalyzer wallet.jfr
+ * </pre>
+ */
+public final class FlightRecordingAnalyzer {
+
+    private static final List<String> PHASES = List.of(
+            "validation", "velocityCheck", "idempotencyCheck", "accountLock", "write", "commit");
+
+    /**
+     * Latency of one phase of one operation; the phase is "total" for the whole operation
+     */
+    public record PhaseLatency(String event, String operation, String phase, int count,
+                               Duration p50, Duration p90, Duration p99, Duration max) {
+    }
+
+    private FlightRecordingAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: FlightRecordingAnalyzer <recording.jfr>");
+            System.exit(2);
+        }
+        System.out.printf("%-15s %-15s %-17s %8s %10s %10s %10s %10s%n",
+                "event", "operation", "phase", "count", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (PhaseLatency latency : summarize(Path.of(args[0]))) {
+            System.out.printf("%-15s %-15s %-17s %8d %10.3f %10.3f %10.3f %10.3f%n", latency.event(),
+                    latency.operation(), latency.phase(), latency.count(), millis(latency.p50()),
+                    millis(latency.p90()), millis(latency.p99()), millis(latency.max()));
+        }
+    }
+
+    /**
+     * Reads the wallet events of a recording; events of other types are skipped
+     */
+    public static List<PhaseLatency> summarize(Path recording) throws IOException {
+        Map<String, List<Long>> samples = new TreeMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case WalletOperationEvent.NAME -> {
+                        String operation = event.getString("operation");
+                        add(samples, "Operation", operation, "total", event.getDuration());
+                        for (String phase : PHASES) {
+                            add(samples, "Operation", operation, phase, event.getDuration(phase));
+                        }
+                    }
+                    case AccountLockEvent.NAME -> add(samples, "AccountLock", event.getString("operation"),
+                            event.getString("strategy"), event.getDuration());
+                    case IdempotencyHitEvent.NAME -> add(samples, "IdempotencyHit", event.getString("operation"),
+                            "lookup", event.getDuration());
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        List<PhaseLatency> summary = new ArrayList<>(samples.size());
+        samples.forEach((key, nanos) -> {
+            String[] parts = key.split("\t");
+            Collections.sort(nanos);
+            summary.add(new PhaseLatency(parts[0], parts[1], parts[2], nanos.size(), percentile(nanos, 50),
+                    percentile(nanos, 90), percentile(nanos, 99), Duration.ofNanos(nanos.get(nanos.size() - 1))));
+        });
+        return summary;
+    }
+
+    private static void add(Map<String, List<Long>> samples, String event, String operation, String phase,
+                            Duration duration) {
+        samples.computeIfAbsent(event + "\t" + operation + "\t" + phase, key -> new ArrayList<>())
+                .add(duration.toNanos());
+    }
+
+    // Nearest rank
+    private static Duration percentile(List<Long> sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.size());
+        return Duration.ofNanos(sorted.get(Math.max(rank, 1) - 1));
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ebra.wallet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A request whose idempotency key was already used, i.e. a client retry. The duration is the
+ * key lookup.
+ */
+@Name(IdempotencyHitEvent.NAME)
+@Label("Idempotency Hit")
+@Category("Wallet")
+@Description("A balance change rejected because its idempotency key was already used")
+@StackTrace(false)
+public final class IdempotencyHitEvent extends Event {
+
+    public static final String NAME = "com.ebra.wallet.IdempotencyHit";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Username Hash")
+    @Description("64-bit FNV-1a hash of the username")
+    long usernameHash;
+
+    @Label("Transaction Id")
+    @Description("The transaction recorded under the key")
+    long transactionId;
+}
@@ -0,0 +1,66 @@
+package com.ebra.wallet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One top-up, charge or account creation, with the time it spent in each phase. Written by
+ * {@link WalletTrace}; the event duration is the whole operation.
+ */
+@Name(WalletOperationEvent.NAME)
+@Label("Wallet Operation")
+@Category("Wallet")
+@Description("A top-up, charge or account creation with the time spent in each phase")
+@StackTrace(false)
+public final class WalletOperationEvent extends Event {
+
+    public static final String NAME = "com.ebra.wallet.Operation";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Username Hash")
+    @Description("64-bit FNV-1a hash of the username")
+    long usernameHash;
+
+    @Label("Amount")
+    String amount;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Attempts")
+    @Description("Transactions started, more than one after optimistic retries")
+    int attempts;
+
+    @Label("Validation")
+    @Timespan(Timespan.NANOSECONDS)
+    long validation;
+
+    @Label("Velocity Check")
+    @Timespan(Timespan.NANOSECONDS)
+    long velocityCheck;
+
+    @Label("Idempotency Check")
+    @Timespan(Timespan.NANOSECONDS)
+    long idempotencyCheck;
+
+    @Label("Account Lock")
+    @Description("Locking read or conditional UPDATE of the account row")
+    @Timespan(Timespan.NANOSECONDS)
+    long accountLock;
+
+    @Label("Write")
+    @Description("Account, ledger and outbox writes")
+    @Timespan(Timespan.NANOSECONDS)
+    long write;
+
+    @Label("Commit")
+    @Timespan(Timespan.NANOSECONDS)
+    long commit;
+}
@@ -0,0 +1,165 @@
+package com.ebra.wallet.jfr;
+
+import com.ebra.wallet.audit.AuditOp;
+import com.ebra.wallet.audit.AuditOutcome;
+import com.ebra.wallet.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Emits the wallet's JFR events. A {@link WalletOperationEvent} is collected in a thread-local
+ * while the operation runs, phase by phase, and committed when it finishes.
+ *
+ * <p>Nothing is recorded unless a recording enables the events: {@link #start} then returns null
+ * without touching the thread-local, phase marks cost one thread-local read, and the lock and
+ * idempotency events are begun but never committed.
+ */
+public final class WalletTrace {
+
+    public enum Phase {
+        VALIDATION, VELOCITY_CHECK, IDEMPOTENCY_CHECK, ACCOUNT_LOCK, WRITE, COMMIT
+    }
+
+    private static final ThreadLocal<WalletTrace> CURRENT = new ThreadLocal<>();
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final WalletOperationEvent event;
+    private final long[] phaseStarted = new long[Phase.values().length];
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    private WalletTrace(WalletOperationEvent event) {
+        this.event = event;
+    }
+
+    /**
+     * Starts tracing an operation on this thread
+     *
+     * @return the trace to {@link #finish}, or null if no recording wants it
+     */
+    public static WalletTrace start(AuditOp operation, String username, BigDecimal amount) {
+        WalletOperationEvent event = new WalletOperationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.operation = operation.name();
+        event.usernameHash = usernameHash(username);
+        event.amount = amount != null ? amount.toPlainString() : null;
+        event.begin();
+        WalletTrace trace = new WalletTrace(event);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * Commits the operation event, unless the trace is null
+     *
+     * @param failure what the operation threw, or null if it succeeded
+     */
+    public static void finish(WalletTrace trace, Throwable failure) {
+        if (trace == null) {
+            return;
+        }
+        CURRENT.remove();
+        WalletOperationEvent event = trace.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = (failure == null ? AuditOutcome.OK : AuditOutcome.of(failure)).name();
+            long[] nanos = trace.phaseNanos;
+            event.validation = nanos[Phase.VALIDATION.ordinal()];
+            event.velocityCheck = nanos[Phase.VELOCITY_CHECK.ordinal()];
+            event.idempotencyCheck = nanos[Phase.IDEMPOTENCY_CHECK.ordinal()];
+            event.accountLock = nanos[Phase.ACCOUNT_LOCK.ordinal()];
+            event.write = nanos[Phase.WRITE.ordinal()];
+            event.commit = nanos[Phase.COMMIT.ordinal()];
+            event.commit();
+        }
+    }
+
+    public static void begin(Phase phase) {
+        WalletTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.phaseStarted[phase.ordinal()] = System.nanoTime();
+        }
+    }
+
+    /**
+     * Adds the time since {@link #begin} to the phase; phases repeated by retries add up
+     */
+    public static void end(Phase phase) {
+        WalletTrace trace = CURRENT.get();
+        if (trace != null && trace.phaseStarted[phase.ordinal()] != 0) {
+            trace.phaseNanos[phase.ordinal()] += System.nanoTime() - trace.phaseStarted[phase.ordinal()];
+            trace.phaseStarted[phase.ordinal()] = 0;
+        }
+    }
+
+    /**
+     * Counts a transaction attempt of the current operation
+     */
+    public static void attempt() {
+        WalletTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.event.attempts++;
+        }
+    }
+
+    public static AccountLockEvent beginAccountLock() {
+        begin(Phase.ACCOUNT_LOCK);
+        AccountLockEvent event = new AccountLockEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endAccountLock(AccountLockEvent event, TransactionType type, String username,
+                                      String strategy) {
+        end(Phase.ACCOUNT_LOCK);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = type.name();
+            event.usernameHash = usernameHash(username);
+            event.strategy = strategy;
+            event.commit();
+        }
+    }
+
+    public static IdempotencyHitEvent beginIdempotencyCheck() {
+        begin(Phase.IDEMPOTENCY_CHECK);
+        IdempotencyHitEvent event = new IdempotencyHitEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the key lookup, committing the event if it found an earlier transaction
+     */
+    public static void endIdempotencyCheck(IdempotencyHitEvent event, TransactionType type, String username,
+                                           Long existingTransactionId) {
+        end(Phase.IDEMPOTENCY_CHECK);
+        if (existingTransactionId == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = type.name();
+            event.usernameHash = usernameHash(username);
+            event.transactionId = existingTransactionId;
+            event.commit();
+        }
+    }
+
+    /**
+     * Correlates events of one account without recording the username
+     */
+    static long usernameHash(String username) {
+        if (username == null) {
+            return 0;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
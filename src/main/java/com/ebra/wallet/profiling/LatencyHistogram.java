@@ -0,0 +1,137 @@
+package com.ebra.wallet.profiling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram over a rolling window of fixed-length intervals. Buckets are
+ * log-linear in microseconds (four per power of two), so a percentile is accurate to
+ * within 25% at a fixed cost of a few atomic increments per recorded value.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Covers up to 2^42 us, far beyond any statement
+    private static final int BUCKETS = SUB_BUCKETS + (42 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long intervalMillis;
+    private final Interval[] intervals;
+
+    LatencyHistogram(long intervalMillis, int intervals) {
+        if (intervalMillis < 1 || intervals < 1) {
+            throw new IllegalArgumentException("Histogram interval and interval count must be positive");
+        }
+        this.intervalMillis = intervalMillis;
+        this.intervals = new Interval[intervals];
+        for (int i = 0; i < intervals; i++) {
+            this.intervals[i] = new Interval();
+        }
+    }
+
+    void record(long nanos, long nowMillis) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0));
+        long epoch = nowMillis / intervalMillis;
+        Interval interval = intervals[(int) (epoch % intervals.length)];
+        if (interval.epoch != epoch) {
+            interval.reset(epoch);
+        }
+        interval.counts.incrementAndGet(bucketOf(micros));
+        interval.count.incrementAndGet();
+        interval.totalNanos.addAndGet(nanos);
+        interval.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Merges the intervals still inside the window
+     */
+    Snapshot snapshot(long nowMillis) {
+        long epoch = nowMillis / intervalMillis;
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long totalNanos = 0;
+        long maxNanos = 0;
+        for (Interval interval : intervals) {
+            if (epoch - interval.epoch >= intervals.length) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += interval.counts.get(i);
+            }
+            count += interval.count.get();
+            totalNanos += interval.totalNanos.get();
+            maxNanos = Math.max(maxNanos, interval.maxNanos.get());
+        }
+        return new Snapshot(counts, count, totalNanos, maxNanos);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int index = SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    /**
+     * Exclusive upper bound of a bucket, in microseconds
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub + 1) << shift;
+    }
+
+    record Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+
+        double meanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile, in milliseconds
+         */
+        double percentileMillis(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i) / 1000.0, maxNanos / 1e6);
+                }
+            }
+            return maxNanos / 1e6;
+        }
+    }
+
+    private static final class Interval {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile long epoch = -1;
+
+        private synchronized void reset(long newEpoch) {
+            // Another thread may have moved it on already
+            if (epoch >= newEpoch) {
+                return;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            epoch = newEpoch;
+        }
+    }
+}
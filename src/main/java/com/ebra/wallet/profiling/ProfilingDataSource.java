@@ -0,0 +1,136 @@
+package com.ebra.wallet.profiling;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hands out connections whose statements report each execution to the {@link StatementProfiler}.
+ * The JDBC objects are wrapped in JDK proxies, so no driver-specific code is involved.
+ */
+public class ProfilingDataSource extends DelegatingDataSource {
+
+    private final StatementProfiler profiler;
+
+    public ProfilingDataSource(DataSource target, StatementProfiler profiler) {
+        super(target);
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "prepareStatement":
+                case "prepareCall":
+                    return wrapStatement((Statement) ProfilingDataSource.invoke(target, method, args),
+                            (String) args[0], (Connection) proxy);
+                case "createStatement":
+                    return wrapStatement((Statement) ProfilingDataSource.invoke(target, method, args), null,
+                            (Connection) proxy);
+                default:
+                    return ProfilingDataSource.invoke(target, method, args);
+            }
+        }
+
+        private Statement wrapStatement(Statement statement, String sql, Connection connection) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, sql, connection));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        // Null for plain statements, which pass their SQL to execute
+        private final String preparedSql;
+        private final Connection connection;
+
+        private StatementHandler(Statement target, String preparedSql, Connection connection) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String sql = preparedSql != null ? preparedSql
+                        : args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                if (sql != null) {
+                    return execute(sql, method, args);
+                }
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getConnection":
+                    return connection;
+                default:
+                    return ProfilingDataSource.invoke(target, method, args);
+            }
+        }
+
+        private Object execute(String sql, Method method, Object[] args) throws Throwable {
+            if (!profiler.sample()) {
+                try {
+                    return ProfilingDataSource.invoke(target, method, args);
+                } finally {
+                    profiler.record(sql, -1);
+                }
+            }
+            long startNanos = System.nanoTime();
+            try {
+                return ProfilingDataSource.invoke(target, method, args);
+            } finally {
+                profiler.record(sql, System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ebra.wallet.profiling;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application's DataSource in a {@link ProfilingDataSource} unless profiling is off
+ */
+@Component
+public class ProfilingDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final boolean enabled;
+    // Looked up lazily: post-processors are created before ordinary beans
+    private final ObjectProvider<StatementProfiler> profiler;
+
+    public ProfilingDataSourcePostProcessor(@Value("${wallet.profiler.enabled:true}") boolean enabled,
+                                            ObjectProvider<StatementProfiler> profiler) {
+        this.enabled = enabled;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !(bean instanceof ProfilingDataSource)) {
+            return new ProfilingDataSource(dataSource, profiler.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,81 @@
+package com.ebra.wallet.profiling;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a SQL string to its shape, so statements that differ only in layout, literal values
+ * or the length of an IN list are profiled together
+ */
+final class SqlShape {
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+    private SqlShape() {
+    }
+
+    static String normalize(String sql) {
+        StringBuilder shape = new StringBuilder(sql.length());
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (!shape.isEmpty()) {
+                    shape.append(' ');
+                }
+            } else if (c == '\'') {
+                // String literal, with '' as an escaped quote
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                shape.append('?');
+            } else if (Character.isDigit(c)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                shape.append('?');
+            } else if (Character.isLetter(c) || c == '_' || c == '"') {
+                // Identifiers and keywords, which may contain digits (u1_0.balance)
+                while (i < length && isIdentifierPart(sql.charAt(i))) {
+                    shape.append(sql.charAt(i++));
+                }
+            } else {
+                shape.append(c);
+                i++;
+            }
+        }
+        int end = shape.length();
+        while (end > 0 && shape.charAt(end - 1) == ' ') {
+            end--;
+        }
+        shape.setLength(end);
+        return PARAMETER_LIST.matcher(shape).replaceAll("(?...)");
+    }
+
+    /**
+     * The first keyword, e.g. SELECT or UPDATE
+     */
+    static String kind(String shape) {
+        int end = 0;
+        while (end < shape.length() && Character.isLetter(shape.charAt(end))) {
+            end++;
+        }
+        return shape.substring(0, end).toUpperCase();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.' || c == '"';
+    }
+}
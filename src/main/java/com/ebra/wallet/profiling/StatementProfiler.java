@@ -0,0 +1,182 @@
+package com.ebra.wallet.profiling;
+
+import com.ebra.wallet.dto.RepeatedStatementReport;
+import com.ebra.wallet.dto.StatementProfileReport;
+import com.ebra.wallet.dto.StatementReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Collects per-statement call counts and latencies from the profiling DataSource.
+ *
+ * <p>Statements are grouped by their normalized SQL. Every execution is counted; a sampled
+ * share of them is timed into a rolling histogram. A sampled share of HTTP requests also
+ * counts the statements it runs, and a SELECT run at least {@code repeat-threshold} times
+ * within one request is reported as a suspected N+1 query.
+ */
+@Component
+public class StatementProfiler {
+
+    // Shapes beyond the limit are counted together, so ad-hoc SQL cannot grow the map without bound
+    static final String OTHER_SHAPE = "(other statements)";
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final Duration window;
+    private final long intervalMillis;
+    private final int intervals;
+    private final int maxShapes;
+    private final int repeatThreshold;
+    // Raw SQL to its stats, so a statement is normalized once rather than on every execution
+    private final Map<String, StatementStats> bySql = new ConcurrentHashMap<>();
+    private final Map<String, StatementStats> byShape = new ConcurrentHashMap<>();
+    private final ThreadLocal<RequestStatements> currentRequest = new ThreadLocal<>();
+
+    @Autowired
+    public StatementProfiler(@Value("${wallet.profiler.enabled:true}") boolean enabled,
+                             @Value("${wallet.profiler.sample-rate:0.1}") double sampleRate,
+                             @Value("${wallet.profiler.window:5m}") Duration window,
+                             @Value("${wallet.profiler.window-intervals:5}") int intervals,
+                             @Value("${wallet.profiler.max-statements:500}") int maxShapes,
+                             @Value("${wallet.profiler.repeat-threshold:10}") int repeatThreshold) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Profiler sample rate must be between 0 and 1");
+        }
+        if (intervals < 1 || window.toMillis() < intervals || maxShapes < 1 || repeatThreshold < 2) {
+            throw new IllegalArgumentException("Invalid profiler window, statement limit or repeat threshold");
+        }
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.window = window;
+        this.intervalMillis = window.toMillis() / intervals;
+        this.intervals = intervals;
+        this.maxShapes = maxShapes;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether to time the next execution
+     */
+    boolean sample() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Records one execution
+     *
+     * @param elapsedNanos how long it took, or -1 when it was not sampled
+     */
+    void record(String sql, long elapsedNanos) {
+        StatementStats stats = statsFor(sql);
+        stats.calls.increment();
+        if (elapsedNanos >= 0) {
+            stats.latency.record(elapsedNanos, System.currentTimeMillis());
+        }
+        RequestStatements request = currentRequest.get();
+        if (request != null) {
+            request.counts.merge(stats, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Starts counting the statements of a request on this thread, for a sampled share of requests
+     */
+    void beginRequest(String path) {
+        if (sample()) {
+            currentRequest.set(new RequestStatements(path));
+        }
+    }
+
+    void endRequest() {
+        RequestStatements request = currentRequest.get();
+        if (request == null) {
+            return;
+        }
+        currentRequest.remove();
+        request.counts.forEach((stats, count) -> {
+            if (count >= repeatThreshold && "SELECT".equals(stats.kind)) {
+                stats.repeatedInRequest(count, request.path);
+            }
+        });
+    }
+
+    public StatementProfileReport report(int limit) {
+        long now = System.currentTimeMillis();
+        List<StatementReport> statements = byShape.values().stream()
+                .map(stats -> toReport(stats, now))
+                .toList();
+        List<RepeatedStatementReport> repeated = byShape.values().stream()
+                .filter(stats -> stats.repeatedRequests.sum() > 0)
+                .sorted(Comparator.comparingLong((StatementStats stats) -> stats.repeatedRequests.sum()).reversed())
+                .limit(limit)
+                .map(stats -> new RepeatedStatementReport(stats.shape, stats.repeatedRequests.sum(),
+                        stats.maxRepetitions.get(), stats.lastRepeatedPath))
+                .toList();
+        return new StatementProfileReport(sampleRate, window.toSeconds(),
+                top(statements, Comparator.comparingDouble(StatementReport::p95Millis), limit),
+                top(statements, Comparator.comparingLong(StatementReport::calls), limit),
+                repeated);
+    }
+
+    /**
+     * Forgets everything recorded so far
+     */
+    public void reset() {
+        bySql.clear();
+        byShape.clear();
+    }
+
+    private StatementStats statsFor(String sql) {
+        StatementStats stats = bySql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        String shape = SqlShape.normalize(sql);
+        if (byShape.size() >= maxShapes && !byShape.containsKey(shape)) {
+            shape = OTHER_SHAPE;
+        }
+        stats = byShape.computeIfAbsent(shape, key -> new StatementStats(key, intervalMillis, intervals));
+        if (bySql.size() < maxShapes * 4) {
+            bySql.putIfAbsent(sql, stats);
+        }
+        return stats;
+    }
+
+    private static StatementReport toReport(StatementStats stats, long now) {
+        LatencyHistogram.Snapshot latency = stats.latency.snapshot(now);
+        return new StatementReport(stats.shape, stats.calls.sum(), latency.count(), round(latency.meanMillis()),
+                round(latency.percentileMillis(0.50)), round(latency.percentileMillis(0.95)),
+                round(latency.percentileMillis(0.99)), round(latency.maxNanos() / 1e6));
+    }
+
+    private static List<StatementReport> top(List<StatementReport> statements, Comparator<StatementReport> order,
+                                             int limit) {
+        return statements.stream().sorted(order.reversed()).limit(limit).toList();
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+
+    private static final class RequestStatements {
+        private final String path;
+        private final Map<StatementStats, Integer> counts = new HashMap<>();
+
+        private RequestStatements(String path) {
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.ebra.wallet.profiling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the profiler knows about one statement shape: every call is counted, sampled calls
+ * feed the rolling latency histogram, and requests that ran the shape repeatedly are tallied
+ * as suspected N+1 queries
+ */
+final class StatementStats {
+
+    final String shape;
+    final String kind;
+    final LongAdder calls = new LongAdder();
+    final LatencyHistogram latency;
+    final LongAdder repeatedRequests = new LongAdder();
+    final AtomicInteger maxRepetitions = new AtomicInteger();
+    volatile String lastRepeatedPath;
+
+    StatementStats(String shape, long intervalMillis, int intervals) {
+        this.shape = shape;
+        this.kind = SqlShape.kind(shape);
+        this.latency = new LatencyHistogram(intervalMillis, intervals);
+    }
+
+    void repeatedInRequest(int repetitions, String path) {
+        repeatedRequests.increment();
+        maxRepetitions.accumulateAndGet(repetitions, Math::max);
+        lastRepeatedPath = path;
+    }
+}
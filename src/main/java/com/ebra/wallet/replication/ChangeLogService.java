@@ -0,0 +1,65 @@
+package com.ebra.wallet.replication;
+
+import com.ebra.wallet.dto.AccountChange;
+import com.ebra.wallet.dto.ChangeBatch;
+import com.ebra.wallet.dto.LedgerChange;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Serves the primary's change log to followers. The ledger is append-only and SQLite commits
+ * one writer at a time, so ledger ids become visible in order and a follower only needs the
+ * last id it applied (its version) to resume. Accounts are paged the same way by account id,
+ * and a batch never holds a ledger row whose account the follower has not been sent yet.
+ */
+@Service
+public class ChangeLogService {
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    @Autowired
+    public ChangeLogService(UserRepository userRepository, TransactionRepository transactionRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Reads accounts created after {@code afterAccountId} and ledger rows after {@code afterVersion}
+     */
+    public ChangeBatch read(long afterAccountId, long afterVersion, int limit) {
+        if (limit < 1 || limit > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        return readOnlyTransactionTemplate.execute(status -> {
+            List<AccountChange> accounts = userRepository.findAccountChangesAfter(afterAccountId,
+                    PageRequest.of(0, limit));
+            List<LedgerChange> transactions = transactionRepository.findChangesAfter(afterVersion,
+                    PageRequest.of(0, limit));
+            if (accounts.size() == limit) {
+                // Stop before the first ledger row whose account is not in this or an earlier batch
+                long lastAccountId = accounts.get(accounts.size() - 1).id();
+                int end = 0;
+                while (end < transactions.size() && transactions.get(end).userId() <= lastAccountId) {
+                    end++;
+                }
+                transactions = transactions.subList(0, end);
+            }
+            long head = transactionRepository.findMaxId().orElse(0L);
+            return new ChangeBatch(accounts, transactions, head);
+        });
+    }
+}
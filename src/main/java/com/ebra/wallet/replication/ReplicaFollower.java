@@ -0,0 +1,220 @@
+package com.ebra.wallet.replication;
+
+import com.ebra.wallet.dto.AccountChange;
+import com.ebra.wallet.dto.ChangeBatch;
+import com.ebra.wallet.dto.LedgerChange;
+import com.ebra.wallet.entity.IdempotencyKeys;
+import com.ebra.wallet.service.WalletService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follower mode: tails the primary's change log over HTTP and applies it to the local
+ * database, which then serves account and history reads.
+ *
+ * <p>Rows keep the primary's ids, so the follower resumes from the highest ids it holds after
+ * a restart and its version is directly comparable with the transaction ids the primary
+ * returns from writes. Each pulled batch is applied in one local transaction. Holds are not
+ * in the change log, so a follower's held balances stay zero and its account reads leave the
+ * held and available balances out.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.replica.enabled", havingValue = "true")
+public class ReplicaFollower {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaFollower.class);
+
+    private static final String INSERT_ACCOUNT =
+            "INSERT INTO users (id, username, balance, version, created_at, updated_at) VALUES (?, ?, 0, 0, ?, ?) " +
+                    "ON CONFLICT(id) DO NOTHING";
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (id, user_id, type, amount, balance_before, balance_after, " +
+                    "idempotency_id, idempotency_key, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT(id) DO NOTHING";
+    private static final String UPDATE_BALANCE =
+            "UPDATE users SET balance = ?, updated_at = ?, version = version + 1 WHERE id = ?";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletService walletService;
+    private final URI primaryUrl;
+    private final int batchSize;
+    private final Duration requestTimeout;
+    private final Object versionMonitor = new Object();
+
+    private volatile long appliedVersion;
+    private volatile long appliedAccountId;
+    private volatile long primaryHeadVersion;
+    private volatile long caughtUpAtNanos = System.nanoTime();
+
+    @Autowired
+    public ReplicaFollower(ObjectMapper objectMapper, JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager, WalletService walletService,
+                           MeterRegistry registry,
+                           @Value("${wallet.replica.primary-url}") URI primaryUrl,
+                           @Value("${wallet.replica.batch-size:500}") int batchSize,
+                           @Value("${wallet.replica.request-timeout:10s}") Duration requestTimeout) {
+        this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.walletService = walletService;
+        this.primaryUrl = primaryUrl;
+        this.batchSize = Math.min(batchSize, ChangeLogService.MAX_BATCH_SIZE);
+        this.requestTimeout = requestTimeout;
+
+        // Resume from the highest ids already applied (the schema exists once the repositories do)
+        this.appliedVersion = maxId("transactions");
+        this.appliedAccountId = maxId("users");
+        this.primaryHeadVersion = appliedVersion;
+        log.info("Following {} from version {}", primaryUrl, appliedVersion);
+
+        Gauge.builder("wallet.replica.version", this, follower -> follower.appliedVersion)
+                .description("Highest ledger version applied on this follower")
+                .register(registry);
+        Gauge.builder("wallet.replica.lag.versions", this,
+                        follower -> Math.max(0, follower.primaryHeadVersion - follower.appliedVersion))
+                .description("Ledger rows the primary had committed that this follower had not applied yet")
+                .register(registry);
+        Gauge.builder("wallet.replica.lag.seconds", this, ReplicaFollower::lagSeconds)
+                .description("Seconds since this follower was last caught up with the primary")
+                .register(registry);
+    }
+
+    public long getAppliedVersion() {
+        return appliedVersion;
+    }
+
+    public URI getPrimaryUrl() {
+        return primaryUrl;
+    }
+
+    /**
+     * Pulls and applies batches until the follower has caught up with the primary
+     */
+    @Scheduled(fixedDelayString = "${wallet.replica.poll-interval-millis:200}")
+    public void poll() {
+        try {
+            ChangeBatch batch;
+            do {
+                batch = fetch();
+                apply(batch);
+                primaryHeadVersion = batch.headVersion();
+            } while (batch.accounts().size() == batchSize || batch.transactions().size() == batchSize);
+            if (appliedVersion >= primaryHeadVersion) {
+                caughtUpAtNanos = System.nanoTime();
+            }
+        } catch (IOException ex) {
+            log.warn("Could not pull changes from {}: {}", primaryUrl, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the follower has applied at least the given version
+     *
+     * @return false if the version was not reached within the timeout
+     */
+    public boolean awaitVersion(long version, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (versionMonitor) {
+            while (appliedVersion < version) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(versionMonitor, remaining);
+            }
+        }
+        return true;
+    }
+
+    private ChangeBatch fetch() throws IOException, InterruptedException {
+        URI uri = primaryUrl.resolve("/api/wallet/replication/changes?afterAccount=" + appliedAccountId +
+                "&afterVersion=" + appliedVersion + "&limit=" + batchSize);
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(requestTimeout).GET().build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Primary answered " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), ChangeBatch.class);
+    }
+
+    private void apply(ChangeBatch batch) {
+        if (batch.accounts().isEmpty() && batch.transactions().isEmpty()) {
+            return;
+        }
+
+        Set<String> touched = new HashSet<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Object[]> accounts = new ArrayList<>(batch.accounts().size());
+            for (AccountChange account : batch.accounts()) {
+                Timestamp createdAt = Timestamp.valueOf(account.createdAt());
+                accounts.add(new Object[] {account.id(), account.username(), createdAt, createdAt});
+                touched.add(account.username());
+            }
+            List<Object[]> transactions = new ArrayList<>(batch.transactions().size());
+            List<Object[]> balances = new ArrayList<>(batch.transactions().size());
+            for (LedgerChange change : batch.transactions()) {
+                Timestamp createdAt = Timestamp.valueOf(change.createdAt());
+                transactions.add(new Object[] {change.id(), change.userId(), change.type().name(), change.amount(),
+                        change.balanceBefore(), change.balanceAfter(), IdempotencyKeys.idOf(change.idempotencyKey()),
+                        IdempotencyKeys.storedFormOf(change.idempotencyKey()), createdAt});
+                // Applied in ledger order, so the last row of each account sets its balance
+                balances.add(new Object[] {change.balanceAfter(), createdAt, change.userId()});
+                touched.add(change.username());
+            }
+
+            jdbcTemplate.batchUpdate(INSERT_ACCOUNT, accounts);
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION, transactions);
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE, balances);
+        });
+
+        touched.forEach(walletService::invalidateReads);
+        if (!batch.accounts().isEmpty()) {
+            appliedAccountId = batch.accounts().get(batch.accounts().size() - 1).id();
+        }
+        if (!batch.transactions().isEmpty()) {
+            synchronized (versionMonitor) {
+                appliedVersion = batch.transactions().get(batch.transactions().size() - 1).id();
+                versionMonitor.notifyAll();
+            }
+        }
+    }
+
+    private double lagSeconds() {
+        return (System.nanoTime() - caughtUpAtNanos) / 1_000_000_000.0;
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        return max == null ? 0 : max;
+    }
+}
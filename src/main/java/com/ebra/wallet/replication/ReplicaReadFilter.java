@@ -0,0 +1,105 @@
+package com.ebra.wallet.replication;
+
+import com.ebra.wallet.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Makes a follower read-only and gives reads a read-your-writes option: a client that sends
+ * the id of its last transaction in {@value #MIN_VERSION_HEADER} is answered only once that
+ * write has been applied here, or gets 503 after the wait limit. Every account read reports
+ * the applied version in {@value #VERSION_HEADER}.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.replica.enabled", havingValue = "true")
+public class ReplicaReadFilter extends OncePerRequestFilter {
+
+    public static final String MIN_VERSION_HEADER = "X-Wallet-Min-Version";
+    public static final String VERSION_HEADER = "X-Wallet-Version";
+
+    private static final Set<String> WRITE_PATHS = Set.of("/api/wallet/account", "/api/wallet/topup",
+            "/api/wallet/charge", "/api/wallet/admin/import", "/api/wallet/admin/charge-runs");
+
+    private final ReplicaFollower follower;
+    private final ObjectMapper objectMapper;
+    private final Duration maxWait;
+
+    @Autowired
+    public ReplicaReadFilter(ReplicaFollower follower, ObjectMapper objectMapper,
+                             @Value("${wallet.replica.max-wait:2s}") Duration maxWait) {
+        this.follower = follower;
+        this.objectMapper = objectMapper;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!"GET".equals(request.getMethod())) {
+            if (WRITE_PATHS.contains(path) || path.startsWith("/api/wallet/holds")
+                    || path.startsWith("/api/wallet/admin/velocity/")) {
+                writeError(response, HttpStatus.METHOD_NOT_ALLOWED, "READ_ONLY_REPLICA",
+                        "This node is a read replica; send writes to " + follower.getPrimaryUrl());
+                return;
+            }
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!path.startsWith("/api/wallet/account/")) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String minVersion = request.getHeader(MIN_VERSION_HEADER);
+        if (minVersion != null) {
+            long version;
+            try {
+                version = Long.parseLong(minVersion.strip());
+            } catch (NumberFormatException ex) {
+                writeError(response, HttpStatus.BAD_REQUEST, "INVALID_REQUEST",
+                        MIN_VERSION_HEADER + " must be a transaction id");
+                return;
+            }
+            try {
+                if (!follower.awaitVersion(version, maxWait)) {
+                    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                    writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "REPLICA_BEHIND",
+                            "Replica has applied version " + follower.getAppliedVersion() + ", not yet " + version);
+                    return;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "REPLICA_BEHIND",
+                        "Interrupted while waiting for version " + version);
+                return;
+            }
+        }
+        // Taken before the read, so the data is at least this fresh
+        response.setHeader(VERSION_HEADER, Long.toString(follower.getAppliedVersion()));
+        chain.doFilter(request, response);
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String code, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(code, message, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,30 @@
+package com.ebra.wallet.replication;
+
+import com.ebra.wallet.dto.ChangeBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/wallet/replication")
+public class ReplicationController {
+
+    private final ChangeLogService changeLogService;
+
+    @Autowired
+    public ReplicationController(ChangeLogService changeLogService) {
+        this.changeLogService = changeLogService;
+    }
+
+    /**
+     * Pulls the change log after the follower's offsets
+     * GET /api/wallet/replication/changes?afterAccount=...&afterVersion=...&limit=...
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ChangeBatch> getChanges(
+            @RequestParam(value = "afterAccount", defaultValue = "0") long afterAccount,
+            @RequestParam(value = "afterVersion", defaultValue = "0") long afterVersion,
+            @RequestParam(value = "limit", defaultValue = "500") int limit) {
+        return ResponseEntity.ok(changeLogService.read(afterAccount, afterVersion, limit));
+    }
+}
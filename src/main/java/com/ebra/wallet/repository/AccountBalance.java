@@ -0,0 +1,19 @@
+package com.ebra.wallet.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of an account's id, current balance and the part of it held
+ */
+public interface AccountBalance {
+
+    Long getId();
+
+    BigDecimal getBalance();
+
+    BigDecimal getHeldBalance();
+
+    default BigDecimal getAvailableBalance() {
+        return getBalance().subtract(getHeldBalance());
+    }
+}
@@ -0,0 +1,15 @@
+package com.ebra.wallet.repository;
+
+import com.ebra.wallet.entity.ChargeRun;
+import com.ebra.wallet.entity.ChargeRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChargeRunRepository extends JpaRepository<ChargeRun, Long> {
+
+    List<ChargeRun> findByStatusInOrderByIdAsc(Collection<ChargeRunStatus> statuses);
+}
@@ -0,0 +1,65 @@
+package com.ebra.wallet.repository;
+
+import com.ebra.wallet.dto.ExpiringHold;
+import com.ebra.wallet.dto.HoldExpiry;
+import com.ebra.wallet.dto.HoldResponse;
+import com.ebra.wallet.entity.Hold;
+import com.ebra.wallet.entity.HoldStatus;
+import com.ebra.wallet.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+
+    boolean existsByIdempotencyKey(String idempotencyKey);
+
+    boolean existsByUserAndStatus(User user, HoldStatus status);
+
+    @Query("SELECT h FROM Hold h JOIN FETCH h.user WHERE h.id = :id")
+    Optional<Hold> findWithUserById(@Param("id") Long id);
+
+    @Query("SELECT new com.ebra.wallet.dto.HoldResponse(h.id, u.username, h.amount, h.capturedAmount, h.status, " +
+            "h.idempotencyKey, h.expiresAt, h.createdAt, h.resolvedAt) FROM Hold h JOIN h.user u WHERE h.id = :id")
+    Optional<HoldResponse> findResponseById(@Param("id") Long id);
+
+    /**
+     * Expiry times of active holds after the given id, for reloading the expiry timer
+     */
+    @Query("SELECT new com.ebra.wallet.dto.HoldExpiry(h.id, h.expiresAt) FROM Hold h " +
+            "WHERE h.status = com.ebra.wallet.entity.HoldStatus.ACTIVE AND h.id > :afterId ORDER BY h.id")
+    List<HoldExpiry> findActiveExpiriesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.ebra.wallet.dto.ExpiringHold(h.id, u.id, u.username, h.amount) FROM Hold h JOIN h.user u " +
+            "WHERE h.id IN :ids AND h.status = com.ebra.wallet.entity.HoldStatus.ACTIVE AND h.expiresAt <= :now")
+    List<ExpiringHold> findExpiredAmong(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Moves an active hold to its final status. Returns 0 if it was no longer active, so of
+     * concurrent capture, release and expiry exactly one wins.
+     */
+    @Modifying
+    @Query("UPDATE Hold h SET h.status = :status, h.capturedAmount = :captured, h.resolvedAt = :now " +
+            "WHERE h.id = :id AND h.status = com.ebra.wallet.entity.HoldStatus.ACTIVE")
+    int resolve(@Param("id") Long id,
+                @Param("status") HoldStatus status,
+                @Param("captured") BigDecimal captured,
+                @Param("now") LocalDateTime now);
+
+    /**
+     * Deletes the resolved holds of an account that is being handed off
+     */
+    @Modifying
+    @Query("DELETE FROM Hold h WHERE h.user = :user")
+    int deleteByUser(@Param("user") User user);
+}
@@ -1,15 +1,102 @@
 package com.ebra.wallet.repository;
 
+import com.ebra.wallet.dto.LedgerChange;
+import com.ebra.wallet.dto.LedgerPoint;
+import com.ebra.wallet.dto.RecentCharge;
+import com.ebra.wallet.dto.TransactionResponse;
+import com.ebra.wallet.entity.IdempotencyKeys;
 import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
-    Optional<Transaction> findByIdempotencyKey(String idempotencyKey);
+    Optional<Transaction> findByIdempotencyId(byte[] idempotencyId);
 
-    boolean existsByIdempotencyKey(String idempotencyKey);
+    /**
+     * Finds the transaction recorded under a key, through the 16-byte index
+     *
+     * @throws IllegalArgumentException if a different key with the same hash is recorded
+     */
+    default Optional<Transaction> findByIdempotencyKey(String idempotencyKey) {
+        Optional<Transaction> transaction = findByIdempotencyId(IdempotencyKeys.idOf(idempotencyKey));
+        if (transaction.isPresent() && !idempotencyKey.equals(transaction.get().getIdempotencyKey())) {
+            throw new IllegalArgumentException("Idempotency key collides with the key of transaction "
+                    + transaction.get().getId() + "; use another key");
+        }
+        return transaction;
+    }
+
+    default boolean existsByIdempotencyKey(String idempotencyKey) {
+        return findByIdempotencyKey(idempotencyKey).isPresent();
+    }
+
+    List<Transaction> findByUserOrderByIdAsc(User user);
+
+    /**
+     * Newest-first history of an account, older than {@code beforeId}, read without loading entities
+     */
+    @Query("SELECT new com.ebra.wallet.dto.TransactionResponse(t.id, t.type, t.amount, t.balanceBefore, " +
+            "t.balanceAfter, t.storedIdempotencyKey, t.idempotencyId, t.createdAt) " +
+            "FROM Transaction t JOIN t.user u WHERE u.username = :username AND t.id < :beforeId ORDER BY t.id DESC")
+    List<TransactionResponse> findHistory(@Param("username") String username, @Param("beforeId") Long beforeId,
+                                          Pageable pageable);
+
+    /**
+     * Latest ledger rows of an account at or before {@code at}, newest first. With a page of one
+     * this is a single seek on (user_id, created_at).
+     */
+    @Query("SELECT new com.ebra.wallet.dto.LedgerPoint(t.id, t.createdAt, t.balanceAfter) " +
+            "FROM Transaction t JOIN t.user u WHERE u.username = :username AND t.createdAt <= :at " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<LedgerPoint> findLedgerPointsUpTo(@Param("username") String username, @Param("at") LocalDateTime at,
+                                           Pageable pageable);
+
+    /**
+     * Ledger rows of an account after {@code from} and at or before {@code to}, oldest first, as one
+     * range scan of (user_id, created_at). Must be consumed inside a transaction and closed.
+     */
+    @Query("SELECT new com.ebra.wallet.dto.LedgerPoint(t.id, t.createdAt, t.balanceAfter) " +
+            "FROM Transaction t JOIN t.user u WHERE u.username = :username " +
+            "AND t.createdAt > :from AND t.createdAt <= :to ORDER BY t.createdAt, t.id")
+    Stream<LedgerPoint> streamLedgerPointsBetween(@Param("username") String username,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to);
+
+    /**
+     * Charges of an account after {@code since}, found through (user_id, created_at)
+     */
+    @Query("SELECT new com.ebra.wallet.dto.RecentCharge(t.id, u.username, u.velocityTier, t.createdAt, t.amount) " +
+            "FROM Transaction t JOIN t.user u WHERE u.username = :username AND t.createdAt > :since " +
+            "AND t.type = com.ebra.wallet.entity.TransactionType.CHARGE")
+    List<RecentCharge> findChargesSince(@Param("username") String username, @Param("since") LocalDateTime since);
+
+    /**
+     * Charges of all accounts with an id below {@code beforeId}, newest first, walking the primary key
+     */
+    @Query("SELECT new com.ebra.wallet.dto.RecentCharge(t.id, u.username, u.velocityTier, t.createdAt, t.amount) " +
+            "FROM Transaction t JOIN t.user u WHERE t.id < :beforeId " +
+            "AND t.type = com.ebra.wallet.entity.TransactionType.CHARGE ORDER BY t.id DESC")
+    List<RecentCharge> findChargesBefore(@Param("beforeId") Long beforeId, Pageable pageable);
+
+    /**
+     * Ledger rows committed after the given id together with their account, for replication
+     */
+    @Query("SELECT new com.ebra.wallet.dto.LedgerChange(t.id, u.id, u.username, t.type, t.amount, " +
+            "t.balanceBefore, t.balanceAfter, t.storedIdempotencyKey, t.idempotencyId, t.createdAt) " +
+            "FROM Transaction t JOIN t.user u WHERE t.id > :afterId ORDER BY t.id")
+    List<LedgerChange> findChangesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT max(t.id) FROM Transaction t")
+    Optional<Long> findMaxId();
 }
\ No newline at end of file
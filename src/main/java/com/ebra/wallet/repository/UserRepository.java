@@ -1,13 +1,21 @@
 package com.ebra.wallet.repository;
 
+import com.ebra.wallet.dto.AccountChange;
+import com.ebra.wallet.dto.UserResponse;
 import com.ebra.wallet.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,9 +23,102 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String username);
 
+    /**
+     * Reads an account for the API without loading the entity
+     */
+    @Query("SELECT new com.ebra.wallet.dto.UserResponse(u.id, u.username, u.balance, u.heldBalance, " +
+            "u.createdAt, u.updatedAt) " +
+            "FROM User u WHERE u.username = :username")
+    Optional<UserResponse> findAccountByUsername(@Param("username") String username);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT u FROM User u WHERE u.username = :username")
     Optional<User> findByUsernameForUpdate(@Param("username") String username);
 
     boolean existsByUsername(String username);
-}
\ No newline at end of file
+
+    /**
+     * Returns which of the given usernames already have an account
+     */
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Pages through all accounts in id order
+     */
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Accounts created after the given id, for replication
+     */
+    @Query("SELECT new com.ebra.wallet.dto.AccountChange(u.id, u.username, u.createdAt) " +
+            "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<AccountChange> findAccountChangesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Reads only the id and balance of an account, without loading the entity
+     */
+    Optional<AccountBalance> findBalanceByUsername(String username);
+
+    /**
+     * Reads the velocity limit tier of an account; empty for an unknown account or the default tier
+     */
+    @Query("SELECT u.velocityTier FROM User u WHERE u.username = :username")
+    Optional<String> findVelocityTierByUsername(@Param("username") String username);
+
+    /**
+     * Sets the velocity limit tier of an account, null for the default. Returns the number of rows updated.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.velocityTier = :tier WHERE u.username = :username")
+    int updateVelocityTier(@Param("username") String username, @Param("tier") String tier);
+
+    /**
+     * Adds to the balance in a single statement. Returns the number of rows updated.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.balance = round(u.balance + :amount, 2), u.updatedAt = :now, " +
+            "u.version = u.version + 1 " +
+            "WHERE u.username = :username")
+    int creditBalance(@Param("username") String username,
+                      @Param("amount") BigDecimal amount,
+                      @Param("now") LocalDateTime now);
+
+    /**
+     * Subtracts from the balance only if the part not held covers the amount. Returns 0 when
+     * the user does not exist or the available balance is insufficient. The amount stays on
+     * the arithmetic side: SQLite binds it as text, and only arithmetic converts it.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.balance = round(u.balance - :amount, 2), u.updatedAt = :now, " +
+            "u.version = u.version + 1 " +
+            "WHERE u.username = :username AND u.balance - :amount >= u.heldBalance")
+    int debitBalanceIfSufficient(@Param("username") String username,
+                                 @Param("amount") BigDecimal amount,
+                                 @Param("now") LocalDateTime now);
+
+    /**
+     * Reserves part of the available balance for a hold. Returns 0 when the user does not
+     * exist or the available balance is insufficient.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.heldBalance = round(u.heldBalance + :amount, 2), u.updatedAt = :now, " +
+            "u.version = u.version + 1 " +
+            "WHERE u.username = :username AND u.balance - :amount >= u.heldBalance")
+    int holdBalance(@Param("username") String username,
+                    @Param("amount") BigDecimal amount,
+                    @Param("now") LocalDateTime now);
+
+    /**
+     * Settles a hold: takes the captured amount (zero on release) out of the balance and the
+     * whole held amount out of the held balance
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.balance = round(u.balance - :captured, 2), " +
+            "u.heldBalance = round(u.heldBalance - :held, 2), u.updatedAt = :now, u.version = u.version + 1 " +
+            "WHERE u.id = :id")
+    int settleHold(@Param("id") Long id,
+                   @Param("captured") BigDecimal captured,
+                   @Param("held") BigDecimal held,
+                   @Param("now") LocalDateTime now);
+}
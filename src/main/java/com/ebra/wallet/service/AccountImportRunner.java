@@ -0,0 +1,56 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.dto.ImportReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs a bulk account import from the command line and exits:
+ * {@code java -jar wallet.jar --wallet.import.file=users.csv --spring.main.web-application-type=none}.
+ * The format follows the file extension ({@code .ndjson}/{@code .jsonl} or CSV) unless
+ * {@code wallet.import.format} is set.
+ */
+@Component
+@ConditionalOnProperty("wallet.import.file")
+public class AccountImportRunner implements ApplicationRunner {
+
+    private final AccountImportService accountImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${wallet.import.file}")
+    private Path file;
+
+    @Value("${wallet.import.format:}")
+    private String format;
+
+    @Autowired
+    public AccountImportRunner(AccountImportService accountImportService, ConfigurableApplicationContext context) {
+        this.accountImportService = accountImportService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        ImportFormat importFormat = format.isBlank()
+                ? ImportFormat.fromFileName(file.getFileName().toString())
+                : ImportFormat.valueOf(format.toUpperCase());
+
+        ImportReport report;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            report = accountImportService.importAccounts(reader, importFormat);
+        }
+        int exitCode = report.invalid() > 0 ? 2 : 0;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
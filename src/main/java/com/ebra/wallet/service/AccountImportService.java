@@ -0,0 +1,182 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.dto.ImportReport;
+import com.ebra.wallet.entity.IdempotencyKeys;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.repository.UserRepository;
+import com.ebra.wallet.service.ImportRecordReader.ImportRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk-creates accounts with opening balances from a CSV or NDJSON stream.
+ *
+ * <p>Rows are read in chunks; each chunk is deduplicated against itself and against existing
+ * accounts, then written in one transaction as JDBC batches. Ids are assigned hi-lo style: the
+ * chunk reads the current maximum id and numbers its rows after it, so no generated key has to
+ * be read back per row. SQLite admits one writer at a time, so once the first batch is written
+ * nobody else can take those ids before the chunk commits; a conflict on that first batch rolls
+ * the chunk back and it is retried with fresh ids. Committed chunks stay committed, so a failed
+ * import can simply be run again: accounts that already exist are skipped.
+ *
+ * <p>A positive opening balance is recorded as a TOP_UP with idempotency key
+ * {@code import:<username>}, plus its outbox event, like any other balance change.
+ */
+@Service
+public class AccountImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountImportService.class);
+
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    private static final String INSERT_USER =
+            "INSERT INTO users (id, username, balance, version, created_at, updated_at) VALUES (?, ?, ?, 0, ?, ?)";
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (id, user_id, type, amount, balance_before, balance_after, " +
+                    "idempotency_id, idempotency_key, created_at) VALUES (?, ?, ?, ?, 0, ?, ?, ?, ?)";
+    private static final String INSERT_OUTBOX_EVENT =
+            "INSERT INTO outbox_events (username, transaction_id, type, amount, balance_after, created_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final long progressInterval;
+
+    @Autowired
+    public AccountImportService(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                                @Value("${wallet.import.chunk-size:500}") int chunkSize,
+                                @Value("${wallet.import.progress-interval:100000}") long progressInterval) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Imports every row of the input and reports what happened to them
+     */
+    public ImportReport importAccounts(BufferedReader input, ImportFormat format) throws IOException {
+        ImportRecordReader reader = new ImportRecordReader(input, format, objectMapper);
+        long startNanos = System.nanoTime();
+        long read = 0;
+        long imported = 0;
+        long invalid = 0;
+        long nextProgress = progressInterval;
+
+        List<ImportRecord> chunk = new ArrayList<>(chunkSize);
+        ImportRecord record;
+        do {
+            record = reader.next();
+            if (record != null) {
+                read++;
+                if (record.isValid()) {
+                    chunk.add(record);
+                } else {
+                    invalid++;
+                }
+            }
+            if (chunk.size() == chunkSize || (record == null && !chunk.isEmpty())) {
+                imported += importChunk(chunk);
+                chunk.clear();
+            }
+            if (read >= nextProgress) {
+                log.info("Account import: {} rows read, {} imported, {} rows/s",
+                        read, imported, Math.round(rowsPerSecond(read, startNanos)));
+                nextProgress += progressInterval;
+            }
+        } while (record != null);
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        ImportReport report = new ImportReport(read, imported, read - imported - invalid, invalid,
+                elapsedMillis, rowsPerSecond(read, startNanos));
+        log.info("Account import finished: {}", report);
+        return report;
+    }
+
+    private int importChunk(List<ImportRecord> chunk) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Integer written = transactionTemplate.execute(status -> writeChunk(chunk));
+                return written == null ? 0 : written;
+            } catch (DataIntegrityViolationException ex) {
+                // Another writer took one of our ids or usernames before our first insert
+                if (attempt >= MAX_CHUNK_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private int writeChunk(List<ImportRecord> chunk) {
+        // First occurrence of a username wins; later ones, and existing accounts, are skipped
+        Map<String, BigDecimal> accounts = new LinkedHashMap<>();
+        for (ImportRecord record : chunk) {
+            accounts.putIfAbsent(record.username(), record.balance());
+        }
+        userRepository.findExistingUsernames(accounts.keySet()).forEach(accounts::remove);
+        if (accounts.isEmpty()) {
+            return 0;
+        }
+
+        long userId = maxId("users");
+        long transactionId = maxId("transactions");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String type = TransactionType.TOP_UP.name();
+
+        List<Object[]> users = new ArrayList<>(accounts.size());
+        List<Object[]> transactions = new ArrayList<>();
+        List<Object[]> events = new ArrayList<>();
+        for (Map.Entry<String, BigDecimal> account : accounts.entrySet()) {
+            String username = account.getKey();
+            BigDecimal balance = account.getValue();
+            users.add(new Object[] {++userId, username, balance, now, now});
+            if (balance.signum() > 0) {
+                String idempotencyKey = "import:" + username;
+                transactions.add(new Object[] {++transactionId, userId, type, balance, balance,
+                        IdempotencyKeys.idOf(idempotencyKey), IdempotencyKeys.storedFormOf(idempotencyKey), now});
+                events.add(new Object[] {username, transactionId, type, balance, balance, now});
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_USER, users);
+        if (!transactions.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION, transactions);
+            jdbcTemplate.batchUpdate(INSERT_OUTBOX_EVENT, events);
+        }
+        return users.size();
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        return max == null ? 0 : max;
+    }
+
+    private static double rowsPerSecond(long rows, long startNanos) {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        return rows * 1_000_000_000.0 / elapsedNanos;
+    }
+}
@@ -0,0 +1,363 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.dto.BalanceEvent;
+import com.ebra.wallet.entity.OutboxEvent;
+import com.ebra.wallet.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the transactional outbox and pushes balance changes to SSE subscribers.
+ *
+ * <p>The dispatcher polls for events past the last dispatched offset. SQLite admits one
+ * writer at a time, so outbox ids become visible in commit order and a single offset is
+ * enough to never skip an event. Each event is serialized once and offered to the bounded
+ * queue of every subscriber of that user. A small sender pool drains the queues, so an idle
+ * subscriber costs a connection and a few objects, not a thread. A subscriber whose queue
+ * overflows, or whose write has been blocked for longer than the send timeout, is disconnected;
+ * it can reconnect with Last-Event-ID and replay from the outbox.
+ *
+ * <p>Writes are blocking, so a client that stops reading holds a sender thread until the write
+ * fails or the container times it out. A sender blocked past the send timeout is written off and
+ * replaced by an extra thread until its write returns, so slow clients cannot stall other streams.
+ */
+@Service
+public class BalanceEventService {
+
+    private static final String EVENT_NAME = "balance";
+    private static final long NOT_SENDING = 0;
+    private static final long STALLED = Long.MIN_VALUE;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ThreadPoolExecutor senders;
+    private final int senderThreads;
+    private final AtomicInteger stalledSenders = new AtomicInteger();
+    private final int batchSize;
+    private final int bufferSize;
+    private final long emitterTimeoutMillis;
+    private final long sendTimeoutNanos;
+    private final Duration retention;
+
+    private final Counter dispatched;
+    private final Counter slowConsumerDisconnects;
+
+    // Written only by the dispatcher thread
+    private long dispatchedOffset = -1;
+
+    @Autowired
+    public BalanceEventService(OutboxEventRepository outboxEventRepository,
+                               ObjectMapper objectMapper,
+                               MeterRegistry registry,
+                               @Value("${wallet.events.batch-size:500}") int batchSize,
+                               @Value("${wallet.events.subscriber-buffer:256}") int bufferSize,
+                               @Value("${wallet.events.sender-threads:4}") int senderThreads,
+                               @Value("${wallet.events.emitter-timeout-millis:1800000}") long emitterTimeoutMillis,
+                               @Value("${wallet.events.send-timeout-millis:5000}") long sendTimeoutMillis,
+                               @Value("${wallet.events.retention:1h}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.retention = retention;
+        this.senderThreads = senderThreads;
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "balance-event-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.dispatched = Counter.builder("wallet.events.dispatched")
+                .description("Outbox events fanned out to subscribers")
+                .register(registry);
+        this.slowConsumerDisconnects = Counter.builder("wallet.events.slow.disconnects")
+                .description("Subscribers disconnected because their buffer overflowed or a write stalled")
+                .register(registry);
+        Gauge.builder("wallet.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open balance event streams")
+                .register(registry);
+        Gauge.builder("wallet.events.senders.stalled", stalledSenders, AtomicInteger::get)
+                .description("Sender threads written off while blocked in a write to a slow client")
+                .register(registry);
+    }
+
+    /**
+     * Opens a stream of balance changes for the user. When {@code afterOffset} is given the
+     * stream first replays retained events after that offset, then continues live.
+     */
+    public SseEmitter subscribe(String username, Long afterOffset) {
+        return subscribe(username, afterOffset, new SseEmitter(emitterTimeoutMillis));
+    }
+
+    SseEmitter subscribe(String username, Long afterOffset, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(username, emitter, afterOffset == null ? 0 : afterOffset);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(ex -> subscriber.close());
+
+        // Register before reading the backlog so nothing committed in between is missed;
+        // live events queue up behind the replay and duplicates are skipped by offset
+        subscribers.compute(username, (key, set) -> {
+            Set<Subscriber> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+        subscriberCount.incrementAndGet();
+        senders.execute(afterOffset == null ? subscriber::drain : subscriber::replayThenDrain);
+        return emitter;
+    }
+
+    /**
+     * Fans out committed outbox events past the last dispatched offset
+     */
+    @Scheduled(fixedDelayString = "${wallet.events.poll-interval-millis:100}")
+    public void dispatch() {
+        if (dispatchedOffset < 0 || subscriberCount.get() == 0) {
+            // Nobody is listening: skip ahead instead of reading rows nobody needs. The head is
+            // read before checking again, so a stream opened in between misses nothing.
+            long head = outboxEventRepository.findMaxId().orElse(0L);
+            if (dispatchedOffset < 0 || subscriberCount.get() == 0) {
+                dispatchedOffset = head;
+                return;
+            }
+        }
+
+        List<OutboxEvent> batch;
+        do {
+            batch = outboxEventRepository.findByIdGreaterThanOrderByIdAsc(dispatchedOffset,
+                    PageRequest.of(0, batchSize));
+            for (OutboxEvent event : batch) {
+                fanOut(event);
+                dispatchedOffset = event.getId();
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * Keeps idle connections alive and detects clients that went away
+     */
+    @Scheduled(fixedDelayString = "${wallet.events.heartbeat-interval-millis:30000}")
+    public void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.offer(Outgoing.HEARTBEAT)));
+    }
+
+    /**
+     * Disconnects subscribers whose current write has taken longer than the send timeout
+     */
+    @Scheduled(fixedDelayString = "${wallet.events.stall-check-interval-millis:1000}")
+    public void closeStalledSubscribers() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.closeIfStalled(now)));
+    }
+
+    /**
+     * Deletes outbox events past the retention period; offsets older than that cannot be replayed
+     */
+    @Scheduled(fixedDelayString = "${wallet.events.prune-interval-millis:60000}")
+    public void prune() {
+        outboxEventRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(Subscriber::close));
+    }
+
+    private void fanOut(OutboxEvent event) {
+        Set<Subscriber> targets = subscribers.get(event.getUsername());
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        Outgoing outgoing = new Outgoing(event.getId(), toJson(event));
+        targets.forEach(subscriber -> subscriber.offer(outgoing));
+        dispatched.increment();
+    }
+
+    // Keeps the configured number of senders free to work, on top of the ones blocked in a write
+    private synchronized void resizeSenders() {
+        int size = senderThreads + stalledSenders.get();
+        if (size > senders.getMaximumPoolSize()) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    private String toJson(OutboxEvent event) {
+        BalanceEvent payload = new BalanceEvent(event.getId(), event.getTransactionId(), event.getUsername(),
+                event.getType().toString(), event.getAmount(), event.getBalanceAfter(), event.getCreatedAt());
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize balance event " + event.getId(), ex);
+        }
+    }
+
+    private record Outgoing(long offset, String json) {
+        static final Outgoing HEARTBEAT = new Outgoing(-1, null);
+    }
+
+    private final class Subscriber {
+        private final String username;
+        private final SseEmitter emitter;
+        private final ConcurrentLinkedQueue<Outgoing> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        // Starts set: the initial drain or replay task is submitted by subscribe
+        private final AtomicBoolean scheduled = new AtomicBoolean(true);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // System.nanoTime() when the current write started, NOT_SENDING, or STALLED once written off
+        private final AtomicLong sendStarted = new AtomicLong(NOT_SENDING);
+        // Only touched by the sender thread currently draining this subscriber
+        private long lastSentOffset;
+
+        private Subscriber(String username, SseEmitter emitter, long afterOffset) {
+            this.username = username;
+            this.emitter = emitter;
+            this.lastSentOffset = afterOffset;
+        }
+
+        void offer(Outgoing outgoing) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > bufferSize) {
+                slowConsumerDisconnects.increment();
+                close();
+                return;
+            }
+            queue.add(outgoing);
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        void replayThenDrain() {
+            try {
+                List<OutboxEvent> page;
+                do {
+                    page = outboxEventRepository.findByUsernameAndIdGreaterThanOrderByIdAsc(username,
+                            lastSentOffset, PageRequest.of(0, batchSize));
+                    for (OutboxEvent event : page) {
+                        send(new Outgoing(event.getId(), toJson(event)));
+                    }
+                } while (page.size() == batchSize && !closed.get());
+            } catch (IOException | IllegalStateException ex) {
+                close();
+                return;
+            }
+            drain();
+        }
+
+        void drain() {
+            try {
+                Outgoing next;
+                while (!closed.get() && (next = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    send(next);
+                }
+            } catch (IOException | IllegalStateException ex) {
+                close();
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (!queue.isEmpty() && !closed.get() && scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void send(Outgoing outgoing) throws IOException {
+            SseEventBuilder event;
+            if (outgoing == Outgoing.HEARTBEAT) {
+                event = SseEmitter.event().comment("heartbeat");
+            } else if (outgoing.offset() > lastSentOffset) {
+                event = SseEmitter.event()
+                        .id(Long.toString(outgoing.offset()))
+                        .name(EVENT_NAME)
+                        .data(outgoing.json());
+                lastSentOffset = outgoing.offset();
+            } else {
+                return;
+            }
+
+            long started = System.nanoTime();
+            sendStarted.set(started);
+            try {
+                // Checked after announcing the write, so close() either sees it or is seen here
+                if (!closed.get()) {
+                    emitter.send(event);
+                }
+            } finally {
+                if (!sendStarted.compareAndSet(started, NOT_SENDING)) {
+                    // Written off by closeIfStalled, which added a sender in this thread's place
+                    stalledSenders.decrementAndGet();
+                    resizeSenders();
+                }
+                if (closed.get()) {
+                    emitter.complete();
+                }
+            }
+        }
+
+        void closeIfStalled(long now) {
+            long started = sendStarted.get();
+            if (started == NOT_SENDING || started == STALLED || now - started < sendTimeoutNanos
+                    || !sendStarted.compareAndSet(started, STALLED)) {
+                return;
+            }
+            slowConsumerDisconnects.increment();
+            stalledSenders.incrementAndGet();
+            resizeSenders();
+            close();
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.computeIfPresent(username, (key, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+            subscriberCount.decrementAndGet();
+            queue.clear();
+            // A write in progress holds the emitter's lock; its sender completes the emitter instead
+            if (sendStarted.get() == NOT_SENDING) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.dto.BalanceQuery;
+import com.ebra.wallet.dto.LedgerPoint;
+import com.ebra.wallet.dto.PointInTimeBalance;
+import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Point-in-time balances read from the ledger: the balance of an account at time T is the
+ * {@code balance_after} of its last transaction at or before T, or zero if there was none.
+ *
+ * <p>Ledger rows are never deleted, so the ledger alone answers any point in time. A single
+ * query is one seek on (user_id, created_at). A batch is sorted by account and time and each
+ * account is answered in one pass: a seek for its earliest time, then one range scan up to its
+ * latest time, merged with the sorted times.
+ */
+@Service
+public class BalanceHistoryService {
+
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    private static final Comparator<BalanceQuery> BY_ACCOUNT_AND_TIME =
+            Comparator.comparing(BalanceQuery::getUsername).thenComparing(BalanceQuery::getAt);
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    @Autowired
+    public BalanceHistoryService(UserRepository userRepository, TransactionRepository transactionRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Gets the balance of an account as of the given time
+     */
+    public PointInTimeBalance getBalanceAt(String username, LocalDateTime at) {
+        return getBalancesAt(List.of(new BalanceQuery(username, at))).get(0);
+    }
+
+    /**
+     * Gets the balance for each (account, time) pair, in the order of the queries
+     */
+    public List<PointInTimeBalance> getBalancesAt(List<BalanceQuery> queries) {
+        if (queries.isEmpty() || queries.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch must have between 1 and " + MAX_BATCH_SIZE + " queries");
+        }
+        Integer[] order = new Integer[queries.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(queries::get, BY_ACCOUNT_AND_TIME));
+
+        PointInTimeBalance[] balances = new PointInTimeBalance[queries.size()];
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            int start = 0;
+            while (start < order.length) {
+                String username = queries.get(order[start]).getUsername();
+                int end = start + 1;
+                while (end < order.length && queries.get(order[end]).getUsername().equals(username)) {
+                    end++;
+                }
+                answerAccount(username, queries, Arrays.copyOfRange(order, start, end), balances);
+                start = end;
+            }
+        });
+        return Arrays.asList(balances);
+    }
+
+    /**
+     * Answers one account's queries, given in ascending time order
+     */
+    private void answerAccount(String username, List<BalanceQuery> queries, Integer[] byTime,
+                               PointInTimeBalance[] balances) {
+        LocalDateTime first = queries.get(byTime[0]).getAt();
+        LocalDateTime last = queries.get(byTime[byTime.length - 1]).getAt();
+
+        List<LedgerPoint> seek = transactionRepository.findLedgerPointsUpTo(username, first, PageRequest.of(0, 1));
+        LedgerPoint current = seek.isEmpty() ? null : seek.get(0);
+        if (current == null && !userRepository.existsByUsername(username)) {
+            throw new UserNotFoundException("User not found: " + username);
+        }
+
+        int next = 0;
+        if (last.isAfter(first)) {
+            try (Stream<LedgerPoint> points = transactionRepository.streamLedgerPointsBetween(username, first, last)) {
+                Iterator<LedgerPoint> iterator = points.iterator();
+                while (iterator.hasNext()) {
+                    LedgerPoint point = iterator.next();
+                    // Every query before this row is answered by the previous one
+                    while (queries.get(byTime[next]).getAt().isBefore(point.createdAt())) {
+                        balances[byTime[next]] = balanceAt(username, queries.get(byTime[next]).getAt(), current);
+                        next++;
+                    }
+                    current = point;
+                }
+            }
+        }
+        for (; next < byTime.length; next++) {
+            balances[byTime[next]] = balanceAt(username, queries.get(byTime[next]).getAt(), current);
+        }
+    }
+
+    private static PointInTimeBalance balanceAt(String username, LocalDateTime at, LedgerPoint point) {
+        if (point == null) {
+            return new PointInTimeBalance(username, at, BigDecimal.ZERO, null, null);
+        }
+        return new PointInTimeBalance(username, at, point.balanceAfter(), point.transactionId(), point.createdAt());
+    }
+}
@@ -0,0 +1,13 @@
+package com.ebra.wallet.service;
+
+/**
+ * How topUp and charge serialize concurrent balance updates on the same account
+ */
+public enum ConcurrencyStrategy {
+    /** Lock the account row, check the balance in Java, then save the entity */
+    PESSIMISTIC,
+    /** Apply the change with one conditional UPDATE and use the affected-row count */
+    ATOMIC_UPDATE,
+    /** Read without a lock and retry on a version conflict; suits rarely contended accounts */
+    OPTIMISTIC
+}
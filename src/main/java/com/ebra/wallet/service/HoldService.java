@@ -0,0 +1,318 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.audit.AuditLog;
+import com.ebra.wallet.audit.AuditOp;
+import com.ebra.wallet.audit.AuditOutcome;
+import com.ebra.wallet.dto.ExpiringHold;
+import com.ebra.wallet.dto.HoldExpiry;
+import com.ebra.wallet.dto.HoldResponse;
+import com.ebra.wallet.dto.TransactionResponse;
+import com.ebra.wallet.entity.Hold;
+import com.ebra.wallet.entity.HoldStatus;
+import com.ebra.wallet.entity.OutboxEvent;
+import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.entity.User;
+import com.ebra.wallet.exception.DuplicateTransactionException;
+import com.ebra.wallet.exception.HoldNotActiveException;
+import com.ebra.wallet.exception.HoldNotFoundException;
+import com.ebra.wallet.exception.InsufficientBalanceException;
+import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.repository.AccountBalance;
+import com.ebra.wallet.repository.HoldRepository;
+import com.ebra.wallet.repository.OutboxEventRepository;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import com.ebra.wallet.velocity.VelocityLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Authorization holds: funds are reserved on the account at authorization and later captured
+ * (as a CHARGE in the ledger), released, or left to expire.
+ *
+ * <p>A hold moves its amount into the account's held balance; the balance itself, and so the
+ * ledger, only changes when a hold is captured. Capture, release and expiry each resolve the
+ * hold with a conditional update, so exactly one of them takes effect.
+ *
+ * <p>Expiry is driven by an in-memory {@link TimingWheel} rather than by scanning the holds
+ * table. Active holds are loaded into the wheel on startup, and due holds are expired in
+ * batches, one transaction per batch.
+ */
+@Service
+public class HoldService {
+
+    private static final Logger log = LoggerFactory.getLogger(HoldService.class);
+
+    private static final int WHEEL_LEVELS = 5;
+    private static final int RELOAD_PAGE_SIZE = 10_000;
+
+    private final UserRepository userRepository;
+    private final HoldRepository holdRepository;
+    private final TransactionRepository transactionRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final WalletService walletService;
+    private final AuditLog auditLog;
+    private final VelocityLimiter velocityLimiter;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final TimingWheel expiryWheel;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final int expiryBatchSize;
+    private final Counter expired;
+
+    @Autowired
+    public HoldService(UserRepository userRepository, HoldRepository holdRepository,
+                       TransactionRepository transactionRepository, OutboxEventRepository outboxEventRepository,
+                       WalletService walletService, AuditLog auditLog, VelocityLimiter velocityLimiter,
+                       PlatformTransactionManager transactionManager, MeterRegistry registry,
+                       @Value("${wallet.holds.default-ttl:7d}") Duration defaultTtl,
+                       @Value("${wallet.holds.max-ttl:30d}") Duration maxTtl,
+                       @Value("${wallet.holds.tick-millis:100}") long tickMillis,
+                       @Value("${wallet.holds.expiry-batch-size:500}") int expiryBatchSize) {
+        this.userRepository = userRepository;
+        this.holdRepository = holdRepository;
+        this.transactionRepository = transactionRepository;
+        this.outboxEventRepository = outboxEventRepository;
+        this.walletService = walletService;
+        this.auditLog = auditLog;
+        this.velocityLimiter = velocityLimiter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.expiryWheel = new TimingWheel(tickMillis, WHEEL_LEVELS, System.currentTimeMillis());
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.expiryBatchSize = expiryBatchSize;
+        this.expired = Counter.builder("wallet.holds.expired")
+                .description("Holds released because they expired")
+                .register(registry);
+        Gauge.builder("wallet.holds.scheduled", expiryWheel, TimingWheel::size)
+                .description("Hold expiries waiting in the timing wheel, including holds settled since")
+                .register(registry);
+    }
+
+    /**
+     * Reserves part of the available balance until the hold is captured, released or expires
+     *
+     * @param ttl how long the hold lasts; null for the configured default
+     */
+    public HoldResponse hold(String username, BigDecimal amount, String idempotencyKey, Duration ttl) {
+        return auditLog.audit(AuditOp.HOLD, username, amount, () -> {
+            WalletService.validateAmount(amount);
+            Duration lifetime = ttl != null ? ttl : defaultTtl;
+            if (lifetime.isNegative() || lifetime.isZero() || lifetime.compareTo(maxTtl) > 0) {
+                throw new IllegalArgumentException("Hold lifetime must be positive and at most " +
+                        maxTtl.toSeconds() + "s");
+            }
+
+            Hold hold = transactionTemplate.execute(status -> {
+                if (holdRepository.existsByIdempotencyKey(idempotencyKey)) {
+                    throw new DuplicateTransactionException("Hold with idempotency key already exists");
+                }
+                LocalDateTime now = LocalDateTime.now();
+                int updated = userRepository.holdBalance(username, amount, now);
+                AccountBalance account = userRepository.findBalanceByUsername(username)
+                        .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+                if (updated == 0) {
+                    throw new InsufficientBalanceException("Insufficient balance. Available balance: " +
+                            account.getAvailableBalance() + ", attempted hold: " + amount);
+                }
+                return holdRepository.save(new Hold(userRepository.getReferenceById(account.getId()), amount,
+                        idempotencyKey, now.plus(lifetime)));
+            });
+
+            expiryWheel.add(hold.getId(), toEpochMillis(hold.getExpiresAt()));
+            walletService.invalidateReads(username);
+            return new HoldResponse(hold.getId(), username, hold.getAmount(), null, hold.getStatus(),
+                    hold.getIdempotencyKey(), hold.getExpiresAt(), hold.getCreatedAt(), null);
+        });
+    }
+
+    /**
+     * Charges the held funds; capturing less than the held amount releases the rest
+     *
+     * @param amount the amount to charge; null for the whole hold
+     */
+    public TransactionResponse capture(Long holdId, BigDecimal amount, String idempotencyKey) {
+        return auditLog.audit(AuditOp.CAPTURE, "hold:" + holdId, amount, () -> {
+            if (amount != null) {
+                WalletService.validateAmount(amount);
+            }
+
+            Transaction transaction = transactionTemplate.execute(status -> {
+                Hold hold = loadActive(holdId);
+                BigDecimal captured = amount != null ? amount : hold.getAmount();
+                if (captured.compareTo(hold.getAmount()) > 0) {
+                    throw new IllegalArgumentException("Capture amount exceeds the held amount of " +
+                            hold.getAmount());
+                }
+                if (transactionRepository.findByIdempotencyKey(idempotencyKey).isPresent()) {
+                    throw new DuplicateTransactionException("Transaction with idempotency key already exists");
+                }
+
+                LocalDateTime now = LocalDateTime.now();
+                resolve(hold, HoldStatus.CAPTURED, captured, now);
+                User user = hold.getUser();
+                userRepository.settleHold(user.getId(), captured, hold.getAmount(), now);
+
+                // The account row is write-locked by the update, so the balance read back is our own
+                AccountBalance updated = userRepository.findBalanceByUsername(user.getUsername())
+                        .orElseThrow(() -> new UserNotFoundException("User not found: " + user.getUsername()));
+                BigDecimal balanceAfter = updated.getBalance().setScale(2, RoundingMode.HALF_UP);
+                Transaction saved = transactionRepository.save(new Transaction(user, TransactionType.CHARGE,
+                        captured, balanceAfter.add(captured), balanceAfter, idempotencyKey));
+                outboxEventRepository.save(new OutboxEvent(user.getUsername(), saved));
+                return saved;
+            });
+
+            String username = transaction.getUser().getUsername();
+            walletService.invalidateReads(username);
+            // The funds were authorized by the hold, so a capture is counted but never rejected
+            velocityLimiter.record(username, transaction.getId(), transaction.getAmount());
+            return new TransactionResponse(transaction.getId(), transaction.getType(), transaction.getAmount(),
+                    transaction.getBalanceBefore(), transaction.getBalanceAfter(), transaction.getIdempotencyKey(),
+                    transaction.getCreatedAt());
+        });
+    }
+
+    /**
+     * Returns the held funds to the available balance
+     */
+    public HoldResponse release(Long holdId) {
+        return auditLog.audit(AuditOp.RELEASE, "hold:" + holdId, null, () -> {
+            String username = transactionTemplate.execute(status -> {
+                Hold hold = loadActive(holdId);
+                LocalDateTime now = LocalDateTime.now();
+                resolve(hold, HoldStatus.RELEASED, null, now);
+                userRepository.settleHold(hold.getUser().getId(), BigDecimal.ZERO, hold.getAmount(), now);
+                return hold.getUser().getUsername();
+            });
+
+            walletService.invalidateReads(username);
+            return getHold(holdId);
+        });
+    }
+
+    public HoldResponse getHold(Long holdId) {
+        return readOnlyTransactionTemplate.execute(status -> holdRepository.findResponseById(holdId)
+                .orElseThrow(() -> new HoldNotFoundException("Hold not found: " + holdId)));
+    }
+
+    /**
+     * Fills the expiry wheel with the holds still active, in pages so memory stays flat
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveHolds() {
+        long startNanos = System.nanoTime();
+        long loaded = 0;
+        long lastId = 0;
+        List<HoldExpiry> page;
+        do {
+            long afterId = lastId;
+            page = readOnlyTransactionTemplate.execute(status ->
+                    holdRepository.findActiveExpiriesAfter(afterId, PageRequest.of(0, RELOAD_PAGE_SIZE)));
+            for (HoldExpiry hold : page) {
+                expiryWheel.add(hold.id(), toEpochMillis(hold.expiresAt()));
+                lastId = hold.id();
+            }
+            loaded += page.size();
+        } while (page.size() == RELOAD_PAGE_SIZE);
+        if (loaded > 0) {
+            log.info("Scheduled expiry of {} active holds in {} ms", loaded,
+                    (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    /**
+     * Expires the holds whose time has come, one transaction per batch
+     */
+    @Scheduled(fixedDelayString = "${wallet.holds.tick-millis:100}")
+    public void expireDueHolds() {
+        List<Long> due = expiryWheel.advance(System.currentTimeMillis());
+        for (int from = 0; from < due.size(); from += expiryBatchSize) {
+            List<Long> batch = due.subList(from, Math.min(from + expiryBatchSize, due.size()));
+            try {
+                expireBatch(batch);
+            } catch (RuntimeException ex) {
+                // Try again on a later tick rather than leaving the funds held until a restart
+                log.warn("Expiring {} holds failed, retrying: {}", batch.size(), ex.getMessage());
+                long retryAt = System.currentTimeMillis() + 1000;
+                batch.forEach(id -> expiryWheel.add(id, retryAt));
+            }
+        }
+    }
+
+    private void expireBatch(List<Long> holdIds) {
+        long startNanos = System.nanoTime();
+        List<ExpiringHold> expiredHolds = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            Map<Long, BigDecimal> releasedByUser = new HashMap<>();
+            List<ExpiringHold> resolved = new ArrayList<>();
+            for (ExpiringHold hold : holdRepository.findExpiredAmong(holdIds, now)) {
+                // Skips holds captured or released since they were read
+                if (holdRepository.resolve(hold.id(), HoldStatus.EXPIRED, null, now) == 1) {
+                    releasedByUser.merge(hold.userId(), hold.amount(), BigDecimal::add);
+                    resolved.add(hold);
+                }
+            }
+            releasedByUser.forEach((userId, held) -> userRepository.settleHold(userId, BigDecimal.ZERO, held, now));
+            return resolved;
+        });
+
+        expired.increment(expiredHolds.size());
+        Set<String> usernames = new HashSet<>();
+        for (ExpiringHold hold : expiredHolds) {
+            auditLog.record(AuditOp.EXPIRE, "hold:" + hold.id(), hold.amount(), AuditOutcome.OK, startNanos);
+            usernames.add(hold.username());
+        }
+        usernames.forEach(walletService::invalidateReads);
+    }
+
+    private Hold loadActive(Long holdId) {
+        Hold hold = holdRepository.findWithUserById(holdId)
+                .orElseThrow(() -> new HoldNotFoundException("Hold not found: " + holdId));
+        if (hold.getStatus() != HoldStatus.ACTIVE) {
+            throw new HoldNotActiveException("Hold " + holdId + " is " + hold.getStatus());
+        }
+        if (!hold.getExpiresAt().isAfter(LocalDateTime.now())) {
+            throw new HoldNotActiveException("Hold " + holdId + " has expired");
+        }
+        return hold;
+    }
+
+    private void resolve(Hold hold, HoldStatus status, BigDecimal captured, LocalDateTime now) {
+        if (holdRepository.resolve(hold.getId(), status, captured, now) == 0) {
+            throw new HoldNotActiveException("Hold " + hold.getId() + " was settled concurrently");
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,122 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.entity.IdempotencyKeys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves transactions written before idempotency keys were compacted (see {@link IdempotencyKeys})
+ * to the new columns.
+ *
+ * <p>Runs at startup, before requests are served, because key lookups only go through the
+ * 16-byte index. Tables created by earlier versions declare {@code idempotency_key} NOT NULL
+ * UNIQUE, and SQLite cannot drop that constraint in place, so such a table is first rebuilt
+ * without it: one copy of the table, in one transaction. Rows are then converted in batches in
+ * id order, each batch in its own transaction; an interrupted migration resumes where it stopped.
+ * The unique index on {@code idempotency_id} is built last, in one pass over the converted rows.
+ */
+@Component
+public class IdempotencyKeyMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyMigration.class);
+
+    private static final Pattern LEGACY_KEY_COLUMN = Pattern.compile(
+            "idempotency_key\\s+varchar\\((\\d+)\\)\\s+not\\s+null\\s+unique", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_TABLE =
+            Pattern.compile("^CREATE\\s+TABLE\\s+\"?transactions\"?", Pattern.CASE_INSENSITIVE);
+
+    // Once the index exists this is a seek to its NULL entries, which are ordered by id
+    private static final String SELECT_UNMIGRATED =
+            "SELECT id, idempotency_key FROM transactions WHERE idempotency_id IS NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_KEY =
+            "UPDATE transactions SET idempotency_id = ?, idempotency_key = ? WHERE id = ?";
+    private static final String CREATE_INDEX =
+            "CREATE UNIQUE INDEX IF NOT EXISTS ux_transactions_idempotency_id ON transactions (idempotency_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public IdempotencyKeyMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   @Value("${wallet.idempotency.migration-batch-size:5000}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Migration batch size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        rebuildLegacyTable();
+        convertRows();
+        jdbcTemplate.execute(CREATE_INDEX);
+    }
+
+    private void rebuildLegacyTable() {
+        List<String> tables = jdbcTemplate.queryForList(
+                "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = 'transactions'", String.class);
+        if (tables.isEmpty()) {
+            return;
+        }
+        Matcher legacyColumn = LEGACY_KEY_COLUMN.matcher(tables.get(0));
+        if (!legacyColumn.find()) {
+            return;
+        }
+        String rebuilt = CREATE_TABLE.matcher(legacyColumn.replaceFirst("idempotency_key varchar($1)"))
+                .replaceFirst("CREATE TABLE transactions_rebuild");
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT sql FROM sqlite_master WHERE type = 'index' AND tbl_name = 'transactions' AND sql IS NOT NULL",
+                String.class);
+
+        long started = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(rebuilt);
+            jdbcTemplate.execute("INSERT INTO transactions_rebuild SELECT * FROM transactions");
+            jdbcTemplate.execute("DROP TABLE transactions");
+            jdbcTemplate.execute("ALTER TABLE transactions_rebuild RENAME TO transactions");
+            indexes.forEach(jdbcTemplate::execute);
+        });
+        log.info("Rebuilt the transactions table without the unique text index on idempotency_key in {} ms",
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void convertRows() {
+        long started = System.nanoTime();
+        long afterId = 0;
+        long converted = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_UNMIGRATED, afterId, batchSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                String key = (String) row.get("idempotency_key");
+                updates.add(new Object[] {IdempotencyKeys.idOf(key), IdempotencyKeys.storedFormOf(key), row.get("id")});
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_KEY, updates));
+            afterId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+            converted += rows.size();
+        }
+        if (converted > 0) {
+            log.info("Converted {} transactions to compact idempotency keys in {} ms", converted,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+}
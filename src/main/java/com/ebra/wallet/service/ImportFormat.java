@@ -0,0 +1,33 @@
+package com.ebra.wallet.service;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Input formats accepted by the bulk account import
+ */
+public enum ImportFormat {
+    /** {@code username,balance} per line, with an optional header line; balance may be omitted */
+    CSV,
+    /** One JSON object per line: {@code {"username": "...", "balance": 12.50}} */
+    NDJSON;
+
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    public static ImportFormat fromContentType(String contentType) {
+        if (contentType != null) {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            if (mediaType.isCompatibleWith(MediaType.parseMediaType(NDJSON_MEDIA_TYPE))) {
+                return NDJSON;
+            }
+            if (mediaType.isCompatibleWith(MediaType.parseMediaType("text/csv"))) {
+                return CSV;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported import content type: " + contentType);
+    }
+
+    public static ImportFormat fromFileName(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".ndjson") || lower.endsWith(".jsonl") ? NDJSON : CSV;
+    }
+}
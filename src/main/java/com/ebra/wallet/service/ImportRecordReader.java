@@ -0,0 +1,98 @@
+package com.ebra.wallet.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads import rows one line at a time, so memory does not grow with the input.
+ * Rows that cannot be parsed come back as {@link ImportRecord#INVALID}.
+ */
+class ImportRecordReader {
+
+    private final BufferedReader reader;
+    private final ImportFormat format;
+    private final ObjectMapper objectMapper;
+    private boolean firstLine = true;
+
+    ImportRecordReader(BufferedReader reader, ImportFormat format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the next row, or null at the end of the input. Blank lines and a CSV header are skipped.
+     */
+    ImportRecord next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            boolean header = firstLine && format == ImportFormat.CSV && isCsvHeader(line);
+            firstLine = false;
+            if (!header && !line.isBlank()) {
+                return format == ImportFormat.CSV ? parseCsv(line) : parseJson(line);
+            }
+        }
+        return null;
+    }
+
+    // Matched exactly, so a first row whose username merely starts with "username" is still read
+    private static boolean isCsvHeader(String line) {
+        String header = line.replace(" ", "").strip().toLowerCase();
+        return header.equals("username") || header.equals("username,balance");
+    }
+
+    private static ImportRecord parseCsv(String line) {
+        int comma = line.indexOf(',');
+        String username = comma < 0 ? line : line.substring(0, comma);
+        String balance = comma < 0 ? "" : line.substring(comma + 1).strip();
+        try {
+            return ImportRecord.of(username, balance.isEmpty() ? BigDecimal.ZERO : new BigDecimal(balance));
+        } catch (NumberFormatException ex) {
+            return ImportRecord.INVALID;
+        }
+    }
+
+    private ImportRecord parseJson(String line) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            JsonNode username = node.get("username");
+            JsonNode balance = node.get("balance");
+            if (username == null || !username.isTextual()) {
+                return ImportRecord.INVALID;
+            }
+            if (balance == null || balance.isNull()) {
+                return ImportRecord.of(username.asText(), BigDecimal.ZERO);
+            }
+            if (!balance.isNumber() && !balance.isTextual()) {
+                return ImportRecord.INVALID;
+            }
+            return ImportRecord.of(username.asText(), new BigDecimal(balance.asText()));
+        } catch (JsonProcessingException | NumberFormatException ex) {
+            return ImportRecord.INVALID;
+        }
+    }
+
+    /**
+     * A username and its opening balance
+     */
+    record ImportRecord(String username, BigDecimal balance) {
+        static final ImportRecord INVALID = new ImportRecord(null, null);
+
+        static ImportRecord of(String username, BigDecimal balance) {
+            String trimmed = username.strip();
+            if (trimmed.isEmpty() || balance.signum() < 0 || balance.stripTrailingZeros().scale() > 2) {
+                return INVALID;
+            }
+            return new ImportRecord(trimmed, balance.setScale(2));
+        }
+
+        boolean isValid() {
+            return this != INVALID;
+        }
+    }
+}
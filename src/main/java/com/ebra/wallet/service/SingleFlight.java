@@ -0,0 +1,113 @@
+package com.ebra.wallet.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into one in-flight load whose result (or
+ * exception) is shared by every caller that joined it.
+ *
+ * <p>A caller only joins a load that started after every write to the key that had completed
+ * when the caller arrived, so a joined result is never older than a write that finished
+ * before the read began. Writers report completion through {@link #invalidate}. Write
+ * sequences are kept per stripe rather than per key, so a write to one key may stop readers
+ * of another key in the same stripe from joining; it never lets a stale result through.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLongArray writeSequences;
+    private final int stripeMask;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlight(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        this.writeSequences = new AtomicLongArray(size);
+        this.stripeMask = size - 1;
+    }
+
+    /**
+     * Returns the result of an in-flight load of the key if one can be joined, otherwise
+     * runs the loader and shares its result with callers that arrive while it runs
+     */
+    public V load(K key, Supplier<V> loader) {
+        int stripe = stripe(key);
+        long arrivedAt = writeSequences.get(stripe);
+
+        while (true) {
+            Flight<V> current = flights.get(key);
+            if (current != null && current.startSequence >= arrivedAt) {
+                coalesced.increment();
+                return current.await();
+            }
+
+            Flight<V> flight = new Flight<>(writeSequences.get(stripe));
+            boolean installed = current == null
+                    ? flights.putIfAbsent(key, flight) == null
+                    : flights.replace(key, current, flight);
+            if (!installed) {
+                continue;
+            }
+
+            executed.increment();
+            try {
+                V value = loader.get();
+                flight.result.complete(value);
+                return value;
+            } catch (RuntimeException | Error ex) {
+                flight.result.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                flights.remove(key, flight);
+            }
+        }
+    }
+
+    /**
+     * Records a committed write to the key; loads already in flight can no longer be joined
+     */
+    public void invalidate(K key) {
+        writeSequences.incrementAndGet(stripe(key));
+    }
+
+    public long executedCount() {
+        return executed.sum();
+    }
+
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    private int stripe(K key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & stripeMask;
+    }
+
+    private static final class Flight<V> {
+        private final long startSequence;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        private Flight(long startSequence) {
+            this.startSequence = startSequence;
+        }
+
+        private V await() {
+            try {
+                return result.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (ex.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw ex;
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.ebra.wallet.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of ids with deadlines, so millions of pending timeouts cost a
+ * constant amount of work per tick instead of a periodic scan.
+ *
+ * <p>Each level has 64 slots; a slot of level 0 spans one tick and a slot of level {@code n}
+ * spans 64<sup>n</sup> ticks. An id is filed in the lowest level whose range covers its
+ * deadline. When time reaches a higher-level slot, its ids cascade down to finer levels, and
+ * ids in the level-0 slot of the current tick are due. Deadlines beyond the top level's range
+ * are parked in its farthest slot and re-filed whenever they cascade.
+ *
+ * <p>Ids cannot be removed; callers ignore ids that were settled before they came due.
+ * Thread-safe.
+ */
+class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final int levels;
+    private final Bucket[][] buckets;
+    // Ids whose deadline had already passed when they were filed
+    private Bucket overdue = new Bucket();
+    private long currentTick;
+    private long size;
+
+    TimingWheel(long tickMillis, int levels, long nowMillis) {
+        if (tickMillis < 1 || levels < 1 || levels * SLOT_BITS > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick " + tickMillis + "ms, " + levels + " levels");
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.buckets = new Bucket[levels][SLOTS];
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedules an id; it becomes due at the first tick at or after the deadline
+     */
+    synchronized void add(long id, long deadlineMillis) {
+        // Rounded up, so an id is never due before its deadline
+        file(id, -Math.floorDiv(-deadlineMillis, tickMillis));
+        size++;
+    }
+
+    /**
+     * Advances time to now and returns the ids that came due
+     */
+    synchronized List<Long> advance(long nowMillis) {
+        List<Long> due = new ArrayList<>();
+        drain(takeOverdue(), due);
+
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = levels - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    Bucket cascading = take(level, slotOf(currentTick, level));
+                    if (cascading != null) {
+                        for (int i = 0; i < cascading.size; i++) {
+                            file(cascading.ids[i], cascading.deadlines[i]);
+                        }
+                    }
+                }
+            }
+            drain(take(0, slotOf(currentTick, 0)), due);
+            drain(takeOverdue(), due);
+        }
+        size -= due.size();
+        return due;
+    }
+
+    /**
+     * Ids scheduled and not yet due, including ones the caller has since settled
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    private void file(long id, long deadlineTick) {
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            overdue.add(id, deadlineTick);
+            return;
+        }
+        int level = 0;
+        while (level < levels - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        // Beyond the top level's range: park in its farthest slot until a later cascade
+        long filedTick = Math.min(deadlineTick, currentTick + (1L << (SLOT_BITS * (level + 1))) - 1);
+        int slot = slotOf(filedTick, level);
+        Bucket bucket = buckets[level][slot];
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets[level][slot] = bucket;
+        }
+        bucket.add(id, deadlineTick);
+    }
+
+    private Bucket take(int level, int slot) {
+        Bucket bucket = buckets[level][slot];
+        buckets[level][slot] = null;
+        return bucket;
+    }
+
+    private Bucket takeOverdue() {
+        if (overdue.size == 0) {
+            return null;
+        }
+        Bucket taken = overdue;
+        overdue = new Bucket();
+        return taken;
+    }
+
+    private static void drain(Bucket bucket, List<Long> due) {
+        if (bucket != null) {
+            for (int i = 0; i < bucket.size; i++) {
+                due.add(bucket.ids[i]);
+            }
+        }
+    }
+
+    private static int slotOf(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    /**
+     * Growable parallel arrays, so a scheduled id costs two longs
+     */
+    private static final class Bucket {
+        private long[] ids = new long[4];
+        private long[] deadlines = new long[4];
+        private int size;
+
+        private void add(long id, long deadlineTick) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                deadlines = Arrays.copyOf(deadlines, size * 2);
+            }
+            ids[size] = id;
+            deadlines[size] = deadlineTick;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.ebra.wallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counters for wallet operations, exposed under /actuator/metrics
+ */
+@Component
+public class WalletMetrics {
+
+    private final Counter optimisticConflicts;
+    private final Counter optimisticRetries;
+    private final Counter optimisticRetriesExhausted;
+    private final MeterRegistry registry;
+
+    public WalletMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.optimisticConflicts = Counter.builder("wallet.optimistic.conflicts")
+                .description("Version conflicts detected by the optimistic strategy")
+                .register(registry);
+        this.optimisticRetries = Counter.builder("wallet.optimistic.retries")
+                .description("Balance updates retried after a version conflict")
+                .register(registry);
+        this.optimisticRetriesExhausted = Counter.builder("wallet.optimistic.exhausted")
+                .description("Balance updates that failed after the maximum number of attempts")
+                .register(registry);
+    }
+
+    /**
+     * Exposes how many account reads ran a query and how many joined one already in flight
+     */
+    public void registerReadCoalescing(SingleFlight<?, ?> reads) {
+        FunctionCounter.builder("wallet.reads.executed", reads, SingleFlight::executedCount)
+                .description("Account reads that queried the database")
+                .register(registry);
+        FunctionCounter.builder("wallet.reads.coalesced", reads, SingleFlight::coalescedCount)
+                .description("Account reads served by joining an identical in-flight query")
+                .register(registry);
+    }
+
+    public void optimisticConflict() {
+        optimisticConflicts.increment();
+    }
+
+    public void optimisticRetry() {
+        optimisticRetries.increment();
+    }
+
+    public void optimisticRetriesExhausted() {
+        optimisticRetriesExhausted.increment();
+    }
+}
@@ -1,129 +1,431 @@
 package com.ebra.wallet.service;
 
+import com.ebra.wallet.audit.AuditLog;
+import com.ebra.wallet.audit.AuditOp;
+import com.ebra.wallet.dto.TransactionResponse;
+import com.ebra.wallet.dto.UserResponse;
+import com.ebra.wallet.entity.OutboxEvent;
 import com.ebra.wallet.entity.Transaction;
 import com.ebra.wallet.entity.TransactionType;
 import com.ebra.wallet.entity.User;
+import com.ebra.wallet.exception.ConcurrentUpdateException;
 import com.ebra.wallet.exception.DuplicateTransactionException;
 import com.ebra.wallet.exception.InsufficientBalanceException;
 import com.ebra.wallet.exception.UserAlreadyExistsException;
 import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.exception.VelocityLimitExceededException;
+import com.ebra.wallet.jfr.AccountLockEvent;
+import com.ebra.wallet.jfr.IdempotencyHitEvent;
+import com.ebra.wallet.jfr.WalletTrace;
+import com.ebra.wallet.jfr.WalletTrace.Phase;
+import com.ebra.wallet.repository.AccountBalance;
+import com.ebra.wallet.repository.OutboxEventRepository;
 import com.ebra.wallet.repository.TransactionRepository;
 import com.ebra.wallet.repository.UserRepository;
+import com.ebra.wallet.velocity.VelocityLimiter;
+import com.ebra.wallet.velocity.VelocityReservation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 public class WalletService {
 
+    private static final int MAX_HISTORY_PAGE = 500;
+
     private final UserRepository userRepository;
     private final TransactionRepository transactionRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final WalletMetrics walletMetrics;
+    private final AuditLog auditLog;
+    private final VelocityLimiter velocityLimiter;
+    private final SingleFlight<String, UserResponse> userReads = new SingleFlight<>(256);
+
+    @Value("${wallet.concurrency.strategy:PESSIMISTIC}")
+    private ConcurrencyStrategy concurrencyStrategy = ConcurrencyStrategy.PESSIMISTIC;
+
+    @Value("${wallet.optimistic.max-attempts:5}")
+    private int optimisticMaxAttempts = 5;
+
+    @Value("${wallet.optimistic.backoff-millis:2}")
+    private long optimisticBackoffMillis = 2;
+
+    @Value("${wallet.optimistic.max-backoff-millis:50}")
+    private long optimisticMaxBackoffMillis = 50;
 
     @Autowired
-    public WalletService(UserRepository userRepository, TransactionRepository transactionRepository) {
+    public WalletService(UserRepository userRepository, TransactionRepository transactionRepository,
+                         OutboxEventRepository outboxEventRepository,
+                         PlatformTransactionManager transactionManager, WalletMetrics walletMetrics,
+                         AuditLog auditLog, VelocityLimiter velocityLimiter) {
         this.userRepository = userRepository;
         this.transactionRepository = transactionRepository;
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.walletMetrics = walletMetrics;
+        this.auditLog = auditLog;
+        this.velocityLimiter = velocityLimiter;
+        walletMetrics.registerReadCoalescing(userReads);
     }
 
     /**
      * Creates a new user account with zero balance
      */
-    @Transactional
     public User createAccount(String username) {
-        if (userRepository.existsByUsername(username)) {
-            throw new UserAlreadyExistsException("User with username '" + username + "' already exists");
-        }
+        return record(AuditOp.CREATE_ACCOUNT, username, null, () -> {
+            User created = inTransaction(() -> {
+                WalletTrace.begin(Phase.WRITE);
+                if (userRepository.existsByUsername(username)) {
+                    throw new UserAlreadyExistsException("User with username '" + username + "' already exists");
+                }
 
-        User user = new User(username);
-        return userRepository.save(user);
+                User user = new User(username);
+                User saved = userRepository.save(user);
+                WalletTrace.end(Phase.WRITE);
+                return saved;
+            });
+            userReads.invalidate(username);
+            return created;
+        });
     }
 
     /**
      * Adds balance to a user account
      */
-    @Transactional
     public Transaction topUp(String username, BigDecimal amount, String idempotencyKey) {
-        // Validate amount precision (2 decimal places max)
-        validateAmount(amount);
+        return record(AuditOp.TOP_UP, username, amount, () -> {
+            // Validate amount precision (2 decimal places max)
+            WalletTrace.begin(Phase.VALIDATION);
+            validateAmount(amount);
+            WalletTrace.end(Phase.VALIDATION);
 
-        // Check for duplicate transaction
-        Optional<Transaction> existingTransaction = transactionRepository.findByIdempotencyKey(idempotencyKey);
-        if (existingTransaction.isPresent()) {
-            throw new DuplicateTransactionException("Transaction with idempotency key already exists");
+            Transaction transaction = executeBalanceUpdate(() -> doTopUp(username, amount, idempotencyKey));
+            userReads.invalidate(username);
+            return transaction;
+        });
+    }
+
+    /**
+     * Deducts balance from a user account, within the user's velocity limits. A retry of a
+     * charge that already went through is reported as a duplicate even when over the limit.
+     */
+    public Transaction charge(String username, BigDecimal amount, String idempotencyKey) {
+        return record(AuditOp.CHARGE, username, amount, () -> {
+            // Validate amount precision (2 decimal places max)
+            WalletTrace.begin(Phase.VALIDATION);
+            validateAmount(amount);
+            WalletTrace.end(Phase.VALIDATION);
+
+            // Checked in memory before any database work; given back if the charge does not happen
+            WalletTrace.begin(Phase.VELOCITY_CHECK);
+            VelocityReservation reservation;
+            try {
+                reservation = velocityLimiter.reserve(username, amount);
+            } catch (VelocityLimitExceededException ex) {
+                // A retry of a charge that already went through is a duplicate, not over the limit
+                checkIdempotencyKey(TransactionType.CHARGE, username, idempotencyKey);
+                throw ex;
+            }
+            WalletTrace.end(Phase.VELOCITY_CHECK);
+            Transaction transaction;
+            try {
+                transaction = executeBalanceUpdate(() -> doCharge(username, amount, idempotencyKey));
+            } catch (RuntimeException ex) {
+                reservation.cancel();
+                throw ex;
+            }
+            userReads.invalidate(username);
+            return transaction;
+        });
+    }
+
+    private Transaction doTopUp(String username, BigDecimal amount, String idempotencyKey) {
+        checkIdempotencyKey(TransactionType.TOP_UP, username, idempotencyKey);
+
+        if (concurrencyStrategy == ConcurrencyStrategy.ATOMIC_UPDATE) {
+            return topUpWithAtomicUpdate(username, amount, idempotencyKey);
         }
 
-        // Get user with pessimistic lock to prevent concurrent modifications
-        User user = userRepository.findByUsernameForUpdate(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+        User user = loadUserForUpdate(TransactionType.TOP_UP, username);
 
         BigDecimal balanceBefore = user.getBalance();
         BigDecimal balanceAfter = balanceBefore.add(amount);
 
         // Update user balance
+        WalletTrace.begin(Phase.WRITE);
         user.setBalance(balanceAfter);
-        userRepository.save(user);
+        saveUser(user);
 
         // Create transaction record
         Transaction transaction = new Transaction(user, TransactionType.TOP_UP, amount,
                 balanceBefore, balanceAfter, idempotencyKey);
-        return transactionRepository.save(transaction);
+        return saveLedgerEntry(username, transaction);
     }
 
-    /**
-     * Deducts balance from a user account
-     */
-    @Transactional
-    public Transaction charge(String username, BigDecimal amount, String idempotencyKey) {
-        // Validate amount precision (2 decimal places max)
-        validateAmount(amount);
+    private Transaction doCharge(String username, BigDecimal amount, String idempotencyKey) {
+        checkIdempotencyKey(TransactionType.CHARGE, username, idempotencyKey);
 
-        // Check for duplicate transaction
-        Optional<Transaction> existingTransaction = transactionRepository.findByIdempotencyKey(idempotencyKey);
-        if (existingTransaction.isPresent()) {
-            throw new DuplicateTransactionException("Transaction with idempotency key already exists");
+        if (concurrencyStrategy == ConcurrencyStrategy.ATOMIC_UPDATE) {
+            return chargeWithAtomicUpdate(username, amount, idempotencyKey);
         }
 
-        // Get user with pessimistic lock to prevent concurrent modifications
-        User user = userRepository.findByUsernameForUpdate(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+        User user = loadUserForUpdate(TransactionType.CHARGE, username);
 
         BigDecimal balanceBefore = user.getBalance();
 
-        // Check if user has sufficient balance
-        if (balanceBefore.compareTo(amount) < 0) {
-            throw new InsufficientBalanceException("Insufficient balance. Current balance: " +
-                    balanceBefore + ", attempted charge: " + amount);
+        // Check if user has sufficient balance; funds reserved by holds cannot be charged
+        if (user.getAvailableBalance().compareTo(amount) < 0) {
+            throw new InsufficientBalanceException("Insufficient balance. Available balance: " +
+                    user.getAvailableBalance() + ", attempted charge: " + amount);
         }
 
         BigDecimal balanceAfter = balanceBefore.subtract(amount);
 
         // Update user balance
+        WalletTrace.begin(Phase.WRITE);
         user.setBalance(balanceAfter);
-        userRepository.save(user);
+        saveUser(user);
 
         // Create transaction record
         Transaction transaction = new Transaction(user, TransactionType.CHARGE, amount,
                 balanceBefore, balanceAfter, idempotencyKey);
-        return transactionRepository.save(transaction);
+        return saveLedgerEntry(username, transaction);
+    }
+
+    /**
+     * Runs a mutation under the audit log and, while a flight recording enables it, traces it
+     * as a {@link com.ebra.wallet.jfr.WalletOperationEvent}
+     */
+    private <T> T record(AuditOp op, String username, BigDecimal amount, Supplier<T> mutation) {
+        WalletTrace trace = WalletTrace.start(op, username, amount);
+        try {
+            T result = auditLog.audit(op, username, amount, mutation);
+            WalletTrace.finish(trace, null);
+            return result;
+        } catch (RuntimeException ex) {
+            WalletTrace.finish(trace, ex);
+            throw ex;
+        }
+    }
+
+    private void checkIdempotencyKey(TransactionType type, String username, String idempotencyKey) {
+        // Check for duplicate transaction
+        IdempotencyHitEvent hit = WalletTrace.beginIdempotencyCheck();
+        Optional<Transaction> existingTransaction = transactionRepository.findByIdempotencyKey(idempotencyKey);
+        WalletTrace.endIdempotencyCheck(hit, type, username, existingTransaction.map(Transaction::getId).orElse(null));
+        if (existingTransaction.isPresent()) {
+            throw new DuplicateTransactionException("Transaction with idempotency key already exists");
+        }
+    }
+
+    /**
+     * Runs the work in a new transaction, timing its commit separately
+     */
+    private <T> T inTransaction(Supplier<T> work) {
+        WalletTrace.attempt();
+        T result = transactionTemplate.execute(status -> {
+            T done = work.get();
+            // Flush and commit happen between here and the return of execute
+            WalletTrace.begin(Phase.COMMIT);
+            return done;
+        });
+        WalletTrace.end(Phase.COMMIT);
+        return result;
+    }
+
+    /**
+     * Runs a balance update in its own transaction. Under the optimistic strategy a version
+     * conflict rolls the attempt back and it is retried with jittered exponential backoff.
+     */
+    private Transaction executeBalanceUpdate(Supplier<Transaction> update) {
+        if (concurrencyStrategy != ConcurrencyStrategy.OPTIMISTIC) {
+            return inTransaction(update);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return inTransaction(update);
+            } catch (OptimisticLockingFailureException ex) {
+                walletMetrics.optimisticConflict();
+                if (attempt >= optimisticMaxAttempts) {
+                    walletMetrics.optimisticRetriesExhausted();
+                    throw new ConcurrentUpdateException("Account was modified concurrently, gave up after " +
+                            attempt + " attempts");
+                }
+                walletMetrics.optimisticRetry();
+                backOff(attempt);
+            }
+        }
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(optimisticMaxBackoffMillis, optimisticBackoffMillis << Math.min(attempt, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            // Full jitter: spread retries of colliding requests over the whole window
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException("Interrupted while retrying a concurrent update");
+        }
+    }
+
+    /**
+     * Reads the user for a balance change. The pessimistic strategy locks the row; the
+     * optimistic strategy reads it unlocked and relies on the version check at save time.
+     */
+    private User loadUserForUpdate(TransactionType type, String username) {
+        if (concurrencyStrategy == ConcurrencyStrategy.OPTIMISTIC) {
+            return userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+        }
+        // Get user with pessimistic lock to prevent concurrent modifications
+        AccountLockEvent lock = WalletTrace.beginAccountLock();
+        try {
+            return userRepository.findByUsernameForUpdate(username)
+                    .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+        } finally {
+            WalletTrace.endAccountLock(lock, type, username, concurrencyStrategy.name());
+        }
+    }
+
+    private void saveUser(User user) {
+        if (concurrencyStrategy == ConcurrencyStrategy.OPTIMISTIC) {
+            // Flush now so a version conflict surfaces before the ledger row is written
+            userRepository.saveAndFlush(user);
+        } else {
+            userRepository.save(user);
+        }
+    }
+
+    /**
+     * Credits the balance with a single UPDATE instead of locking and saving the entity
+     */
+    private Transaction topUpWithAtomicUpdate(String username, BigDecimal amount, String idempotencyKey) {
+        AccountLockEvent lock = WalletTrace.beginAccountLock();
+        int updated;
+        try {
+            updated = userRepository.creditBalance(username, amount, LocalDateTime.now());
+        } finally {
+            WalletTrace.endAccountLock(lock, TransactionType.TOP_UP, username, concurrencyStrategy.name());
+        }
+        if (updated == 0) {
+            throw new UserNotFoundException("User not found: " + username);
+        }
+
+        return recordAtomicUpdate(username, TransactionType.TOP_UP, amount, idempotencyKey);
+    }
+
+    /**
+     * Debits the balance with a single conditional UPDATE; the affected-row count decides
+     * whether the charge succeeded
+     */
+    private Transaction chargeWithAtomicUpdate(String username, BigDecimal amount, String idempotencyKey) {
+        AccountLockEvent lock = WalletTrace.beginAccountLock();
+        int updated;
+        try {
+            updated = userRepository.debitBalanceIfSufficient(username, amount, LocalDateTime.now());
+        } finally {
+            WalletTrace.endAccountLock(lock, TransactionType.CHARGE, username, concurrencyStrategy.name());
+        }
+        if (updated == 0) {
+            // Nothing was updated: tell a missing user apart from an insufficient balance
+            AccountBalance current = userRepository.findBalanceByUsername(username)
+                    .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+            throw new InsufficientBalanceException("Insufficient balance. Available balance: " +
+                    current.getAvailableBalance() + ", attempted charge: " + amount);
+        }
+
+        return recordAtomicUpdate(username, TransactionType.CHARGE, amount, idempotencyKey);
     }
 
     /**
-     * Gets user by username
+     * Inserts the ledger row for a balance change already applied in this transaction.
+     * The row is still write-locked by the UPDATE, so the balance read back is our own.
      */
-    @Transactional(readOnly = true)
-    public User getUser(String username) {
-        return userRepository.findByUsername(username)
+    private Transaction recordAtomicUpdate(String username, TransactionType type, BigDecimal amount,
+                                           String idempotencyKey) {
+        WalletTrace.begin(Phase.WRITE);
+        AccountBalance updated = userRepository.findBalanceByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+
+        BigDecimal balanceAfter = updated.getBalance().setScale(2, RoundingMode.HALF_UP);
+        BigDecimal balanceBefore = type == TransactionType.CHARGE
+                ? balanceAfter.add(amount)
+                : balanceAfter.subtract(amount);
+
+        Transaction transaction = new Transaction(userRepository.getReferenceById(updated.getId()), type,
+                amount, balanceBefore, balanceAfter, idempotencyKey);
+        return saveLedgerEntry(username, transaction);
+    }
+
+    /**
+     * Saves the ledger row and its outbox event in the caller's transaction, so an event is
+     * published exactly when the balance change commits. Ends the write phase of the trace.
+     */
+    private Transaction saveLedgerEntry(String username, Transaction transaction) {
+        Transaction saved = transactionRepository.save(transaction);
+        outboxEventRepository.save(new OutboxEvent(username, saved));
+        WalletTrace.end(Phase.WRITE);
+        return saved;
+    }
+
+    /**
+     * Gets an account by username, projected straight from the row. Concurrent lookups of the
+     * same username share one query.
+     */
+    public UserResponse getAccount(String username) {
+        return userReads.load(username, () -> readOnlyTransactionTemplate.execute(status ->
+                userRepository.findAccountByUsername(username)
+                        .orElseThrow(() -> new UserNotFoundException("User not found: " + username))));
+    }
+
+    /**
+     * Gets a page of the user's transactions, newest first, older than {@code beforeId} when given
+     */
+    public List<TransactionResponse> getTransactions(String username, Long beforeId, int limit) {
+        if (limit < 1 || limit > MAX_HISTORY_PAGE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_HISTORY_PAGE);
+        }
+        return readOnlyTransactionTemplate.execute(status -> {
+            if (!userRepository.existsByUsername(username)) {
+                throw new UserNotFoundException("User not found: " + username);
+            }
+            return transactionRepository.findHistory(username,
+                    beforeId != null ? beforeId : Long.MAX_VALUE, PageRequest.of(0, limit));
+        });
+    }
+
+    /**
+     * Reports a change to the user's account made outside this service, such as a replicated
+     * write, so reads that start afterwards do not join an older in-flight query
+     */
+    public void invalidateReads(String username) {
+        userReads.invalidate(username);
     }
 
     /**
      * Validates that amount has maximum 2 decimal places and is positive
      */
-    private void validateAmount(BigDecimal amount) {
+    static void validateAmount(BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Amount must be greater than zero");
         }
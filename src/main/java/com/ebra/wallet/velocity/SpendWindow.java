@@ -0,0 +1,180 @@
+package com.ebra.wallet.velocity;
+
+/**
+ * One user's charges over a sliding window, kept as a ring of fixed-width time buckets with
+ * running totals, so a check is a comparison against two numbers.
+ *
+ * <p>Buckets are numbered by {@code epochMillis / bucketMillis}; slot {@code b % slots} holds
+ * bucket {@code b} while it is inside the window. Moving to a later bucket clears the slots it
+ * passes over and subtracts them from the totals, at most one pass over the ring. A charge
+ * stays counted until its whole bucket has left the window, so the window is never shorter
+ * than configured and at most one bucket longer.
+ */
+final class SpendWindow {
+
+    private final long[] bucketIds;
+    private final int[] counts;
+    private final long[] cents;
+    private int totalCount;
+    private long totalCents;
+    private long currentBucket = Long.MIN_VALUE;
+    // Ledger rows up to this id were counted when the window was loaded
+    private final long loadedThroughId;
+    private volatile String tier;
+    private boolean retired;
+
+    SpendWindow(int slots, String tier, long loadedThroughId) {
+        this.bucketIds = new long[slots];
+        this.counts = new int[slots];
+        this.cents = new long[slots];
+        this.tier = tier;
+        this.loadedThroughId = loadedThroughId;
+    }
+
+    String tier() {
+        return tier;
+    }
+
+    void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    /**
+     * Counts a charge if it keeps the window within the limits
+     *
+     * @return false if the window is retired or the charge would exceed a limit
+     */
+    synchronized boolean tryReserve(long bucket, long amountCents, int maxCharges, long maxCents) {
+        if (retired) {
+            return false;
+        }
+        advance(bucket);
+        if (totalCount >= maxCharges || totalCents + amountCents > maxCents) {
+            return false;
+        }
+        add(bucket, 1, amountCents);
+        return true;
+    }
+
+    /**
+     * Counts a charge that is not subject to the limits, such as a captured hold
+     *
+     * @return false if the window is retired
+     */
+    synchronized boolean track(long bucket, long amountCents) {
+        if (retired) {
+            return false;
+        }
+        add(bucket, 1, amountCents);
+        return true;
+    }
+
+    /**
+     * Counts a committed ledger row, unless it was already read when the window was loaded
+     */
+    synchronized boolean trackCommitted(long transactionId, long bucket, long amountCents) {
+        if (transactionId <= loadedThroughId) {
+            return !retired;
+        }
+        return track(bucket, amountCents);
+    }
+
+    /**
+     * Uncounts a reservation whose charge did not happen; a no-op once its bucket has expired
+     */
+    synchronized void cancel(long bucket, long amountCents) {
+        int slot = slotOf(bucket);
+        if (bucketIds[slot] == bucket && counts[slot] > 0) {
+            counts[slot]--;
+            cents[slot] -= amountCents;
+            totalCount--;
+            totalCents -= amountCents;
+        }
+    }
+
+    synchronized boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * Retires the window if nothing in it is inside the window any more
+     */
+    synchronized boolean retireIfIdle(long bucket) {
+        advance(bucket);
+        if (totalCount == 0) {
+            retired = true;
+        }
+        return retired;
+    }
+
+    synchronized int count(long bucket) {
+        advance(bucket);
+        return totalCount;
+    }
+
+    synchronized long totalCents(long bucket) {
+        advance(bucket);
+        return totalCents;
+    }
+
+    /**
+     * The bucket whose expiry frees the oldest counted charge, or -1 if the window is empty
+     */
+    synchronized long oldestBucket(long bucket) {
+        advance(bucket);
+        long oldest = -1;
+        for (int slot = 0; slot < bucketIds.length; slot++) {
+            if (counts[slot] > 0 && (oldest < 0 || bucketIds[slot] < oldest)) {
+                oldest = bucketIds[slot];
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Adds to a bucket, moving the window forward first if the bucket is newer than any seen.
+     * Buckets that already left the window are ignored.
+     */
+    synchronized void add(long bucket, int count, long amountCents) {
+        advance(bucket);
+        if (bucket <= currentBucket - bucketIds.length) {
+            return;
+        }
+        int slot = slotOf(bucket);
+        if (bucketIds[slot] != bucket) {
+            clear(slot);
+            bucketIds[slot] = bucket;
+        }
+        counts[slot] += count;
+        cents[slot] += amountCents;
+        totalCount += count;
+        totalCents += amountCents;
+    }
+
+    private void advance(long bucket) {
+        if (bucket <= currentBucket) {
+            return;
+        }
+        long from = currentBucket == Long.MIN_VALUE ? bucket - bucketIds.length + 1
+                : Math.max(currentBucket + 1, bucket - bucketIds.length + 1);
+        for (long passed = from; passed <= bucket; passed++) {
+            int slot = slotOf(passed);
+            if (bucketIds[slot] != passed) {
+                clear(slot);
+                bucketIds[slot] = passed;
+            }
+        }
+        currentBucket = bucket;
+    }
+
+    private void clear(int slot) {
+        totalCount -= counts[slot];
+        totalCents -= cents[slot];
+        counts[slot] = 0;
+        cents[slot] = 0;
+    }
+
+    private int slotOf(long bucket) {
+        return (int) Math.floorMod(bucket, (long) bucketIds.length);
+    }
+}
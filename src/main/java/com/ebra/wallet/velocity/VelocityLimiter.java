@@ -0,0 +1,338 @@
+package com.ebra.wallet.velocity;
+
+import com.ebra.wallet.dto.RecentCharge;
+import com.ebra.wallet.dto.VelocityUsage;
+import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.exception.VelocityLimitExceededException;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user spend limits over a sliding window ("at most 50 charges and 5,000.00 per 24h"),
+ * checked in memory before a charge touches the database.
+ *
+ * <p>Each user with recent charges has a {@link SpendWindow} in a ConcurrentHashMap. A charge
+ * reserves its count and amount in the window and cancels the reservation if it fails. The
+ * windows are a cache of the ledger: they are rebuilt from recent CHARGE rows on startup, a
+ * missing window is loaded from the user's ledger rows on first use, and windows with nothing
+ * left inside them are evicted.
+ *
+ * <p>Limits depend on the account's tier, a name mapped to {@link VelocityLimits} by
+ * configuration; accounts without a tier get the default one.
+ */
+@Component
+public class VelocityLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(VelocityLimiter.class);
+
+    private static final int REBUILD_PAGE_SIZE = 10_000;
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ConcurrentHashMap<String, SpendWindow> windows = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private final boolean enabled;
+    private final Duration window;
+    private final long bucketMillis;
+    private final int slots;
+    private final Map<String, VelocityLimits> tiers;
+    private final String defaultTier;
+    private final Counter rejected;
+    private final Counter loaded;
+
+    @Autowired
+    public VelocityLimiter(UserRepository userRepository, TransactionRepository transactionRepository,
+                           PlatformTransactionManager transactionManager, MeterRegistry registry,
+                           @Value("${wallet.velocity.enabled:true}") boolean enabled,
+                           @Value("${wallet.velocity.window:24h}") Duration window,
+                           @Value("${wallet.velocity.bucket:30m}") Duration bucket,
+                           @Value("${wallet.velocity.tiers:standard=50/5000.00}") String tiers,
+                           @Value("${wallet.velocity.default-tier:standard}") String defaultTier) {
+        this(userRepository, transactionRepository, transactionManager, registry, enabled, window, bucket,
+                parseTiers(tiers), defaultTier, System::currentTimeMillis);
+    }
+
+    VelocityLimiter(UserRepository userRepository, TransactionRepository transactionRepository,
+                    PlatformTransactionManager transactionManager, MeterRegistry registry, boolean enabled,
+                    Duration window, Duration bucket, Map<String, VelocityLimits> tiers, String defaultTier,
+                    LongSupplier clock) {
+        if (bucket.toMillis() < 1 || window.toMillis() % bucket.toMillis() != 0) {
+            throw new IllegalArgumentException("Velocity window must be a whole number of buckets");
+        }
+        if (!tiers.containsKey(defaultTier)) {
+            throw new IllegalArgumentException("Unknown default velocity tier: " + defaultTier);
+        }
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.window = window;
+        this.bucketMillis = bucket.toMillis();
+        this.slots = (int) (window.toMillis() / bucketMillis);
+        this.tiers = tiers;
+        this.defaultTier = defaultTier;
+        this.clock = clock;
+        this.rejected = Counter.builder("wallet.velocity.rejected")
+                .description("Charges rejected by a velocity limit")
+                .register(registry);
+        this.loaded = Counter.builder("wallet.velocity.loaded")
+                .description("Spend windows loaded from the ledger on first use")
+                .register(registry);
+        Gauge.builder("wallet.velocity.tracked.users", windows, ConcurrentHashMap::size)
+                .description("Users with a live spend window")
+                .register(registry);
+    }
+
+    /**
+     * Counts a charge against the user's window
+     *
+     * @throws VelocityLimitExceededException when the charge would exceed the user's limits
+     */
+    public VelocityReservation reserve(String username, BigDecimal amount) {
+        if (!enabled) {
+            return VelocityReservation.NONE;
+        }
+        long now = clock.getAsLong();
+        long bucket = now / bucketMillis;
+        long amountCents = cents(amount);
+        while (true) {
+            SpendWindow spendWindow = windowOf(username);
+            VelocityLimits limits = limitsOf(spendWindow.tier());
+            if (spendWindow.tryReserve(bucket, amountCents, limits.maxCharges(), limits.maxCents())) {
+                return new VelocityReservation(spendWindow, bucket, amountCents);
+            }
+            if (!spendWindow.isRetired()) {
+                rejected.increment();
+                throw new VelocityLimitExceededException("Velocity limit exceeded for user: " + username +
+                        " (" + limits.maxCharges() + " charges and " + limits.maxAmount() + " per " +
+                        window.toHours() + "h)", retryAfterSeconds(spendWindow, now));
+            }
+            // Evicted between lookup and reservation: take the replacement
+            windows.remove(username, spendWindow);
+        }
+    }
+
+    /**
+     * Counts a committed charge that was not subject to the limits, such as a captured hold.
+     * Without a live window nothing is done: loading one later reads the charge from the ledger.
+     */
+    public void record(String username, long transactionId, BigDecimal amount) {
+        SpendWindow spendWindow = enabled ? windows.get(username) : null;
+        if (spendWindow != null) {
+            spendWindow.trackCommitted(transactionId, clock.getAsLong() / bucketMillis, cents(amount));
+        }
+    }
+
+    /**
+     * Gets the user's charges within the window and the limits that apply
+     */
+    public VelocityUsage getUsage(String username) {
+        SpendWindow spendWindow = windowOf(username);
+        if (spendWindow.tier() == null && !userRepository.existsByUsername(username)) {
+            windows.remove(username, spendWindow);
+            throw new UserNotFoundException("User not found: " + username);
+        }
+        long bucket = clock.getAsLong() / bucketMillis;
+        VelocityLimits limits = limitsOf(spendWindow.tier());
+        return new VelocityUsage(username, tierName(spendWindow.tier()), spendWindow.count(bucket),
+                BigDecimal.valueOf(spendWindow.totalCents(bucket), 2), limits.maxCharges(), limits.maxAmount());
+    }
+
+    /**
+     * Moves the user to a tier, or to the default tier when null; applies to the next charge
+     */
+    public VelocityUsage updateTier(String username, String tier) {
+        if (tier != null && !tiers.containsKey(tier)) {
+            throw new IllegalArgumentException("Unknown velocity tier: " + tier + "; known tiers are " +
+                    tiers.keySet());
+        }
+        String stored = defaultTier.equals(tier) ? null : tier;
+        Integer updated = transactionTemplate.execute(status -> userRepository.updateVelocityTier(username, stored));
+        if (updated == null || updated == 0) {
+            throw new UserNotFoundException("User not found: " + username);
+        }
+        SpendWindow spendWindow = windows.get(username);
+        if (spendWindow != null) {
+            spendWindow.setTier(stored);
+        }
+        return getUsage(username);
+    }
+
+    /**
+     * Rebuilds the windows from the ledger's recent charges, walking the primary key backwards
+     * from the newest row until a whole page is older than the window. Users who charged in
+     * the meantime already loaded their own window and keep it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        long now = clock.getAsLong();
+        LocalDateTime since = toLocalDateTime(now - window.toMillis());
+        Map<String, SpendWindow> rebuilt = new HashMap<>();
+        long rows = readOnlyTransactionTemplate.execute(status -> {
+            long beforeId = Long.MAX_VALUE;
+            long read = 0;
+            long newestId = -1;
+            while (true) {
+                List<RecentCharge> page = transactionRepository.findChargesBefore(beforeId,
+                        PageRequest.of(0, REBUILD_PAGE_SIZE));
+                if (newestId < 0 && !page.isEmpty()) {
+                    // Charges recorded after this snapshot are newer than every row in it
+                    newestId = page.get(0).transactionId();
+                }
+                long loadedThroughId = newestId;
+                boolean anyRecent = false;
+                for (RecentCharge charge : page) {
+                    if (charge.createdAt().isAfter(since)) {
+                        anyRecent = true;
+                        read++;
+                        rebuilt.computeIfAbsent(charge.username(),
+                                        username -> new SpendWindow(slots, charge.velocityTier(), loadedThroughId))
+                                .add(bucketOf(charge.createdAt()), 1, cents(charge.amount()));
+                    }
+                }
+                if (page.size() < REBUILD_PAGE_SIZE || !anyRecent) {
+                    return read;
+                }
+                beforeId = page.get(page.size() - 1).transactionId();
+            }
+        });
+        rebuilt.forEach(windows::putIfAbsent);
+        log.info("Rebuilt {} spend windows from {} charges in {} ms", rebuilt.size(), rows,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Evicts windows with no charges left inside them
+     */
+    @Scheduled(fixedDelayString = "${wallet.velocity.eviction-interval-millis:60000}")
+    public void evictIdle() {
+        long bucket = clock.getAsLong() / bucketMillis;
+        windows.values().removeIf(spendWindow -> spendWindow.retireIfIdle(bucket));
+    }
+
+    int trackedUsers() {
+        return windows.size();
+    }
+
+    /**
+     * Tiers and their limits, in the order they were configured
+     */
+    public Map<String, VelocityLimits> getTiers() {
+        return tiers;
+    }
+
+    private SpendWindow windowOf(String username) {
+        SpendWindow spendWindow = windows.get(username);
+        if (spendWindow != null) {
+            return spendWindow;
+        }
+        // Loaded outside the map so a slow query does not block other users' bins
+        SpendWindow loadedWindow = load(username);
+        SpendWindow existing = windows.putIfAbsent(username, loadedWindow);
+        return existing != null ? existing : loadedWindow;
+    }
+
+    /**
+     * Builds a window from the user's charges still inside it
+     */
+    private SpendWindow load(String username) {
+        loaded.increment();
+        LocalDateTime since = toLocalDateTime(clock.getAsLong() - window.toMillis());
+        return readOnlyTransactionTemplate.execute(status -> {
+            List<RecentCharge> charges = transactionRepository.findChargesSince(username, since);
+            String tier = charges.isEmpty()
+                    ? userRepository.findVelocityTierByUsername(username).orElse(null)
+                    : charges.get(0).velocityTier();
+            long loadedThroughId = 0;
+            for (RecentCharge charge : charges) {
+                loadedThroughId = Math.max(loadedThroughId, charge.transactionId());
+            }
+            SpendWindow spendWindow = new SpendWindow(slots, tier, loadedThroughId);
+            for (RecentCharge charge : charges) {
+                spendWindow.add(bucketOf(charge.createdAt()), 1, cents(charge.amount()));
+            }
+            return spendWindow;
+        });
+    }
+
+    private VelocityLimits limitsOf(String tier) {
+        VelocityLimits limits = tier != null ? tiers.get(tier) : null;
+        // A tier removed from the configuration falls back to the default
+        return limits != null ? limits : tiers.get(defaultTier);
+    }
+
+    private String tierName(String tier) {
+        return tier != null && tiers.containsKey(tier) ? tier : defaultTier;
+    }
+
+    private long retryAfterSeconds(SpendWindow spendWindow, long now) {
+        long oldest = spendWindow.oldestBucket(now / bucketMillis);
+        if (oldest < 0) {
+            return 1;
+        }
+        long freedAt = (oldest + slots) * bucketMillis;
+        return Math.max(1, (freedAt - now + 999) / 1000);
+    }
+
+    private long bucketOf(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / bucketMillis;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Parses "tier=charges/amount" entries separated by commas, e.g. "standard=50/5000.00,premium=500/50000.00"
+     */
+    static Map<String, VelocityLimits> parseTiers(String spec) {
+        Map<String, VelocityLimits> tiers = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            int separator = entry.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Velocity tiers must be tier=charges/amount: " + entry);
+            }
+            tiers.put(entry.substring(0, separator).strip(), VelocityLimits.parse(entry.substring(separator + 1)));
+        }
+        return Collections.unmodifiableMap(tiers);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ebra.wallet.velocity;
+
+import java.math.BigDecimal;
+
+/**
+ * Most charges and most charged amount a user of a tier may have within the window
+ */
+public record VelocityLimits(int maxCharges, BigDecimal maxAmount) {
+
+    public VelocityLimits {
+        if (maxCharges < 1) {
+            throw new IllegalArgumentException("Velocity limits must allow at least one charge");
+        }
+        if (maxAmount == null || maxAmount.signum() <= 0 || maxAmount.scale() > 2) {
+            throw new IllegalArgumentException("Velocity amount limit must be positive with at most 2 decimal places");
+        }
+    }
+
+    long maxCents() {
+        return maxAmount.movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Parses "charges/amount", e.g. "50/5000.00"
+     */
+    static VelocityLimits parse(String spec) {
+        String[] parts = spec.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Velocity limits must be charges/amount: " + spec);
+        }
+        try {
+            return new VelocityLimits(Integer.parseInt(parts[0].strip()), new BigDecimal(parts[1].strip()));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Velocity limits must be charges/amount: " + spec);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ebra.wallet.velocity;
+
+/**
+ * A charge counted against its user's window before it is applied; cancel it if the charge
+ * does not happen
+ */
+public final class VelocityReservation {
+
+    static final VelocityReservation NONE = new VelocityReservation(null, 0, 0);
+
+    private final SpendWindow window;
+    private final long bucket;
+    private final long amountCents;
+    private boolean cancelled;
+
+    VelocityReservation(SpendWindow window, long bucket, long amountCents) {
+        this.window = window;
+        this.bucket = bucket;
+        this.amountCents = amountCents;
+    }
+
+    public void cancel() {
+        if (window != null && !cancelled) {
+            cancelled = true;
+            window.cancel(bucket, amountCents);
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package com.ebra.wallet.service;
 
+import com.ebra.wallet.audit.AuditLog;
+import com.ebra.wallet.dto.TransactionResponse;
+import com.ebra.wallet.dto.UserResponse;
 import com.ebra.wallet.entity.Transaction;
 import com.ebra.wallet.entity.TransactionType;
 import com.ebra.wallet.entity.User;
+import com.ebra.wallet.exception.ConcurrentUpdateException;
 import com.ebra.wallet.exception.DuplicateTransactionException;
 import com.ebra.wallet.exception.InsufficientBalanceException;
 import com.ebra.wallet.exception.UserAlreadyExistsException;
 import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.exception.VelocityLimitExceededException;
+import com.ebra.wallet.entity.OutboxEvent;
+import com.ebra.wallet.repository.AccountBalance;
+import com.ebra.wallet.repository.OutboxEventRepository;
 import com.ebra.wallet.repository.TransactionRepository;
 import com.ebra.wallet.repository.UserRepository;
+import com.ebra.wallet.velocity.VelocityLimiter;
+import com.ebra.wallet.velocity.VelocityReservation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,12 +26,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +50,24 @@ class WalletServiceTest {
 	@Mock
 	private TransactionRepository transactionRepository;
 
+	@Mock
+	private OutboxEventRepository outboxEventRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Mock
+	private WalletMetrics walletMetrics;
+
+	@Mock
+	private AuditLog auditLog;
+
+	@Mock
+	private VelocityLimiter velocityLimiter;
+
+	@Mock
+	private VelocityReservation reservation;
+
 	@InjectMocks
 	private WalletService walletService;
 
@@ -45,13 +80,17 @@ class WalletServiceTest {
 		testUser = new User(TEST_USERNAME);
 		testUser.setId(1L);
 		testUser.setBalance(new BigDecimal("100.00"));
+		// Audited mutations run as if there were no audit log
+		lenient().when(auditLog.audit(any(), any(), any(), any()))
+				.thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+		lenient().when(velocityLimiter.reserve(any(), any())).thenReturn(reservation);
 	}
 
 	@Test
 	void createAccount_Success() {
 		// Given
 		when(userRepository.existsByUsername(TEST_USERNAME)).thenReturn(false);
-		when(userRepository.save(any(User.class))).thenReturn(testUser);
+		when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
 		// When
 		User result = walletService.createAccount(TEST_USERNAME);
@@ -102,6 +141,7 @@ class WalletServiceTest {
 		verify(userRepository).findByUsernameForUpdate(TEST_USERNAME);
 		verify(userRepository).save(testUser);
 		verify(transactionRepository).save(any(Transaction.class));
+		verify(outboxEventRepository).save(any(OutboxEvent.class));
 	}
 
 	@Test
@@ -177,31 +217,249 @@ class WalletServiceTest {
 		verify(userRepository).findByUsernameForUpdate(TEST_USERNAME);
 		verify(userRepository, never()).save(any(User.class));
 		verify(transactionRepository, never()).save(any(Transaction.class));
+		verify(outboxEventRepository, never()).save(any(OutboxEvent.class));
+		verify(reservation).cancel();
+	}
+
+	@Test
+	void charge_VelocityLimitExceeded() {
+		// Given
+		when(velocityLimiter.reserve(TEST_USERNAME, BigDecimal.TEN))
+				.thenThrow(new VelocityLimitExceededException("Velocity limit exceeded", 60));
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
+
+		// When & Then
+		assertThrows(VelocityLimitExceededException.class,
+				() -> walletService.charge(TEST_USERNAME, BigDecimal.TEN, TEST_IDEMPOTENCY_KEY));
+		verifyNoInteractions(userRepository);
+		verify(transactionRepository, never()).save(any(Transaction.class));
+	}
+
+	@Test
+	void charge_RetryOfCompletedChargeOverVelocityLimitIsDuplicate() {
+		// Given
+		when(velocityLimiter.reserve(TEST_USERNAME, BigDecimal.TEN))
+				.thenThrow(new VelocityLimitExceededException("Velocity limit exceeded", 60));
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.of(new Transaction(testUser, TransactionType.CHARGE, BigDecimal.TEN,
+						new BigDecimal("110.00"), new BigDecimal("100.00"), TEST_IDEMPOTENCY_KEY)));
+
+		// When & Then
+		assertThrows(DuplicateTransactionException.class,
+				() -> walletService.charge(TEST_USERNAME, BigDecimal.TEN, TEST_IDEMPOTENCY_KEY));
+		verifyNoInteractions(userRepository);
+	}
+
+	@Test
+	void charge_HeldFundsAreNotAvailable() {
+		// Given - 100.00 balance with 60.00 held
+		testUser.setHeldBalance(new BigDecimal("60.00"));
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
+		when(userRepository.findByUsernameForUpdate(TEST_USERNAME))
+				.thenReturn(Optional.of(testUser));
+
+		// When & Then
+		InsufficientBalanceException exception = assertThrows(InsufficientBalanceException.class,
+				() -> walletService.charge(TEST_USERNAME, new BigDecimal("50.00"), TEST_IDEMPOTENCY_KEY));
+		assertTrue(exception.getMessage().contains("Available balance: 40.00"));
+		verify(transactionRepository, never()).save(any(Transaction.class));
+	}
+
+	@Test
+	void charge_AtomicUpdate_Success() {
+		// Given
+		ReflectionTestUtils.setField(walletService, "concurrencyStrategy", ConcurrencyStrategy.ATOMIC_UPDATE);
+		BigDecimal amount = new BigDecimal("30.00");
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
+		when(userRepository.debitBalanceIfSufficient(eq(TEST_USERNAME), eq(amount), any()))
+				.thenReturn(1);
+		when(userRepository.findBalanceByUsername(TEST_USERNAME))
+				.thenReturn(Optional.of(accountBalance(1L, new BigDecimal("70.00"))));
+		when(userRepository.getReferenceById(1L)).thenReturn(testUser);
+		when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// When
+		Transaction result = walletService.charge(TEST_USERNAME, amount, TEST_IDEMPOTENCY_KEY);
+
+		// Then
+		assertEquals(TransactionType.CHARGE, result.getType());
+		assertEquals(new BigDecimal("100.00"), result.getBalanceBefore());
+		assertEquals(new BigDecimal("70.00"), result.getBalanceAfter());
+		verify(userRepository, never()).findByUsernameForUpdate(anyString());
+		verify(userRepository, never()).save(any(User.class));
+	}
+
+	@Test
+	void charge_AtomicUpdate_InsufficientBalance() {
+		// Given
+		ReflectionTestUtils.setField(walletService, "concurrencyStrategy", ConcurrencyStrategy.ATOMIC_UPDATE);
+		BigDecimal amount = new BigDecimal("150.00");
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
+		when(userRepository.debitBalanceIfSufficient(eq(TEST_USERNAME), eq(amount), any()))
+				.thenReturn(0);
+		when(userRepository.findBalanceByUsername(TEST_USERNAME))
+				.thenReturn(Optional.of(accountBalance(1L, new BigDecimal("100.00"))));
+
+		// When & Then
+		assertThrows(InsufficientBalanceException.class,
+				() -> walletService.charge(TEST_USERNAME, amount, TEST_IDEMPOTENCY_KEY));
+		verify(transactionRepository, never()).save(any(Transaction.class));
+	}
+
+	@Test
+	void charge_AtomicUpdate_UserNotFound() {
+		// Given
+		ReflectionTestUtils.setField(walletService, "concurrencyStrategy", ConcurrencyStrategy.ATOMIC_UPDATE);
+		BigDecimal amount = new BigDecimal("10.00");
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
+		when(userRepository.debitBalanceIfSufficient(eq(TEST_USERNAME), eq(amount), any()))
+				.thenReturn(0);
+		when(userRepository.findBalanceByUsername(TEST_USERNAME)).thenReturn(Optional.empty());
+
+		// When & Then
+		assertThrows(UserNotFoundException.class,
+				() -> walletService.charge(TEST_USERNAME, amount, TEST_IDEMPOTENCY_KEY));
+		verify(transactionRepository, never()).save(any(Transaction.class));
 	}
 
 	@Test
-	void getUser_Success() {
+	void topUp_AtomicUpdate_Success() {
 		// Given
+		ReflectionTestUtils.setField(walletService, "concurrencyStrategy", ConcurrencyStrategy.ATOMIC_UPDATE);
+		BigDecimal amount = new BigDecimal("50.00");
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
+		when(userRepository.creditBalance(eq(TEST_USERNAME), eq(amount), any())).thenReturn(1);
+		when(userRepository.findBalanceByUsername(TEST_USERNAME))
+				.thenReturn(Optional.of(accountBalance(1L, new BigDecimal("150.00"))));
+		when(userRepository.getReferenceById(1L)).thenReturn(testUser);
+		when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// When
+		Transaction result = walletService.topUp(TEST_USERNAME, amount, TEST_IDEMPOTENCY_KEY);
+
+		// Then
+		assertEquals(new BigDecimal("100.00"), result.getBalanceBefore());
+		assertEquals(new BigDecimal("150.00"), result.getBalanceAfter());
+	}
+
+	@Test
+	void charge_Optimistic_RetriesAfterVersionConflict() {
+		// Given
+		ReflectionTestUtils.setField(walletService, "concurrencyStrategy", ConcurrencyStrategy.OPTIMISTIC);
+		ReflectionTestUtils.setField(walletService, "optimisticBackoffMillis", 0L);
+		BigDecimal amount = new BigDecimal("30.00");
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
+		when(userRepository.findByUsername(TEST_USERNAME))
+				.thenAnswer(invocation -> {
+					User fresh = new User(TEST_USERNAME);
+					fresh.setId(1L);
+					fresh.setBalance(new BigDecimal("100.00"));
+					return Optional.of(fresh);
+				});
+		when(userRepository.saveAndFlush(any(User.class)))
+				.thenThrow(new ObjectOptimisticLockingFailureException(User.class, 1L))
+				.thenAnswer(invocation -> invocation.getArgument(0));
+		when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// When
+		Transaction result = walletService.charge(TEST_USERNAME, amount, TEST_IDEMPOTENCY_KEY);
+
+		// Then
+		assertEquals(new BigDecimal("70.00"), result.getBalanceAfter());
+		verify(userRepository, times(2)).findByUsername(TEST_USERNAME);
+		verify(userRepository, never()).findByUsernameForUpdate(anyString());
+		verify(transactionRepository, times(1)).save(any(Transaction.class));
+		verify(walletMetrics).optimisticConflict();
+		verify(walletMetrics).optimisticRetry();
+	}
+
+	@Test
+	void topUp_Optimistic_GivesUpAfterMaxAttempts() {
+		// Given
+		ReflectionTestUtils.setField(walletService, "concurrencyStrategy", ConcurrencyStrategy.OPTIMISTIC);
+		ReflectionTestUtils.setField(walletService, "optimisticBackoffMillis", 0L);
+		ReflectionTestUtils.setField(walletService, "optimisticMaxAttempts", 3);
+		BigDecimal amount = new BigDecimal("50.00");
+		when(transactionRepository.findByIdempotencyKey(TEST_IDEMPOTENCY_KEY))
+				.thenReturn(Optional.empty());
 		when(userRepository.findByUsername(TEST_USERNAME)).thenReturn(Optional.of(testUser));
+		when(userRepository.saveAndFlush(any(User.class)))
+				.thenThrow(new ObjectOptimisticLockingFailureException(User.class, 1L));
+
+		// When & Then
+		assertThrows(ConcurrentUpdateException.class,
+				() -> walletService.topUp(TEST_USERNAME, amount, TEST_IDEMPOTENCY_KEY));
+		verify(userRepository, times(3)).saveAndFlush(any(User.class));
+		verify(transactionRepository, never()).save(any(Transaction.class));
+		verify(walletMetrics, times(3)).optimisticConflict();
+		verify(walletMetrics).optimisticRetriesExhausted();
+	}
+
+	@Test
+	void getAccount_Success() {
+		// Given
+		UserResponse account = new UserResponse(1L, TEST_USERNAME, new BigDecimal("100.00"),
+				BigDecimal.ZERO, null, null);
+		when(userRepository.findAccountByUsername(TEST_USERNAME)).thenReturn(Optional.of(account));
 
 		// When
-		User result = walletService.getUser(TEST_USERNAME);
+		UserResponse result = walletService.getAccount(TEST_USERNAME);
 
 		// Then
-		assertNotNull(result);
-		assertEquals(TEST_USERNAME, result.getUsername());
-		verify(userRepository).findByUsername(TEST_USERNAME);
+		assertEquals(account, result);
+		verify(userRepository, never()).findByUsername(any());
 	}
 
 	@Test
-	void getUser_UserNotFound() {
+	void getAccount_UserNotFound() {
 		// Given
-		when(userRepository.findByUsername(TEST_USERNAME)).thenReturn(Optional.empty());
+		when(userRepository.findAccountByUsername(TEST_USERNAME)).thenReturn(Optional.empty());
 
 		// When & Then
 		assertThrows(UserNotFoundException.class,
-				() -> walletService.getUser(TEST_USERNAME));
-		verify(userRepository).findByUsername(TEST_USERNAME);
+				() -> walletService.getAccount(TEST_USERNAME));
+		verify(userRepository).findAccountByUsername(TEST_USERNAME);
+	}
+
+	@Test
+	void getTransactions_ReturnsPageOlderThanCursor() {
+		// Given
+		TransactionResponse older = new TransactionResponse(9L, TransactionType.TOP_UP, new BigDecimal("5.00"),
+				new BigDecimal("95.00"), new BigDecimal("100.00"), "older", null);
+		when(userRepository.existsByUsername(TEST_USERNAME)).thenReturn(true);
+		when(transactionRepository.findHistory(eq(TEST_USERNAME), eq(10L), any()))
+				.thenReturn(List.of(older));
+
+		// When
+		List<TransactionResponse> result = walletService.getTransactions(TEST_USERNAME, 10L, 20);
+
+		// Then
+		assertEquals(List.of(older), result);
+	}
+
+	@Test
+	void getTransactions_UserNotFound() {
+		// Given
+		when(userRepository.existsByUsername(TEST_USERNAME)).thenReturn(false);
+
+		// When & Then
+		assertThrows(UserNotFoundException.class,
+				() -> walletService.getTransactions(TEST_USERNAME, null, 20));
+		verify(transactionRepository, never()).findHistory(any(), any(), any());
+	}
+
+	@Test
+	void getTransactions_RejectsOversizedPage() {
+		// When & Then
+		assertThrows(IllegalArgumentException.class,
+				() -> walletService.getTransactions(TEST_USERNAME, null, 10_000));
 	}
 
 	@Test
@@ -223,4 +481,23 @@ class WalletServiceTest {
 		assertThrows(IllegalArgumentException.class,
 				() -> walletService.topUp(TEST_USERNAME, negativeAmount, TEST_IDEMPOTENCY_KEY));
 	}
+
+	private static AccountBalance accountBalance(Long id, BigDecimal balance) {
+		return new AccountBalance() {
+			@Override
+			public Long getId() {
+				return id;
+			}
+
+			@Override
+			public BigDecimal getBalance() {
+				return balance;
+			}
+
+			@Override
+			public BigDecimal getHeldBalance() {
+				return BigDecimal.ZERO;
+			}
+		};
+	}
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.ebra.wallet.admission;
+
+import com.ebra.wallet.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionLimiterTest {
+
+	private final AtomicLong now = new AtomicLong(1_000_000_000L);
+	private AdmissionLimiter limiter;
+
+	@BeforeEach
+	void setUp() {
+		// 10 requests/s per user with a burst of 3; global limit out of the way
+		limiter = new AdmissionLimiter(new AdmissionLimits(true, 10, 3, 1_000, 1_000),
+				2, Duration.ofSeconds(60), new SimpleMeterRegistry(), now::get);
+	}
+
+	@Test
+	void acquire_AdmitsBurstThenRejects() {
+		// When
+		limiter.acquire("alice");
+		limiter.acquire("alice");
+		limiter.acquire("alice");
+
+		// Then
+		RateLimitExceededException ex = assertThrows(RateLimitExceededException.class,
+				() -> limiter.acquire("alice"));
+		assertEquals(1, ex.getRetryAfterSeconds());
+		assertDoesNotThrow(() -> limiter.acquire("bob"));
+	}
+
+	@Test
+	void acquire_RefillsOverTime() {
+		// Given
+		limiter.acquire("alice");
+		limiter.acquire("alice");
+		limiter.acquire("alice");
+
+		// When
+		now.addAndGet(Duration.ofMillis(100).toNanos());
+
+		// Then
+		assertDoesNotThrow(() -> limiter.acquire("alice"));
+		assertThrows(RateLimitExceededException.class, () -> limiter.acquire("alice"));
+	}
+
+	@Test
+	void acquire_GlobalLimitAppliesAcrossUsers() {
+		// Given
+		limiter.updateLimits(new AdmissionLimits(true, 10, 3, 1, 2));
+
+		// When
+		limiter.acquire("alice");
+		limiter.acquire("bob");
+
+		// Then
+		assertThrows(RateLimitExceededException.class, () -> limiter.acquire("carol"));
+	}
+
+	@Test
+	void acquire_DisabledAdmitsEverything() {
+		// Given
+		limiter.updateLimits(new AdmissionLimits(false, 10, 1, 10, 1));
+
+		// When & Then
+		for (int i = 0; i < 10; i++) {
+			assertDoesNotThrow(() -> limiter.acquire("alice"));
+		}
+	}
+
+	@Test
+	void evictIdle_RemovesOnlyIdleBuckets() {
+		// Given
+		limiter.acquire("alice");
+		now.addAndGet(Duration.ofSeconds(61).toNanos());
+		limiter.acquire("bob");
+
+		// When
+		limiter.evictIdle();
+
+		// Then
+		assertEquals(1, limiter.trackedUsers());
+	}
+
+	@Test
+	void acquire_FullTableFallsBackToGlobalLimit() {
+		// Given - the table holds two users
+		limiter.acquire("alice");
+		limiter.acquire("bob");
+
+		// When & Then - carol is not tracked, so her burst is not limited per user
+		for (int i = 0; i < 5; i++) {
+			assertDoesNotThrow(() -> limiter.acquire("carol"));
+		}
+		assertEquals(2, limiter.trackedUsers());
+	}
+}
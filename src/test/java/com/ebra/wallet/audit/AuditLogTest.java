@@ -0,0 +1,88 @@
+package com.ebra.wallet.audit;
+
+import com.ebra.wallet.exception.InsufficientBalanceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+	@TempDir
+	Path directory;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void audit_WritesOneLinePerMutationWithOutcome() throws Exception {
+		// Given
+		AuditLog auditLog = auditLog(1024, OverflowPolicy.DROP, DataSize.ofMegabytes(1), 2);
+
+		// When
+		auditLog.audit(AuditOp.TOP_UP, "alice", new BigDecimal("10.00"), () -> null);
+		assertThrows(InsufficientBalanceException.class, () -> auditLog.audit(AuditOp.CHARGE, "bob\tx",
+				new BigDecimal("5.50"), () -> {
+					throw new InsufficientBalanceException("Insufficient balance");
+				}));
+		auditLog.shutdown();
+
+		// Then
+		List<String> lines = Files.readAllLines(directory.resolve("audit.log"));
+		assertEquals(2, lines.size());
+		String[] topUp = lines.get(0).split("\t");
+		assertEquals(6, topUp.length);
+		assertEquals(List.of("TOP_UP", "alice", "10.00", "OK"), List.of(topUp).subList(1, 5));
+		assertTrue(lines.get(1).contains("\tCHARGE\tbob?x\t5.50\tINSUFFICIENT_BALANCE\t"));
+		assertEquals(2, count("written"));
+	}
+
+	@Test
+	void record_RollsFilesAndKeepsTheConfiguredNumber() throws Exception {
+		// Given - every line is over 50 bytes
+		AuditLog auditLog = auditLog(1024, OverflowPolicy.DROP, DataSize.ofBytes(100), 3);
+
+		// When
+		for (int i = 0; i < 10; i++) {
+			auditLog.record(AuditOp.CHARGE, "user-" + i, BigDecimal.ONE, AuditOutcome.OK, System.nanoTime());
+		}
+		auditLog.shutdown();
+
+		// Then
+		assertTrue(Files.exists(directory.resolve("audit.log.1")));
+		assertTrue(Files.exists(directory.resolve("audit.log.2")));
+		assertFalse(Files.exists(directory.resolve("audit.log.3")));
+		assertTrue(Files.readString(directory.resolve("audit.log")).contains("\tuser-9\t"));
+		assertEquals(10, count("written"));
+	}
+
+	@Test
+	void record_DisabledWritesNothing() throws Exception {
+		// Given
+		AuditLog auditLog = new AuditLog(registry, false, directory, 1024, OverflowPolicy.DROP, Duration.ZERO,
+				16, DataSize.ofMegabytes(1), 1);
+
+		// When
+		auditLog.record(AuditOp.CHARGE, "alice", BigDecimal.ONE, AuditOutcome.OK, System.nanoTime());
+		auditLog.shutdown();
+
+		// Then
+		assertFalse(Files.exists(directory.resolve("audit.log")));
+	}
+
+	private AuditLog auditLog(int bufferSize, OverflowPolicy policy, DataSize maxFileSize, int maxFiles) {
+		return new AuditLog(registry, true, directory, bufferSize, policy, Duration.ofMillis(100), 16,
+				maxFileSize, maxFiles);
+	}
+
+	private double count(String result) {
+		return registry.get("wallet.audit.events").tag("result", result).counter().count();
+	}
+}
@@ -0,0 +1,93 @@
+package com.ebra.wallet.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditRingBufferTest {
+
+	@Test
+	void tryPublish_RefusesWhenFullUntilDrained() {
+		// Given - rounded up to 4 slots
+		AuditRingBuffer buffer = new AuditRingBuffer(3);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(publish(buffer, "user-" + i));
+		}
+
+		// When & Then
+		assertFalse(publish(buffer, "user-4"));
+		assertEquals(1, buffer.drain(1, event -> { }));
+		assertTrue(publish(buffer, "user-4"));
+		assertEquals(4, buffer.size());
+	}
+
+	@Test
+	void drain_ReturnsEventsInPublishOrderUpToTheLimit() {
+		// Given
+		AuditRingBuffer buffer = new AuditRingBuffer(8);
+		publish(buffer, "alice");
+		publish(buffer, "bob");
+		publish(buffer, "carol");
+		List<String> subjects = new ArrayList<>();
+
+		// When
+		int drained = buffer.drain(2, event -> subjects.add(event.subject));
+
+		// Then
+		assertEquals(2, drained);
+		assertEquals(List.of("alice", "bob"), subjects);
+		assertEquals(1, buffer.size());
+	}
+
+	@Test
+	void publish_ConcurrentProducersLoseNothing() throws Exception {
+		// Given
+		AuditRingBuffer buffer = new AuditRingBuffer(64);
+		int producers = 4;
+		int perProducer = 5_000;
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		Set<String> received = new HashSet<>();
+
+		try {
+			// When
+			List<Future<?>> futures = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				int producer = p;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < perProducer; i++) {
+						while (!publish(buffer, producer + ":" + i)) {
+							Thread.yield();
+						}
+					}
+				}));
+			}
+			while (received.size() < producers * perProducer) {
+				if (buffer.drain(16, event -> assertTrue(received.add(event.subject))) == 0) {
+					Thread.yield();
+				}
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Then
+		assertEquals(producers * perProducer, received.size());
+		assertEquals(0, buffer.size());
+	}
+
+	private static boolean publish(AuditRingBuffer buffer, String subject) {
+		return buffer.tryPublish(0, AuditOp.CHARGE, subject, BigDecimal.ONE, AuditOutcome.OK, 1000);
+	}
+}
@@ -0,0 +1,141 @@
+package com.ebra.wallet.backup;
+
+import com.ebra.wallet.dto.BackupReport;
+import com.ebra.wallet.exception.BackupInProgressException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupServiceTest {
+
+	@TempDir
+	Path directory;
+
+	private SQLiteDataSource dataSource;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		dataSource = new SQLiteDataSource();
+		dataSource.setUrl("jdbc:sqlite:" + directory.resolve("wallet.db"));
+		dataSource.setJournalMode("WAL");
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE transactions (id INTEGER PRIMARY KEY, note TEXT)");
+			statement.execute("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 5000) "
+					+ "INSERT INTO transactions (note) SELECT hex(randomblob(64)) FROM n");
+		}
+	}
+
+	@Test
+	void start_CopiesPinnedSnapshotWhileWritesContinue() throws Exception {
+		// Given - one page per step, so the writer commits between steps
+		BackupService backupService = backupService(1, Duration.ofMillis(1), 7);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicInteger written = new AtomicInteger();
+		Thread writer = new Thread(() -> {
+			try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+				while (writing.get()) {
+					statement.execute("INSERT INTO transactions (note) VALUES ('during backup')");
+					written.incrementAndGet();
+				}
+			} catch (SQLException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+
+		// When
+		writer.start();
+		backupService.start();
+		BackupReport report = awaitFinished(backupService);
+		writing.set(false);
+		writer.join();
+
+		// Then
+		assertEquals(BackupStatus.COMPLETED, report.status(), report.error());
+		assertTrue(written.get() > 0);
+		assertTrue(report.totalPages() > 1);
+		assertEquals(report.totalPages(), report.copiedPages());
+		Path snapshot = directory.resolve("backups").resolve(report.name());
+		assertEquals(Files.size(snapshot), report.bytes());
+		assertEquals(report.ledgerVersion(), maxId(snapshot));
+		assertTrue(report.ledgerVersion() >= 5000);
+		assertFalse(Files.exists(Path.of(snapshot + "-wal")));
+	}
+
+	@Test
+	void start_KeepsNewestSnapshotsAndRemovesStalePartials() throws Exception {
+		// Given
+		BackupService backupService = backupService(256, Duration.ZERO, 2);
+		Path backups = Files.createDirectories(directory.resolve("backups"));
+		Path stale = Files.createFile(backups.resolve("wallet-20240101-000000000.db.partial"));
+		Path unrelated = Files.createFile(backups.resolve("wallet-notes.db"));
+
+		// When
+		for (int i = 0; i < 3; i++) {
+			backupService.start();
+			assertEquals(BackupStatus.COMPLETED, awaitFinished(backupService).status());
+			Thread.sleep(5);
+		}
+
+		// Then
+		List<BackupReport> reports = backupService.getReports();
+		assertEquals(3, reports.size());
+		assertFalse(Files.exists(backups.resolve(reports.get(2).name())));
+		assertTrue(Files.exists(backups.resolve(reports.get(1).name())));
+		assertTrue(Files.exists(backups.resolve(reports.get(0).name())));
+		assertFalse(Files.exists(stale));
+		assertTrue(Files.exists(unrelated));
+	}
+
+	@Test
+	void start_RejectsSecondBackupWhileOneIsRunning() throws Exception {
+		// Given
+		BackupService backupService = backupService(1, Duration.ofMillis(20), 7);
+		backupService.start();
+
+		// When & Then
+		assertThrows(BackupInProgressException.class, backupService::start);
+		backupService.shutdown();
+		assertEquals(BackupStatus.COMPLETED, backupService.getReports().get(0).status());
+	}
+
+	private BackupService backupService(int pagesPerStep, Duration stepPause, int retain) {
+		return new BackupService(dataSource, new SimpleMeterRegistry(), directory.resolve("backups"), pagesPerStep,
+				stepPause, retain);
+	}
+
+	private static BackupReport awaitFinished(BackupService backupService) throws InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+		while (System.nanoTime() < deadline) {
+			BackupReport report = backupService.getReports().get(0);
+			if (report.status() != BackupStatus.RUNNING) {
+				return report;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("Backup did not finish");
+	}
+
+	private static long maxId(Path file) throws SQLException {
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+			 Statement statement = connection.createStatement();
+			 ResultSet result = statement.executeQuery("SELECT max(id) FROM transactions")) {
+			return result.getLong(1);
+		}
+	}
+}
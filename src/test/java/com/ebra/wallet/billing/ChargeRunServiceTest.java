@@ -0,0 +1,261 @@
+package com.ebra.wallet.billing;
+
+import com.ebra.wallet.dto.ChargeRunReport;
+import com.ebra.wallet.entity.ChargeOutcome;
+import com.ebra.wallet.entity.ChargeRun;
+import com.ebra.wallet.entity.ChargeRunStatus;
+import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.entity.User;
+import com.ebra.wallet.exception.ChargeRunsUnavailableException;
+import com.ebra.wallet.exception.DuplicateTransactionException;
+import com.ebra.wallet.exception.InsufficientBalanceException;
+import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.exception.VelocityLimitExceededException;
+import com.ebra.wallet.repository.ChargeRunRepository;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.service.WalletService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChargeRunServiceTest {
+
+	@Mock
+	private ChargeRunRepository chargeRunRepository;
+
+	@Mock
+	private WalletService walletService;
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@TempDir
+	Path directory;
+
+	private ChargeRunService chargeRunService;
+
+	@BeforeEach
+	void setUp() {
+		chargeRunService = chargeRunService(false);
+		lenient().when(chargeRunRepository.save(any(ChargeRun.class)))
+				.thenAnswer(invocation -> invocation.getArgument(0));
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		chargeRunService.shutdown();
+	}
+
+	@Test
+	void execute_ChargesEveryRowWithDerivedKeysAndCountsOutcomes() throws IOException {
+		// Given
+		ChargeRun run = run("username,amount\nalice,10.00\nbob,5.00\ncarol,abc\n\ndave,1.00\n", 4);
+		lenient().when(walletService.charge(eq("bob"), any(), anyString()))
+				.thenThrow(new InsufficientBalanceException("Insufficient balance"));
+		lenient().when(walletService.charge(eq("dave"), any(), anyString()))
+				.thenThrow(new UserNotFoundException("User not found: dave"));
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		verify(walletService).charge("alice", new BigDecimal("10.00"), "jan:2");
+		verify(walletService).charge("dave", new BigDecimal("1.00"), "jan:6");
+		ChargeRunReport report = chargeRunService.getReport(1L);
+		assertEquals(ChargeRunStatus.COMPLETED, report.status());
+		assertEquals(4, report.processedRows());
+		assertEquals(1L, report.outcomes().get(ChargeOutcome.CHARGED));
+		assertEquals(1L, report.outcomes().get(ChargeOutcome.INSUFFICIENT_BALANCE));
+		assertEquals(1L, report.outcomes().get(ChargeOutcome.INVALID));
+		assertEquals(1L, report.outcomes().get(ChargeOutcome.USER_NOT_FOUND));
+		assertEquals(6, run.getCheckpointLine());
+		assertFalse(Files.exists(Path.of(run.getInputFile())));
+	}
+
+	@Test
+	void execute_ChargesFirstRowWhoseUsernameStartsWithUsername() throws IOException {
+		// Given
+		ChargeRun run = run("username1,10.00\nbob,5.00\n", 2);
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		verify(walletService).charge("username1", new BigDecimal("10.00"), "jan:1");
+		assertEquals(2, run.getCount(ChargeOutcome.CHARGED));
+	}
+
+	@Test
+	void execute_CountsRowsOverVelocityLimitSeparately() throws IOException {
+		// Given
+		ChargeRun run = run("alice,10.00\nbob,5.00\n", 2);
+		lenient().when(walletService.charge(eq("bob"), any(), anyString()))
+				.thenThrow(new VelocityLimitExceededException("Velocity limit exceeded", 3600));
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		assertEquals(1, run.getCount(ChargeOutcome.CHARGED));
+		assertEquals(1, run.getCount(ChargeOutcome.VELOCITY_LIMITED));
+		assertEquals(0, run.getCount(ChargeOutcome.FAILED));
+		assertEquals(2, run.getProcessedRows());
+	}
+
+	@Test
+	void execute_ResumesAfterCheckpointWithSameKeys() throws IOException {
+		// Given - lines 1 and 2 were checkpointed by an earlier process
+		ChargeRun run = run("alice,1.00\nbob,2.00\ncarol,3.00\n", 3);
+		run.setStatus(ChargeRunStatus.RUNNING);
+		run.setCheckpointLine(2);
+		run.setCount(ChargeOutcome.CHARGED, 2);
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		verify(walletService, never()).charge(eq("alice"), any(), anyString());
+		verify(walletService, never()).charge(eq("bob"), any(), anyString());
+		verify(walletService).charge("carol", new BigDecimal("3.00"), "jan:3");
+		assertEquals(3, run.getCount(ChargeOutcome.CHARGED));
+		assertEquals(ChargeRunStatus.COMPLETED, run.getStatus());
+	}
+
+	@Test
+	void execute_CountsRowsChargedBeforeRestartAsCharged() throws IOException {
+		// Given - carol was charged by this run after its last checkpoint, dave by an earlier run
+		LocalDateTime startedAt = LocalDateTime.of(2024, 1, 31, 0, 0);
+		ChargeRun run = run("alice,1.00\nbob,2.00\ncarol,3.00\ndave,4.00\n", 4);
+		run.setStatus(ChargeRunStatus.RUNNING);
+		run.setStartedAt(startedAt);
+		run.setCheckpointLine(2);
+		run.setCount(ChargeOutcome.CHARGED, 2);
+		when(walletService.charge(eq("carol"), any(), anyString()))
+				.thenThrow(new DuplicateTransactionException("Transaction with idempotency key already exists"));
+		when(walletService.charge(eq("dave"), any(), anyString()))
+				.thenThrow(new DuplicateTransactionException("Transaction with idempotency key already exists"));
+		when(transactionRepository.findByIdempotencyKey("jan:3"))
+				.thenReturn(Optional.of(charge(startedAt.plusMinutes(5))));
+		when(transactionRepository.findByIdempotencyKey("jan:4"))
+				.thenReturn(Optional.of(charge(startedAt.minusDays(1))));
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		assertEquals(3, run.getCount(ChargeOutcome.CHARGED));
+		assertEquals(1, run.getCount(ChargeOutcome.ALREADY_CHARGED));
+		assertEquals(startedAt, run.getStartedAt());
+	}
+
+	@Test
+	void execute_CountsDuplicatesOfFirstRunAsAlreadyCharged() throws IOException {
+		// Given
+		ChargeRun run = run("alice,1.00\n", 1);
+		when(walletService.charge(eq("alice"), any(), anyString()))
+				.thenThrow(new DuplicateTransactionException("Transaction with idempotency key already exists"));
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		assertEquals(1, run.getCount(ChargeOutcome.ALREADY_CHARGED));
+		verifyNoInteractions(transactionRepository);
+	}
+
+	@Test
+	void execute_KeepsFileOrderPerUserAcrossChunks() throws IOException {
+		// Given
+		run("alice,1.00\nbob,1.00\nalice,2.00\nbob,2.00\nalice,3.00\n", 5);
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		InOrder inOrder = inOrder(walletService);
+		inOrder.verify(walletService).charge("alice", new BigDecimal("1.00"), "jan:1");
+		inOrder.verify(walletService).charge("alice", new BigDecimal("2.00"), "jan:3");
+		inOrder.verify(walletService).charge("alice", new BigDecimal("3.00"), "jan:5");
+	}
+
+	@Test
+	void execute_RetriesTransientFailures() throws IOException {
+		// Given
+		ChargeRun run = run("alice,1.00\n", 1);
+		when(walletService.charge("alice", new BigDecimal("1.00"), "jan:1"))
+				.thenThrow(new CannotAcquireLockException("database is locked"))
+				.thenReturn(null);
+
+		// When
+		chargeRunService.execute(1L);
+
+		// Then
+		verify(walletService, times(2)).charge("alice", new BigDecimal("1.00"), "jan:1");
+		assertEquals(1, run.getCount(ChargeOutcome.CHARGED));
+		assertEquals(0, run.getCount(ChargeOutcome.FAILED));
+	}
+
+	@Test
+	void submit_RejectsBlankKeyPrefix() {
+		// When & Then
+		assertThrows(IllegalArgumentException.class,
+				() -> chargeRunService.submit(InputStream.nullInputStream(), " "));
+		verify(chargeRunRepository, never()).save(any());
+	}
+
+	@Test
+	void submit_RejectsRunsWhileClustered() throws InterruptedException {
+		// Given
+		chargeRunService.shutdown();
+		chargeRunService = chargeRunService(true);
+
+		// When & Then
+		assertThrows(ChargeRunsUnavailableException.class,
+				() -> chargeRunService.submit(InputStream.nullInputStream(), "jan"));
+		verify(chargeRunRepository, never()).save(any());
+		verifyNoInteractions(walletService);
+	}
+
+	private static Transaction charge(LocalDateTime createdAt) {
+		Transaction transaction = new Transaction(new User("someone"), TransactionType.CHARGE, BigDecimal.ONE,
+				BigDecimal.TEN, new BigDecimal("9"), "key");
+		transaction.setCreatedAt(createdAt);
+		return transaction;
+	}
+
+	private ChargeRunService chargeRunService(boolean clustered) {
+		return new ChargeRunService(chargeRunRepository, walletService, transactionRepository,
+				new SimpleMeterRegistry(), directory, 2, 4, 3, 1000, clustered);
+	}
+
+	private ChargeRun run(String input, long rows) throws IOException {
+		Path file = Files.writeString(directory.resolve("input.csv"), input);
+		ChargeRun run = new ChargeRun("jan", file.toString(), rows);
+		run.setId(1L);
+		when(chargeRunRepository.findById(1L)).thenReturn(Optional.of(run));
+		return run;
+	}
+}
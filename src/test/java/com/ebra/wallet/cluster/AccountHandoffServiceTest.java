@@ -0,0 +1,387 @@
+package com.ebra.wallet.cluster;
+
+import com.ebra.wallet.entity.HoldStatus;
+import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.entity.User;
+import com.ebra.wallet.repository.HoldRepository;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountHandoffServiceTest {
+
+	private static final URI OWNER = URI.create("http://node-b:8080");
+	private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+	@Mock
+	private ClusterMembership membership;
+
+	@Mock
+	private ClusterClient clusterClient;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@Mock
+	private HoldRepository holdRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private AccountHandoffService handoffService;
+	private User alice;
+
+	@BeforeEach
+	void setUp() {
+		handoffService = new AccountHandoffService(membership, clusterClient, userRepository, transactionRepository,
+				holdRepository, transactionManager, new SimpleMeterRegistry(), 100, 10_000);
+		alice = user("alice", "30.00");
+	}
+
+	@Test
+	void release_SendsOutsideTransactionThenDeletesWhatOwnerConfirmed() throws Exception {
+		// Given
+		List<Transaction> ledger = List.of(entry(alice, "k1", "0.00", "30.00"));
+		movedTo("alice");
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+		when(transactionRepository.findByUserOrderByIdAsc(alice)).thenReturn(ledger);
+		when(clusterClient.sendAccounts(eq(OWNER), anyList())).thenReturn(new HandoffResult(1, List.of()));
+
+		// When
+		boolean kept = handoffService.release("alice");
+
+		// Then - read and commit, send, then delete in a second transaction
+		assertFalse(kept);
+		assertFalse(handoffService.isKeptHere("alice"));
+		InOrder order = inOrder(transactionManager, clusterClient, holdRepository, transactionRepository,
+				userRepository);
+		order.verify(transactionManager).commit(any());
+		order.verify(clusterClient).sendAccounts(OWNER, List.of(AccountTransfer.of(alice, ledger)));
+		order.verify(transactionManager).getTransaction(any());
+		order.verify(holdRepository).deleteByUser(alice);
+		order.verify(transactionRepository).deleteAllInBatch(ledger);
+		order.verify(userRepository).delete(alice);
+		order.verify(transactionManager).commit(any());
+	}
+
+	@Test
+	void release_KeepsAccountWrittenToWhileItWasSent() throws Exception {
+		// Given
+		movedTo("alice");
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+		when(transactionRepository.findByUserOrderByIdAsc(alice)).thenReturn(List.of());
+		when(clusterClient.sendAccounts(eq(OWNER), anyList())).thenAnswer(invocation -> {
+			alice.setBalance(new BigDecimal("25.00"));
+			return new HandoffResult(1, List.of());
+		});
+
+		// When
+		handoffService.release("alice");
+
+		// Then
+		verify(userRepository, never()).delete(any());
+		verify(transactionRepository, never()).deleteAllInBatch(any());
+	}
+
+	@Test
+	void release_KeepsAccountOwnerRefused() throws Exception {
+		// Given
+		movedTo("alice");
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+		when(transactionRepository.findByUserOrderByIdAsc(alice)).thenReturn(List.of());
+		when(clusterClient.sendAccounts(eq(OWNER), anyList())).thenReturn(new HandoffResult(0, List.of("alice")));
+
+		// When
+		boolean servedHere = handoffService.release("alice");
+
+		// Then - kept, but the owner goes on serving its own account under that username
+		assertFalse(servedHere);
+		assertFalse(handoffService.isKeptHere("alice"));
+		verify(userRepository, never()).delete(any());
+		List<HandoffConflict> refused = handoffService.getRefused();
+		assertEquals(1, refused.size());
+		assertEquals("alice", refused.get(0).username());
+		assertEquals("node-b", refused.get(0).owner());
+	}
+
+	@Test
+	void release_ClearsRefusalOnceOwnerAcceptsTheAccount() throws Exception {
+		// Given - refused until the owner's own account under that username was removed
+		movedTo("alice");
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+		when(transactionRepository.findByUserOrderByIdAsc(alice)).thenReturn(List.of());
+		when(clusterClient.sendAccounts(eq(OWNER), anyList())).thenReturn(new HandoffResult(0, List.of("alice")),
+				new HandoffResult(1, List.of()));
+		handoffService.release("alice");
+
+		// When
+		boolean kept = handoffService.release("alice");
+
+		// Then
+		assertFalse(kept);
+		assertTrue(handoffService.getRefused().isEmpty());
+		verify(userRepository).delete(alice);
+	}
+
+	@Test
+	void release_KeepsAccountWithHeldFundsAndAnnouncesItToTheOwner() throws Exception {
+		// Given
+		alice.setHeldBalance(new BigDecimal("10.00"));
+		movedTo("alice");
+		when(membership.getNodeId()).thenReturn("node-a");
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+
+		// When
+		boolean kept = handoffService.release("alice");
+
+		// Then
+		assertTrue(kept);
+		assertTrue(handoffService.isKeptHere("alice"));
+		verify(clusterClient, never()).sendAccounts(any(), anyList());
+		verify(userRepository, never()).delete(any());
+		verify(clusterClient).announceHeld(OWNER, new HeldAccounts("node-a", List.of("alice")));
+	}
+
+	@Test
+	void release_KeepsAccountHeldWhileItWasSent() throws Exception {
+		// Given
+		movedTo("alice");
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+		when(transactionRepository.findByUserOrderByIdAsc(alice)).thenReturn(List.of());
+		when(holdRepository.existsByUserAndStatus(alice, HoldStatus.ACTIVE)).thenReturn(false, true);
+		when(clusterClient.sendAccounts(eq(OWNER), anyList())).thenReturn(new HandoffResult(1, List.of()));
+		when(membership.getNodeId()).thenReturn("node-a");
+
+		// When
+		handoffService.release("alice");
+
+		// Then
+		verify(holdRepository, never()).deleteByUser(any());
+		verify(userRepository, never()).delete(any());
+		verify(clusterClient).announceHeld(OWNER, new HeldAccounts("node-a", List.of("alice")));
+	}
+
+	@Test
+	void sweep_RetriesOnlyKeptAccountsOnceAllWereScanned() throws Exception {
+		// Given - alice is kept for her holds on the first pass, which are resolved by the second
+		alice.setHeldBalance(new BigDecimal("10.00"));
+		movedTo("alice");
+		when(membership.getChangedAt()).thenReturn(Instant.EPOCH);
+		when(membership.getNodeId()).thenReturn("node-a");
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(alice));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+		when(transactionRepository.findByUserOrderByIdAsc(alice)).thenReturn(List.of());
+		when(clusterClient.sendAccounts(eq(OWNER), anyList())).thenReturn(new HandoffResult(1, List.of()));
+		handoffService.sweep();
+		alice.setHeldBalance(BigDecimal.ZERO);
+
+		// When
+		handoffService.sweep();
+
+		// Then
+		verify(userRepository, times(1)).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+		verify(userRepository).delete(alice);
+		assertFalse(handoffService.isKeptHere("alice"));
+	}
+
+	@Test
+	void pullIfMoved_RemembersPreviousOwnerThatKeepsTheAccount() throws Exception {
+		// Given
+		URI previous = URI.create("http://node-a:8080");
+		when(membership.previousOwnerOf("alice")).thenReturn("node-a");
+		when(membership.getChangedAt()).thenReturn(Instant.EPOCH);
+		when(membership.addressOfAny("node-a")).thenReturn(previous);
+		when(clusterClient.requestRelease(previous, "alice")).thenReturn(true);
+
+		// When
+		handoffService.pullIfMoved("alice");
+
+		// Then
+		assertEquals("node-a", handoffService.holderOf("alice"));
+	}
+
+	@Test
+	void accept_ForgetsHolderOnceTheAccountArrives() {
+		// Given
+		handoffService.recordHeld(new HeldAccounts("node-a", List.of("alice")));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.empty());
+		when(userRepository.save(any(User.class))).then(returnsFirstArg());
+
+		// When
+		handoffService.accept(List.of(AccountTransfer.of(alice, List.of())));
+
+		// Then
+		assertNull(handoffService.holderOf("alice"));
+	}
+
+	@Test
+	void accept_InsertsNewAccountWithItsLedger() {
+		// Given
+		AccountTransfer transfer = AccountTransfer.of(alice, List.of(entry(alice, "k1", "0.00", "30.00")));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.empty());
+		when(userRepository.save(any(User.class))).then(returnsFirstArg());
+
+		// When
+		HandoffResult result = handoffService.accept(List.of(transfer));
+
+		// Then
+		assertEquals(new HandoffResult(1, List.of()), result);
+		ArgumentCaptor<Transaction> saved = ArgumentCaptor.forClass(Transaction.class);
+		verify(transactionRepository).save(saved.capture());
+		assertEquals("k1", saved.getValue().getIdempotencyKey());
+		assertEquals(new BigDecimal("30.00"), saved.getValue().getUser().getBalance());
+		assertEquals(CREATED_AT, saved.getValue().getUser().getCreatedAt());
+	}
+
+	@Test
+	void accept_SkipsAccountAlreadyAccepted() {
+		// Given - a repeated handoff of the same account and history
+		User received = user("alice", "30.00");
+		List<Transaction> ledger = List.of(entry(received, "k1", "0.00", "30.00"));
+		AccountTransfer transfer = AccountTransfer.of(alice, List.of(entry(alice, "k1", "0.00", "30.00")));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(received));
+		when(transactionRepository.findByUserOrderByIdAsc(received)).thenReturn(ledger);
+
+		// When
+		HandoffResult result = handoffService.accept(List.of(transfer));
+
+		// Then
+		assertEquals(new HandoffResult(0, List.of()), result);
+		verify(userRepository, never()).save(any());
+		verify(transactionRepository, never()).save(any());
+	}
+
+	@Test
+	void accept_CatchesUpAccountWhoseLedgerIsAPrefix() {
+		// Given
+		User received = user("alice", "30.00");
+		List<Transaction> ledger = List.of(entry(received, "k1", "0.00", "30.00"));
+		alice.setBalance(new BigDecimal("20.00"));
+		AccountTransfer transfer = AccountTransfer.of(alice, List.of(entry(alice, "k1", "0.00", "30.00"),
+				entry(alice, "k2", "30.00", "20.00")));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(received));
+		when(transactionRepository.findByUserOrderByIdAsc(received)).thenReturn(ledger);
+		when(userRepository.save(any(User.class))).then(returnsFirstArg());
+
+		// When
+		HandoffResult result = handoffService.accept(List.of(transfer));
+
+		// Then
+		assertEquals(new HandoffResult(1, List.of()), result);
+		assertEquals(new BigDecimal("20.00"), received.getBalance());
+		ArgumentCaptor<Transaction> saved = ArgumentCaptor.forClass(Transaction.class);
+		verify(transactionRepository).save(saved.capture());
+		assertEquals("k2", saved.getValue().getIdempotencyKey());
+	}
+
+	@Test
+	void accept_RefusesDifferentAccountWithTheSameUsername() {
+		// Given - re-created here after the handoff window ran out
+		User recreated = user("alice", "5.00");
+		recreated.setCreatedAt(CREATED_AT.plusDays(1));
+		AccountTransfer transfer = AccountTransfer.of(alice, List.of());
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(recreated));
+		when(transactionRepository.findByUserOrderByIdAsc(recreated)).thenReturn(List.of());
+
+		// When
+		HandoffResult result = handoffService.accept(List.of(transfer));
+
+		// Then
+		assertEquals(new HandoffResult(0, List.of("alice")), result);
+		assertEquals(new BigDecimal("5.00"), recreated.getBalance());
+		verify(userRepository, never()).save(any());
+	}
+
+	@Test
+	void accept_RefusesAccountWithHistoryOfItsOwn() {
+		// Given - the same account, already written to by this node
+		User received = user("alice", "10.00");
+		List<Transaction> ledger = List.of(entry(received, "k1", "0.00", "30.00"),
+				entry(received, "here", "30.00", "10.00"));
+		AccountTransfer transfer = AccountTransfer.of(alice, List.of(entry(alice, "k1", "0.00", "30.00")));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(received));
+		when(transactionRepository.findByUserOrderByIdAsc(received)).thenReturn(ledger);
+
+		// When
+		HandoffResult result = handoffService.accept(List.of(transfer));
+
+		// Then
+		assertEquals(new HandoffResult(0, List.of("alice")), result);
+		verify(transactionRepository, never()).save(any());
+	}
+
+	@Test
+	void accept_RefusesToCatchUpAccountWithHoldsOfItsOwn() {
+		// Given
+		User received = user("alice", "30.00");
+		received.setHeldBalance(new BigDecimal("25.00"));
+		List<Transaction> ledger = List.of(entry(received, "k1", "0.00", "30.00"));
+		alice.setBalance(new BigDecimal("20.00"));
+		AccountTransfer transfer = AccountTransfer.of(alice, List.of(entry(alice, "k1", "0.00", "30.00"),
+				entry(alice, "k2", "30.00", "20.00")));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(received));
+		when(transactionRepository.findByUserOrderByIdAsc(received)).thenReturn(ledger);
+
+		// When
+		HandoffResult result = handoffService.accept(List.of(transfer));
+
+		// Then
+		assertEquals(new HandoffResult(0, List.of("alice")), result);
+		assertEquals(new BigDecimal("30.00"), received.getBalance());
+		verify(transactionRepository, never()).save(any());
+	}
+
+	private void movedTo(String username) {
+		when(membership.isLocal(username)).thenReturn(false);
+		when(membership.ownerOf(username)).thenReturn("node-b");
+		when(membership.addressOf("node-b")).thenReturn(OWNER);
+	}
+
+	private static User user(String username, String balance) {
+		User user = new User(username);
+		user.setId(1L);
+		user.setBalance(new BigDecimal(balance));
+		user.setCreatedAt(CREATED_AT);
+		user.setUpdatedAt(CREATED_AT);
+		return user;
+	}
+
+	private static Transaction entry(User user, String key, String before, String after) {
+		BigDecimal balanceBefore = new BigDecimal(before);
+		BigDecimal balanceAfter = new BigDecimal(after);
+		TransactionType type = balanceAfter.compareTo(balanceBefore) > 0 ? TransactionType.TOP_UP
+				: TransactionType.CHARGE;
+		Transaction transaction = new Transaction(user, type, balanceAfter.subtract(balanceBefore).abs(),
+				balanceBefore, balanceAfter, key);
+		transaction.setCreatedAt(CREATED_AT);
+		return transaction;
+	}
+}
@@ -0,0 +1,217 @@
+package com.ebra.wallet.cluster;
+
+import com.ebra.wallet.admission.AdmissionLimiter;
+import com.ebra.wallet.controller.HoldController;
+import com.ebra.wallet.controller.WalletController;
+import com.ebra.wallet.dto.HoldResponse;
+import com.ebra.wallet.dto.TransactionResponse;
+import com.ebra.wallet.dto.UserResponse;
+import com.ebra.wallet.entity.HoldStatus;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.exception.GlobalExceptionHandler;
+import com.ebra.wallet.exception.UserAlreadyExistsException;
+import com.ebra.wallet.service.BalanceEventService;
+import com.ebra.wallet.service.BalanceHistoryService;
+import com.ebra.wallet.service.HoldService;
+import com.ebra.wallet.service.WalletService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two nodes, a and b, each with a hold under local id 7 for a different account. Node a owns alice, whose
+ * account b still holds.
+ */
+@ExtendWith(MockitoExtension.class)
+class ClusterForwardingFilterTest {
+
+	private static final URI NODE_B = URI.create("http://node-b:8080");
+
+	@Mock
+	private ClusterMembership membershipA;
+
+	@Mock
+	private ClusterClient clientA;
+
+	@Mock
+	private HoldService holdsA;
+
+	@Mock
+	private HoldService holdsB;
+
+	@Mock
+	private WalletService walletA;
+
+	@Mock
+	private WalletService walletB;
+
+	@Mock
+	private AccountHandoffService handoffService;
+
+	@Mock
+	private AdmissionLimiter admissionLimiter;
+
+	private MockMvc nodeA;
+	private MockMvc nodeB;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+		nodeA = node(holdsA, walletA, "a", new ClusterForwardingFilter(membershipA, clientA, handoffService,
+				objectMapper, new SimpleMeterRegistry()));
+		nodeB = node(holdsB, walletB, "b", new ClusterForwardingFilter(mock(ClusterMembership.class),
+				mock(ClusterClient.class), handoffService, objectMapper, new SimpleMeterRegistry()));
+		lenient().when(membershipA.getNodeId()).thenReturn("a");
+		lenient().when(membershipA.addressOfAny("b")).thenReturn(NODE_B);
+		lenient().when(clientA.forward(eq(NODE_B), anyString(), anyString(), any(), any()))
+				.thenAnswer(invocation -> relayTo(nodeB, invocation));
+	}
+
+	@Test
+	void capture_SentToOtherNodeReachesTheHoldThatNodeIssued() throws Exception {
+		// Given
+		when(holdsB.capture(7L, null, "cap-1")).thenReturn(new TransactionResponse(40L, TransactionType.CHARGE,
+				BigDecimal.TEN, new BigDecimal("30.00"), new BigDecimal("20.00"), "cap-1", LocalDateTime.now()));
+
+		// When & Then
+		nodeA.perform(post("/api/wallet/holds/b-7/capture")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"idempotencyKey\": \"cap-1\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(40));
+		verify(holdsB).capture(7L, null, "cap-1");
+		verifyNoInteractions(holdsA);
+	}
+
+	@Test
+	void getHold_ReturnsReferenceNamingTheIssuingNode() throws Exception {
+		// Given
+		when(holdsB.getHold(7L)).thenReturn(new HoldResponse(7L, "bob", BigDecimal.TEN, null, HoldStatus.ACTIVE,
+				"hold-1", LocalDateTime.now().plusHours(1), LocalDateTime.now(), null));
+
+		// When & Then
+		nodeA.perform(get("/api/wallet/holds/b-7"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.username").value("bob"))
+				.andExpect(jsonPath("$.reference").value("b-7"));
+		verifyNoInteractions(holdsA);
+	}
+
+	@Test
+	void release_OfOwnHoldStaysOnThisNode() throws Exception {
+		// Given
+		when(holdsA.release(7L)).thenReturn(new HoldResponse(7L, "alice", BigDecimal.TEN, null, HoldStatus.RELEASED,
+				"hold-1", LocalDateTime.now(), LocalDateTime.now(), LocalDateTime.now()));
+
+		// When & Then
+		nodeA.perform(post("/api/wallet/holds/a-7/release"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.reference").value("a-7"));
+		verify(clientA, never()).forward(any(), anyString(), anyString(), any(), any());
+		verifyNoInteractions(holdsB);
+	}
+
+	@Test
+	void release_RejectsIdThatDoesNotNameItsNode() throws Exception {
+		// When & Then
+		nodeA.perform(post("/api/wallet/holds/7/release"))
+				.andExpect(status().isBadRequest());
+		verify(holdsA, never()).release(anyLong());
+		verifyNoInteractions(holdsB);
+	}
+
+	@Test
+	void getAccount_OnOwnerReachesThePreviousOwnerStillHoldingIt() throws Exception {
+		// Given
+		heldByB("alice");
+		when(walletB.getAccount("alice")).thenReturn(new UserResponse(1L, "alice", new BigDecimal("30.00"),
+				BigDecimal.TEN, LocalDateTime.now(), LocalDateTime.now()));
+
+		// When & Then
+		nodeA.perform(get("/api/wallet/account/alice"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.balance").value(30.00));
+		verifyNoInteractions(walletA);
+	}
+
+	@Test
+	void createAccount_OnOwnerIsRefusedWhilePreviousOwnerHoldsIt() throws Exception {
+		// Given
+		heldByB("alice");
+		when(walletB.createAccount("alice")).thenThrow(new UserAlreadyExistsException("alice already exists"));
+
+		// When & Then
+		nodeA.perform(post("/api/wallet/account")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\": \"alice\"}"))
+				.andExpect(status().isConflict())
+				.andExpect(jsonPath("$.code").value("USER_ALREADY_EXISTS"));
+		verifyNoInteractions(walletA);
+	}
+
+	private void heldByB(String username) {
+		when(membershipA.isLocal(username)).thenReturn(true);
+		when(handoffService.holderOf(username)).thenReturn("b");
+		when(handoffService.isKeptHere(username)).thenReturn(true);
+	}
+
+	private MockMvc node(HoldService holdService, WalletService walletService, String nodeId,
+						 ClusterForwardingFilter filter) {
+		return MockMvcBuilders.standaloneSetup(new HoldController(holdService, admissionLimiter, true, nodeId),
+						new WalletController(walletService, admissionLimiter, mock(BalanceEventService.class),
+								mock(BalanceHistoryService.class), false))
+				.setControllerAdvice(new GlobalExceptionHandler())
+				.addFilters(filter)
+				.build();
+	}
+
+	// Plays ClusterClient.forward: the request reaches the other node marked as forwarded
+	private static HttpResponse<byte[]> relayTo(MockMvc node, InvocationOnMock invocation) throws Exception {
+		MockHttpServletRequestBuilder request = request(HttpMethod.valueOf(invocation.getArgument(1)),
+				invocation.<String>getArgument(2))
+				.header(ClusterClient.FORWARDED_BY_HEADER, "a")
+				.content(invocation.<byte[]>getArgument(4));
+		if (invocation.getArgument(3) != null) {
+			request.contentType(invocation.<String>getArgument(3));
+		}
+		MockHttpServletResponse answer = node.perform(request).andReturn().getResponse();
+
+		@SuppressWarnings("unchecked")
+		HttpResponse<byte[]> response = mock(HttpResponse.class);
+		when(response.statusCode()).thenReturn(answer.getStatus());
+		when(response.body()).thenReturn(answer.getContentAsByteArray());
+		when(response.headers()).thenReturn(HttpHeaders.of(answer.getContentType() == null ? Map.of()
+				: Map.of("Content-Type", List.of(answer.getContentType())), (name, value) -> true));
+		return response;
+	}
+}
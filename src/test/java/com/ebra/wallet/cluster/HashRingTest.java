@@ -0,0 +1,77 @@
+package com.ebra.wallet.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTest {
+
+	private static final int KEYS = 20_000;
+
+	@Test
+	void owner_SpreadsKeysEvenlyOverMembers() {
+		// Given
+		HashRing ring = new HashRing(members("n1", "n2", "n3"), 128);
+
+		// When
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(ring.owner("user-" + i), 1, Integer::sum);
+		}
+
+		// Then
+		assertEquals(3, counts.size());
+		counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 * 0.2,
+				"unbalanced ring: " + counts));
+	}
+
+	@Test
+	void owner_JoiningMemberOnlyTakesKeysForItself() {
+		// Given
+		HashRing before = new HashRing(members("n1", "n2", "n3"), 128);
+		HashRing after = new HashRing(members("n1", "n2", "n3", "n4"), 128);
+
+		// When
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String key = "user-" + i;
+			if (!before.owner(key).equals(after.owner(key))) {
+				assertEquals("n4", after.owner(key));
+				moved++;
+			}
+		}
+
+		// Then - about a quarter of the keys move, all of them to the new member
+		assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2, "moved " + moved);
+	}
+
+	@Test
+	void owner_DoesNotDependOnMemberOrder() {
+		// Given
+		HashRing ring = new HashRing(members("n1", "n2", "n3"), 64);
+		HashRing reordered = new HashRing(members("n3", "n1", "n2"), 64);
+
+		// When & Then
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(ring.owner("user-" + i), reordered.owner("user-" + i));
+		}
+	}
+
+	@Test
+	void constructor_RejectsEmptyMembership() {
+		assertThrows(IllegalArgumentException.class, () -> new HashRing(Map.of(), 128));
+	}
+
+	private static Map<String, URI> members(String... nodeIds) {
+		Map<String, URI> members = new LinkedHashMap<>();
+		for (int i = 0; i < nodeIds.length; i++) {
+			members.put(nodeIds[i], URI.create("http://localhost:" + (8081 + i)));
+		}
+		return members;
+	}
+}
@@ -0,0 +1,44 @@
+package com.ebra.wallet.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyKeysTest {
+
+	@Test
+	void idOf_UuidKeyIsStoredAsItsBytesAlone() {
+		// Given
+		UUID uuid = UUID.randomUUID();
+		String key = uuid.toString();
+
+		// When
+		byte[] id = IdempotencyKeys.idOf(key);
+
+		// Then
+		ByteBuffer bytes = ByteBuffer.wrap(id);
+		assertEquals(uuid, new UUID(bytes.getLong(), bytes.getLong()));
+		assertNull(IdempotencyKeys.storedFormOf(key));
+		assertEquals(key, IdempotencyKeys.keyOf(null, id));
+	}
+
+	@Test
+	void idOf_OtherKeysAreHashedAndKeptVerbatim() {
+		// Given - an uppercase UUID was a different key than its lowercase form, and stays one
+		String upper = UUID.randomUUID().toString().toUpperCase();
+		String plain = "billing-2024-03:17";
+
+		// When & Then
+		for (String key : new String[] {upper, plain}) {
+			assertEquals(IdempotencyKeys.ID_LENGTH, IdempotencyKeys.idOf(key).length);
+			assertArrayEquals(IdempotencyKeys.idOf(key), IdempotencyKeys.idOf(new String(key)));
+			assertEquals(key, IdempotencyKeys.storedFormOf(key));
+			assertEquals(key, IdempotencyKeys.keyOf(key, IdempotencyKeys.idOf(key)));
+		}
+		assertFalse(Arrays.equals(IdempotencyKeys.idOf(upper), IdempotencyKeys.idOf(upper.toLowerCase())));
+	}
+}
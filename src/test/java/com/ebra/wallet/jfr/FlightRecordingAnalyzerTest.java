@@ -0,0 +1,108 @@
+package com.ebra.wallet.jfr;
+
+import com.ebra.wallet.audit.AuditOp;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.exception.InsufficientBalanceException;
+import com.ebra.wallet.jfr.FlightRecordingAnalyzer.PhaseLatency;
+import com.ebra.wallet.jfr.WalletTrace.Phase;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecordingAnalyzerTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void summarize_ReportsPercentilesPerOperationAndPhase() throws Exception {
+		// Given
+		Path file = directory.resolve("wallet.jfr");
+		// Along with the JDK's own events, as in a real recording
+		Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+		settings.putAll(walletConfiguration().getSettings());
+		try (Recording recording = new Recording(settings)) {
+			recording.start();
+			for (int i = 0; i < 10; i++) {
+				WalletTrace trace = WalletTrace.start(AuditOp.CHARGE, "alice", new BigDecimal("5.00"));
+				WalletTrace.attempt();
+				WalletTrace.begin(Phase.WRITE);
+				Thread.sleep(1);
+				WalletTrace.end(Phase.WRITE);
+				WalletTrace.endAccountLock(WalletTrace.beginAccountLock(), TransactionType.CHARGE, "alice",
+						"PESSIMISTIC");
+				WalletTrace.finish(trace, null);
+			}
+			WalletTrace trace = WalletTrace.start(AuditOp.CHARGE, "bob", new BigDecimal("5.00"));
+			WalletTrace.endIdempotencyCheck(WalletTrace.beginIdempotencyCheck(), TransactionType.CHARGE, "bob", 42L);
+			WalletTrace.endIdempotencyCheck(WalletTrace.beginIdempotencyCheck(), TransactionType.CHARGE, "bob", null);
+			WalletTrace.finish(trace, new InsufficientBalanceException("Insufficient balance"));
+			recording.stop();
+			recording.dump(file);
+		}
+
+		// When
+		List<PhaseLatency> summary = FlightRecordingAnalyzer.summarize(file);
+
+		// Then
+		PhaseLatency write = find(summary, "Operation", "write");
+		assertEquals(11, write.count());
+		assertTrue(write.p50().compareTo(Duration.ofMillis(1)) >= 0);
+		assertTrue(write.max().compareTo(write.p99()) >= 0);
+		assertEquals(Duration.ZERO, find(summary, "Operation", "validation").max());
+		assertEquals(10, find(summary, "AccountLock", "PESSIMISTIC").count());
+		assertEquals(1, find(summary, "IdempotencyHit", "lookup").count());
+
+		List<RecordedEvent> operations = RecordingFile.readAllEvents(file).stream()
+				.filter(event -> event.getEventType().getName().equals(WalletOperationEvent.NAME))
+				.toList();
+		RecordedEvent failed = operations.get(operations.size() - 1);
+		assertEquals("INSUFFICIENT_BALANCE", failed.getString("outcome"));
+		assertEquals(WalletTrace.usernameHash("bob"), failed.getLong("usernameHash"));
+		assertEquals(1, operations.get(0).getInt("attempts"));
+		assertEquals("5.00", operations.get(0).getString("amount"));
+	}
+
+	@Test
+	void start_DoesNotTraceWithoutRecording() {
+		// When
+		WalletTrace trace = WalletTrace.start(AuditOp.TOP_UP, "alice", BigDecimal.ONE);
+
+		// Then
+		assertNull(trace);
+		assertDoesNotThrow(() -> {
+			WalletTrace.begin(Phase.COMMIT);
+			WalletTrace.end(Phase.COMMIT);
+			WalletTrace.finish(null, null);
+		});
+	}
+
+	private static Configuration walletConfiguration() throws Exception {
+		try (Reader reader = new InputStreamReader(
+				FlightRecordingAnalyzerTest.class.getResourceAsStream("/jfr/wallet.jfc"), StandardCharsets.UTF_8)) {
+			return Configuration.create(reader);
+		}
+	}
+
+	private static PhaseLatency find(List<PhaseLatency> summary, String event, String phase) {
+		return summary.stream()
+				.filter(latency -> latency.event().equals(event) && latency.phase().equals(phase))
+				.findFirst()
+				.orElseThrow(() -> new AssertionError("No " + event + " " + phase + " in " + summary));
+	}
+}
@@ -0,0 +1,56 @@
+package com.ebra.wallet.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+	@Test
+	void bucketOf_BoundsEveryValueWithinAQuarter() {
+		// When & Then
+		for (long micros = 0; micros < 100_000; micros += 7) {
+			int bucket = LatencyHistogram.bucketOf(micros);
+			long upper = LatencyHistogram.upperBoundOf(bucket);
+			assertTrue(upper > micros, "upper bound of " + micros);
+			assertTrue(upper <= Math.max(micros * 1.25, micros + 1) + 1, "resolution at " + micros);
+		}
+	}
+
+	@Test
+	void snapshot_ReportsPercentilesOfRecordedLatencies() {
+		// Given - 90 fast statements and 10 slow ones
+		LatencyHistogram histogram = new LatencyHistogram(1000, 5);
+		for (int i = 0; i < 90; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(100), 0);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(20), 0);
+		}
+
+		// When
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot(0);
+
+		// Then
+		assertEquals(100, snapshot.count());
+		assertEquals(0.1, snapshot.percentileMillis(0.50), 0.03);
+		assertEquals(20, snapshot.percentileMillis(0.95), 0.001);
+		assertEquals(2.09, snapshot.meanMillis(), 0.001);
+	}
+
+	@Test
+	void snapshot_ForgetsIntervalsThatLeftTheWindow() {
+		// Given - five one-second intervals
+		LatencyHistogram histogram = new LatencyHistogram(1000, 5);
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(50), 0);
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(1), 4_500);
+
+		// When & Then
+		assertEquals(2, histogram.snapshot(4_999).count());
+		LatencyHistogram.Snapshot later = histogram.snapshot(5_000);
+		assertEquals(1, later.count());
+		assertEquals(1, later.maxNanos() / 1_000_000);
+	}
+}
@@ -0,0 +1,38 @@
+package com.ebra.wallet.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlShapeTest {
+
+	@Test
+	void normalize_CollapsesLayoutAndLiterals() {
+		// Given
+		String sql = "select u1_0.id,\n    u1_0.balance\nfrom users u1_0\n" +
+				"where u1_0.username = 'o''brien' and u1_0.balance > 10.50  ";
+
+		// When
+		String shape = SqlShape.normalize(sql);
+
+		// Then
+		assertEquals("select u1_0.id, u1_0.balance from users u1_0 where u1_0.username = ? and u1_0.balance > ?",
+				shape);
+	}
+
+	@Test
+	void normalize_TreatsInListsOfAnyLengthAlike() {
+		// When & Then
+		assertEquals(SqlShape.normalize("select * from holds where id in (?, ?)"),
+				SqlShape.normalize("select * from holds where id in (?,?,?,?)"));
+		assertEquals("select * from holds where id in (?...)",
+				SqlShape.normalize("select * from holds where id in (1, 2, 3)"));
+	}
+
+	@Test
+	void kind_IsTheFirstKeyword() {
+		// When & Then
+		assertEquals("SELECT", SqlShape.kind("select max(id) from outbox_events"));
+		assertEquals("UPDATE", SqlShape.kind("update users set balance=?"));
+	}
+}
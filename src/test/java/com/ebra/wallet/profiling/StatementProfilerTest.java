@@ -0,0 +1,106 @@
+package com.ebra.wallet.profiling;
+
+import com.ebra.wallet.dto.RepeatedStatementReport;
+import com.ebra.wallet.dto.StatementProfileReport;
+import com.ebra.wallet.dto.StatementReport;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StatementProfilerTest {
+
+	private static final String FIND_USER = "select u.id from users u where u.username=?";
+	private static final String FIND_KEY = "select t.id from transactions t where t.idempotency_key=?";
+
+	private final StatementProfiler profiler = new StatementProfiler(true, 1.0, Duration.ofMinutes(5), 5, 3, 3);
+
+	@Test
+	void report_RanksStatementsByLatencyAndByCalls() {
+		// Given
+		for (int i = 0; i < 5; i++) {
+			profiler.record(FIND_USER, TimeUnit.MICROSECONDS.toNanos(200));
+		}
+		profiler.record(FIND_KEY + "  ", TimeUnit.MILLISECONDS.toNanos(30));
+		profiler.record(FIND_KEY, -1);
+
+		// When
+		StatementProfileReport report = profiler.report(1);
+
+		// Then
+		StatementReport slowest = report.slowest().get(0);
+		assertEquals(FIND_KEY, slowest.sql());
+		assertEquals(2, slowest.calls());
+		assertEquals(1, slowest.sampledCalls());
+		assertEquals(30, slowest.maxMillis(), 0.001);
+		assertEquals(FIND_USER, report.mostFrequent().get(0).sql());
+		assertEquals(5, report.mostFrequent().get(0).calls());
+	}
+
+	@Test
+	void endRequest_FlagsSelectsRepeatedWithinOneRequest() {
+		// Given
+		profiler.beginRequest("GET /api/wallet/holds/1");
+		for (int i = 0; i < 4; i++) {
+			profiler.record(FIND_USER, 1000);
+		}
+		profiler.record(FIND_KEY, 1000);
+		profiler.record("update users set balance=? where id=?", 1000);
+
+		// When
+		profiler.endRequest();
+
+		// Then
+		RepeatedStatementReport repeated = profiler.report(10).suspectedNPlusOne().get(0);
+		assertEquals(1, profiler.report(10).suspectedNPlusOne().size());
+		assertEquals(FIND_USER, repeated.sql());
+		assertEquals(4, repeated.maxRepetitions());
+		assertEquals("GET /api/wallet/holds/1", repeated.lastPath());
+	}
+
+	@Test
+	void record_GroupsStatementsBeyondTheLimit() {
+		// When
+		for (int i = 0; i < 5; i++) {
+			profiler.record("select * from table_" + (char) ('a' + i), 1000);
+		}
+
+		// Then
+		assertTrue(profiler.report(10).mostFrequent().stream()
+				.anyMatch(statement -> statement.sql().equals(StatementProfiler.OTHER_SHAPE) && statement.calls() == 2));
+	}
+
+	@Test
+	void profilingDataSource_RecordsPreparedStatementExecutions() throws SQLException {
+		// Given
+		DataSource target = mock(DataSource.class);
+		Connection connection = mock(Connection.class);
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(target.getConnection()).thenReturn(connection);
+		when(connection.prepareStatement(FIND_USER)).thenReturn(statement);
+		when(statement.executeQuery()).thenReturn(null);
+		DataSource dataSource = new ProfilingDataSource(target, profiler);
+
+		// When
+		try (Connection profiled = dataSource.getConnection();
+			 PreparedStatement prepared = profiled.prepareStatement(FIND_USER)) {
+			prepared.setString(1, "alice");
+			prepared.executeQuery();
+			assertSame(profiled, prepared.getConnection());
+		}
+
+		// Then
+		verify(statement).setString(1, "alice");
+		verify(statement).close();
+		verify(connection).close();
+		assertEquals(1, profiler.report(1).mostFrequent().get(0).calls());
+	}
+}
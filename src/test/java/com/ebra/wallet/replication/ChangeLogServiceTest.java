@@ -0,0 +1,86 @@
+package com.ebra.wallet.replication;
+
+import com.ebra.wallet.dto.AccountChange;
+import com.ebra.wallet.dto.ChangeBatch;
+import com.ebra.wallet.dto.LedgerChange;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeLogServiceTest {
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@InjectMocks
+	private ChangeLogService changeLogService;
+
+	@Test
+	void read_ReturnsAccountsAndLedgerAfterOffsets() {
+		// Given
+		when(userRepository.findAccountChangesAfter(eq(0L), any())).thenReturn(List.of(account(1)));
+		when(transactionRepository.findChangesAfter(eq(0L), any())).thenReturn(List.of(ledger(1, 1), ledger(2, 1)));
+		when(transactionRepository.findMaxId()).thenReturn(Optional.of(2L));
+
+		// When
+		ChangeBatch batch = changeLogService.read(0, 0, 2);
+
+		// Then
+		assertEquals(1, batch.accounts().size());
+		assertEquals(2, batch.transactions().size());
+		assertEquals(2, batch.headVersion());
+	}
+
+	@Test
+	void read_StopsBeforeLedgerRowsOfAccountsNotYetSent() {
+		// Given - the account page is full, so account 3 comes in a later batch
+		when(userRepository.findAccountChangesAfter(eq(0L), any())).thenReturn(List.of(account(1), account(2)));
+		when(transactionRepository.findChangesAfter(eq(0L), any()))
+				.thenReturn(List.of(ledger(1, 2), ledger(2, 3), ledger(3, 1)));
+		when(transactionRepository.findMaxId()).thenReturn(Optional.of(3L));
+
+		// When
+		ChangeBatch batch = changeLogService.read(0, 0, 2);
+
+		// Then
+		assertEquals(List.of(1L), batch.transactions().stream().map(LedgerChange::id).toList());
+	}
+
+	@Test
+	void read_RejectsOversizedBatch() {
+		assertThrows(IllegalArgumentException.class,
+				() -> changeLogService.read(0, 0, ChangeLogService.MAX_BATCH_SIZE + 1));
+	}
+
+	private static AccountChange account(long id) {
+		return new AccountChange(id, "user-" + id, LocalDateTime.now());
+	}
+
+	private static LedgerChange ledger(long id, long userId) {
+		return new LedgerChange(id, userId, "user-" + userId, TransactionType.TOP_UP, BigDecimal.ONE,
+				BigDecimal.ZERO, BigDecimal.ONE, "key-" + id, LocalDateTime.now());
+	}
+}
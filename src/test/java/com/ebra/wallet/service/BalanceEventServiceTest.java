@@ -0,0 +1,202 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.entity.OutboxEvent;
+import com.ebra.wallet.entity.TransactionType;
+import com.ebra.wallet.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceEventServiceTest {
+
+	@Mock
+	private OutboxEventRepository outboxEventRepository;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private BalanceEventService balanceEventService;
+
+	@AfterEach
+	void tearDown() {
+		balanceEventService.shutdown();
+	}
+
+	@Test
+	void dispatch_FansOutEachEventToEverySubscriberOfItsUser() throws Exception {
+		// Given
+		balanceEventService = balanceEventService(256, 2, 5000);
+		RecordingEmitter alice1 = new RecordingEmitter();
+		RecordingEmitter alice2 = new RecordingEmitter();
+		RecordingEmitter bob = new RecordingEmitter();
+		balanceEventService.subscribe("alice", null, alice1);
+		balanceEventService.subscribe("alice", null, alice2);
+		balanceEventService.subscribe("bob", null, bob);
+		startDispatcherAt(0);
+		when(outboxEventRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any()))
+				.thenReturn(List.of(event(1, "alice"), event(2, "bob"), event(3, "alice")));
+
+		// When
+		balanceEventService.dispatch();
+
+		// Then
+		assertEquals(List.of("1", "3"), alice1.take(2));
+		assertEquals(List.of("1", "3"), alice2.take(2));
+		assertEquals(List.of("2"), bob.take(1));
+		assertNull(bob.sent.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void closeStalledSubscribers_DisconnectsBlockedSubscriberAndKeepsOthersFlowing() throws Exception {
+		// Given - one sender thread, blocked in a write to a client that stopped reading
+		balanceEventService = balanceEventService(256, 1, 0);
+		BlockingEmitter stuck = new BlockingEmitter();
+		RecordingEmitter healthy = new RecordingEmitter();
+		balanceEventService.subscribe("alice", null, stuck);
+		balanceEventService.subscribe("alice", null, healthy);
+		startDispatcherAt(0);
+		when(outboxEventRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any()))
+				.thenReturn(List.of(event(1, "alice")));
+		when(outboxEventRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), any()))
+				.thenReturn(List.of(event(2, "alice")));
+		balanceEventService.dispatch();
+		assertTrue(stuck.entered.await(5, TimeUnit.SECONDS));
+
+		// When
+		balanceEventService.closeStalledSubscribers();
+		balanceEventService.dispatch();
+
+		// Then
+		assertEquals(List.of("1", "2"), healthy.take(2));
+		assertEquals(1, registry.get("wallet.events.slow.disconnects").counter().count());
+		assertEquals(1, registry.get("wallet.events.senders.stalled").gauge().value());
+		assertFalse(stuck.completed);
+
+		stuck.release.countDown();
+		awaitTrue(() -> registry.get("wallet.events.senders.stalled").gauge().value() == 0);
+		awaitTrue(() -> stuck.completed);
+		assertEquals(1, registry.get("wallet.events.subscribers").gauge().value());
+	}
+
+	@Test
+	void dispatch_DisconnectsSubscriberWhoseBufferOverflowsWithoutWaitingForItsWrite() throws Exception {
+		// Given
+		balanceEventService = balanceEventService(1, 1, 5000);
+		BlockingEmitter stuck = new BlockingEmitter();
+		balanceEventService.subscribe("alice", null, stuck);
+		startDispatcherAt(0);
+		when(outboxEventRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any()))
+				.thenReturn(List.of(event(1, "alice")));
+		when(outboxEventRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), any()))
+				.thenReturn(List.of(event(2, "alice"), event(3, "alice")));
+		balanceEventService.dispatch();
+		assertTrue(stuck.entered.await(5, TimeUnit.SECONDS));
+
+		// When & Then
+		assertTimeoutPreemptively(Duration.ofSeconds(5), balanceEventService::dispatch);
+		assertEquals(1, registry.get("wallet.events.slow.disconnects").counter().count());
+		assertEquals(0, registry.get("wallet.events.subscribers").gauge().value());
+		stuck.release.countDown();
+		awaitTrue(() -> stuck.completed);
+	}
+
+	private BalanceEventService balanceEventService(int bufferSize, int senderThreads, long sendTimeoutMillis) {
+		return new BalanceEventService(outboxEventRepository, new ObjectMapper().findAndRegisterModules(), registry,
+				500, bufferSize, senderThreads, 60_000, sendTimeoutMillis, Duration.ofHours(1));
+	}
+
+	// The first dispatch only records the outbox head
+	private void startDispatcherAt(long head) {
+		when(outboxEventRepository.findMaxId()).thenReturn(Optional.of(head));
+		balanceEventService.dispatch();
+	}
+
+	private static OutboxEvent event(long id, String username) {
+		OutboxEvent event = new OutboxEvent();
+		event.setId(id);
+		event.setUsername(username);
+		event.setTransactionId(id);
+		event.setType(TransactionType.CHARGE);
+		event.setAmount(BigDecimal.ONE);
+		event.setBalanceAfter(BigDecimal.TEN);
+		event.setCreatedAt(LocalDateTime.now());
+		return event;
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("Condition not met within 5 seconds");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	// Holds the emitter's lock while writing, as the real one does
+	private static class RecordingEmitter extends SseEmitter {
+		final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+		volatile boolean completed;
+
+		@Override
+		public synchronized void send(SseEventBuilder event) {
+			String text = event.build().stream()
+					.map(data -> data.getData().toString())
+					.collect(Collectors.joining());
+			sent.add(text.substring(text.indexOf("id:") + 3, text.indexOf('\n', text.indexOf("id:"))));
+		}
+
+		@Override
+		public synchronized void complete() {
+			completed = true;
+		}
+
+		List<String> take(int count) throws InterruptedException {
+			List<String> ids = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				String id = sent.poll(5, TimeUnit.SECONDS);
+				assertNotNull(id, "Expected " + count + " events, got " + ids);
+				ids.add(id);
+			}
+			return ids;
+		}
+	}
+
+	private static class BlockingEmitter extends RecordingEmitter {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public synchronized void send(SseEventBuilder event) {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
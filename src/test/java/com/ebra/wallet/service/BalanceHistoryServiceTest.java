@@ -0,0 +1,129 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.dto.BalanceQuery;
+import com.ebra.wallet.dto.LedgerPoint;
+import com.ebra.wallet.dto.PointInTimeBalance;
+import com.ebra.wallet.exception.UserNotFoundException;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceHistoryServiceTest {
+
+	private static final LocalDateTime DAY = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private BalanceHistoryService balanceHistoryService;
+
+	@BeforeEach
+	void setUp() {
+		balanceHistoryService = new BalanceHistoryService(userRepository, transactionRepository, transactionManager);
+	}
+
+	@Test
+	void getBalanceAt_ReturnsBalanceAfterLastTransactionAtOrBefore() {
+		// Given
+		when(transactionRepository.findLedgerPointsUpTo(eq("alice"), eq(DAY.plusHours(12)), any()))
+				.thenReturn(List.of(point(5L, DAY.plusHours(9), "40.00")));
+
+		// When
+		PointInTimeBalance balance = balanceHistoryService.getBalanceAt("alice", DAY.plusHours(12));
+
+		// Then
+		assertEquals(new BigDecimal("40.00"), balance.balance());
+		assertEquals(5L, balance.transactionId());
+		verify(transactionRepository, never()).streamLedgerPointsBetween(any(), any(), any());
+	}
+
+	@Test
+	void getBalanceAt_ZeroBeforeFirstTransaction() {
+		// Given
+		when(transactionRepository.findLedgerPointsUpTo(eq("alice"), any(), any())).thenReturn(List.of());
+		when(userRepository.existsByUsername("alice")).thenReturn(true);
+
+		// When
+		PointInTimeBalance balance = balanceHistoryService.getBalanceAt("alice", DAY);
+
+		// Then
+		assertEquals(BigDecimal.ZERO, balance.balance());
+		assertNull(balance.transactionId());
+	}
+
+	@Test
+	void getBalanceAt_UnknownUser() {
+		// Given
+		when(transactionRepository.findLedgerPointsUpTo(eq("nobody"), any(), any())).thenReturn(List.of());
+		when(userRepository.existsByUsername("nobody")).thenReturn(false);
+
+		// When & Then
+		assertThrows(UserNotFoundException.class, () -> balanceHistoryService.getBalanceAt("nobody", DAY));
+	}
+
+	@Test
+	void getBalancesAt_AnswersEachAccountInOnePassInRequestOrder() {
+		// Given - alice asked at 18:00, 01:00 and 10:00; ledger rows at 02:00 and 10:00
+		when(transactionRepository.findLedgerPointsUpTo(eq("alice"), eq(DAY.plusHours(1)), any()))
+				.thenReturn(List.of());
+		when(userRepository.existsByUsername("alice")).thenReturn(true);
+		when(transactionRepository.streamLedgerPointsBetween("alice", DAY.plusHours(1), DAY.plusHours(18)))
+				.thenReturn(Stream.of(point(1L, DAY.plusHours(2), "10.00"), point(2L, DAY.plusHours(10), "25.00")));
+		when(transactionRepository.findLedgerPointsUpTo(eq("bob"), eq(DAY), any()))
+				.thenReturn(List.of(point(3L, DAY.minusDays(1), "7.00")));
+
+		// When
+		List<PointInTimeBalance> balances = balanceHistoryService.getBalancesAt(List.of(
+				new BalanceQuery("alice", DAY.plusHours(18)),
+				new BalanceQuery("bob", DAY),
+				new BalanceQuery("alice", DAY.plusHours(1)),
+				new BalanceQuery("alice", DAY.plusHours(10))));
+
+		// Then
+		assertEquals(List.of("alice", "bob", "alice", "alice"),
+				balances.stream().map(PointInTimeBalance::username).toList());
+		assertEquals(new BigDecimal("25.00"), balances.get(0).balance());
+		assertEquals(new BigDecimal("7.00"), balances.get(1).balance());
+		assertEquals(BigDecimal.ZERO, balances.get(2).balance());
+		assertEquals(2L, balances.get(3).transactionId());
+		verify(transactionRepository, times(1)).streamLedgerPointsBetween(any(), any(), any());
+	}
+
+	@Test
+	void getBalancesAt_RejectsOversizedBatch() {
+		// Given
+		List<BalanceQuery> queries = Collections.nCopies(BalanceHistoryService.MAX_BATCH_SIZE + 1,
+				new BalanceQuery("alice", DAY));
+
+		// When & Then
+		assertThrows(IllegalArgumentException.class, () -> balanceHistoryService.getBalancesAt(queries));
+		verifyNoInteractions(transactionRepository);
+	}
+
+	private static LedgerPoint point(Long id, LocalDateTime createdAt, String balance) {
+		return new LedgerPoint(id, createdAt, new BigDecimal(balance));
+	}
+}
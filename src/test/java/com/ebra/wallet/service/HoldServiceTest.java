@@ -0,0 +1,221 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.audit.AuditLog;
+import com.ebra.wallet.dto.ExpiringHold;
+import com.ebra.wallet.dto.HoldExpiry;
+import com.ebra.wallet.dto.HoldResponse;
+import com.ebra.wallet.entity.Hold;
+import com.ebra.wallet.entity.HoldStatus;
+import com.ebra.wallet.entity.Transaction;
+import com.ebra.wallet.entity.User;
+import com.ebra.wallet.exception.HoldNotActiveException;
+import com.ebra.wallet.exception.InsufficientBalanceException;
+import com.ebra.wallet.repository.AccountBalance;
+import com.ebra.wallet.repository.HoldRepository;
+import com.ebra.wallet.repository.OutboxEventRepository;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import com.ebra.wallet.velocity.VelocityLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HoldServiceTest {
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private HoldRepository holdRepository;
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@Mock
+	private OutboxEventRepository outboxEventRepository;
+
+	@Mock
+	private WalletService walletService;
+
+	@Mock
+	private AuditLog auditLog;
+
+	@Mock
+	private VelocityLimiter velocityLimiter;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private HoldService holdService;
+	private User testUser;
+	private final String TEST_USERNAME = "testuser";
+
+	@BeforeEach
+	void setUp() {
+		holdService = new HoldService(userRepository, holdRepository, transactionRepository, outboxEventRepository,
+				walletService, auditLog, velocityLimiter, transactionManager, new SimpleMeterRegistry(),
+				Duration.ofDays(7), Duration.ofDays(30), 1, 500);
+		testUser = new User(TEST_USERNAME);
+		testUser.setId(1L);
+		// Audited mutations run as if there were no audit log
+		lenient().when(auditLog.audit(any(), any(), any(), any()))
+				.thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+	}
+
+	@Test
+	void hold_ReservesAvailableFunds() {
+		// Given
+		BigDecimal amount = new BigDecimal("40.00");
+		when(userRepository.holdBalance(eq(TEST_USERNAME), eq(amount), any())).thenReturn(1);
+		when(userRepository.findBalanceByUsername(TEST_USERNAME))
+				.thenReturn(Optional.of(balance(new BigDecimal("100.00"), amount)));
+		when(userRepository.getReferenceById(1L)).thenReturn(testUser);
+		when(holdRepository.save(any(Hold.class))).thenAnswer(invocation -> {
+			Hold hold = invocation.getArgument(0);
+			hold.setId(7L);
+			return hold;
+		});
+
+		// When
+		HoldResponse response = holdService.hold(TEST_USERNAME, amount, "hold-1", null);
+
+		// Then
+		assertEquals(7L, response.id());
+		assertEquals(HoldStatus.ACTIVE, response.status());
+		assertTrue(response.expiresAt().isAfter(LocalDateTime.now().plusDays(6)));
+		verify(walletService).invalidateReads(TEST_USERNAME);
+	}
+
+	@Test
+	void hold_InsufficientAvailableBalance() {
+		// Given - 100.00 balance with 80.00 already held
+		when(userRepository.holdBalance(eq(TEST_USERNAME), any(), any())).thenReturn(0);
+		when(userRepository.findBalanceByUsername(TEST_USERNAME))
+				.thenReturn(Optional.of(balance(new BigDecimal("100.00"), new BigDecimal("80.00"))));
+
+		// When & Then
+		InsufficientBalanceException exception = assertThrows(InsufficientBalanceException.class,
+				() -> holdService.hold(TEST_USERNAME, new BigDecimal("30.00"), "hold-1", null));
+		assertTrue(exception.getMessage().contains("Available balance: 20.00"));
+		verify(holdRepository, never()).save(any());
+	}
+
+	@Test
+	void hold_RejectsLifetimeAboveMaximum() {
+		// When & Then
+		assertThrows(IllegalArgumentException.class,
+				() -> holdService.hold(TEST_USERNAME, BigDecimal.TEN, "hold-1", Duration.ofDays(31)));
+		verifyNoInteractions(userRepository, holdRepository);
+	}
+
+	@Test
+	void capture_ChargesPartOfHoldAndReleasesTheRest() {
+		// Given
+		Hold hold = activeHold(new BigDecimal("40.00"));
+		when(holdRepository.findWithUserById(7L)).thenReturn(Optional.of(hold));
+		when(holdRepository.resolve(eq(7L), eq(HoldStatus.CAPTURED), eq(new BigDecimal("25.00")), any()))
+				.thenReturn(1);
+		when(userRepository.findBalanceByUsername(TEST_USERNAME))
+				.thenReturn(Optional.of(balance(new BigDecimal("75.00"), BigDecimal.ZERO)));
+		when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> {
+			Transaction transaction = invocation.getArgument(0);
+			transaction.setId(9L);
+			return transaction;
+		});
+
+		// When
+		holdService.capture(7L, new BigDecimal("25.00"), "capture-1");
+
+		// Then
+		verify(userRepository).settleHold(eq(1L), eq(new BigDecimal("25.00")), eq(new BigDecimal("40.00")), any());
+		verify(transactionRepository).save(argThat(transaction ->
+				transaction.getBalanceBefore().compareTo(new BigDecimal("100.00")) == 0
+						&& transaction.getBalanceAfter().compareTo(new BigDecimal("75.00")) == 0));
+		verify(outboxEventRepository).save(any());
+		verify(velocityLimiter).record(TEST_USERNAME, 9L, new BigDecimal("25.00"));
+	}
+
+	@Test
+	void capture_RejectsSettledHold() {
+		// Given
+		Hold hold = activeHold(new BigDecimal("40.00"));
+		hold.setStatus(HoldStatus.RELEASED);
+		when(holdRepository.findWithUserById(7L)).thenReturn(Optional.of(hold));
+
+		// When & Then
+		assertThrows(HoldNotActiveException.class, () -> holdService.capture(7L, null, "capture-1"));
+		verify(userRepository, never()).settleHold(anyLong(), any(), any(), any());
+		verify(transactionRepository, never()).save(any());
+	}
+
+	@Test
+	void expireDueHolds_ReleasesEachUsersHoldsInOneUpdate() throws InterruptedException {
+		// Given - three expired holds of one user, one captured meanwhile
+		when(holdRepository.findExpiredAmong(anyCollection(), any())).thenReturn(List.of(
+				new ExpiringHold(1L, 1L, TEST_USERNAME, new BigDecimal("10.00")),
+				new ExpiringHold(2L, 1L, TEST_USERNAME, new BigDecimal("15.00")),
+				new ExpiringHold(3L, 1L, TEST_USERNAME, new BigDecimal("20.00"))));
+		when(holdRepository.resolve(anyLong(), eq(HoldStatus.EXPIRED), isNull(), any())).thenReturn(1, 1, 0);
+		scheduleExpiry(1L, 2L, 3L);
+		Thread.sleep(5);
+
+		// When
+		holdService.expireDueHolds();
+
+		// Then
+		verify(userRepository).settleHold(eq(1L), eq(BigDecimal.ZERO), eq(new BigDecimal("25.00")), any());
+		verify(walletService).invalidateReads(TEST_USERNAME);
+	}
+
+	private void scheduleExpiry(Long... ids) {
+		LocalDateTime now = LocalDateTime.now();
+		when(holdRepository.findActiveExpiriesAfter(eq(0L), any()))
+				.thenReturn(Arrays.stream(ids).map(id -> new HoldExpiry(id, now)).toList());
+		holdService.loadActiveHolds();
+	}
+
+	private Hold activeHold(BigDecimal amount) {
+		Hold hold = new Hold(testUser, amount, "hold-1", LocalDateTime.now().plusHours(1));
+		hold.setId(7L);
+		return hold;
+	}
+
+	private AccountBalance balance(BigDecimal balance, BigDecimal held) {
+		return new AccountBalance() {
+			@Override
+			public Long getId() {
+				return 1L;
+			}
+
+			@Override
+			public BigDecimal getBalance() {
+				return balance;
+			}
+
+			@Override
+			public BigDecimal getHeldBalance() {
+				return held;
+			}
+		};
+	}
+}
@@ -0,0 +1,105 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.entity.IdempotencyKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyKeyMigrationTest {
+
+	// As created by versions that stored the key as text
+	private static final String LEGACY_TABLE = """
+			CREATE TABLE transactions (
+			        id integer,
+			        amount numeric(19,2) not null,
+			        balance_after numeric(19,2) not null,
+			        balance_before numeric(19,2) not null,
+			        created_at timestamp not null,
+			        idempotency_key varchar(255) not null unique,
+			        type varchar(255) not null check (type in ('TOP_UP','CHARGE')),
+			        user_id bigint not null,
+			        primary key (id)
+			    )""";
+
+	@TempDir
+	Path directory;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private IdempotencyKeyMigration migration;
+
+	@BeforeEach
+	void setUp() {
+		SQLiteDataSource dataSource = new SQLiteDataSource();
+		dataSource.setUrl("jdbc:sqlite:" + directory.resolve("wallet.db"));
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		migration = new IdempotencyKeyMigration(jdbcTemplate, new DataSourceTransactionManager(dataSource), 2);
+	}
+
+	@Test
+	void migrate_RebuildsLegacyTableAndConvertsRowsInBatches() {
+		// Given
+		jdbcTemplate.execute(LEGACY_TABLE);
+		jdbcTemplate.execute("ALTER TABLE transactions ADD COLUMN idempotency_id blob");
+		jdbcTemplate.execute("CREATE INDEX idx_transactions_user_created_at ON transactions (user_id, created_at)");
+		String uuid = UUID.randomUUID().toString();
+		List<String> keys = List.of(uuid, uuid.toUpperCase(), "import:alice", "legacy-key");
+		for (int i = 0; i < keys.size(); i++) {
+			jdbcTemplate.update("INSERT INTO transactions (id, amount, balance_after, balance_before, created_at, "
+					+ "idempotency_key, type, user_id) VALUES (?, 1, 1, 0, 0, ?, 'TOP_UP', 1)", i + 1, keys.get(i));
+		}
+
+		// When
+		migration.migrate();
+
+		// Then
+		List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+				"SELECT idempotency_key, idempotency_id FROM transactions ORDER BY id");
+		for (int i = 0; i < keys.size(); i++) {
+			String stored = (String) rows.get(i).get("idempotency_key");
+			byte[] id = (byte[]) rows.get(i).get("idempotency_id");
+			assertArrayEquals(IdempotencyKeys.idOf(keys.get(i)), id);
+			assertEquals(keys.get(i), IdempotencyKeys.keyOf(stored, id));
+		}
+		assertNull(rows.get(0).get("idempotency_key"));
+		assertEquals(List.of("idx_transactions_user_created_at", "ux_transactions_idempotency_id"), indexes());
+		// A UUID key no longer needs its text
+		byte[] next = IdempotencyKeys.idOf(UUID.randomUUID().toString());
+		assertDoesNotThrow(() -> jdbcTemplate.update("INSERT INTO transactions (id, amount, balance_after, "
+				+ "balance_before, created_at, idempotency_key, idempotency_id, type, user_id) "
+				+ "VALUES (5, 1, 1, 0, 0, NULL, ?, 'TOP_UP', 1)", (Object) next));
+	}
+
+	@Test
+	void migrate_OnlyIndexesCompactTable() {
+		// Given - a table as created by this version, already holding a converted row
+		jdbcTemplate.execute(LEGACY_TABLE.replace("not null unique", "").replace("user_id bigint not null",
+				"user_id bigint not null, idempotency_id blob"));
+		jdbcTemplate.update("INSERT INTO transactions (id, amount, balance_after, balance_before, created_at, "
+				+ "idempotency_id, type, user_id) VALUES (1, 1, 1, 0, 0, ?, 'TOP_UP', 1)",
+				(Object) IdempotencyKeys.idOf(UUID.randomUUID().toString()));
+
+		// When
+		migration.migrate();
+		migration.migrate();
+
+		// Then
+		assertEquals(List.of("ux_transactions_idempotency_id"), indexes());
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM transactions", Integer.class));
+	}
+
+	private List<String> indexes() {
+		return jdbcTemplate.queryForList("SELECT name FROM sqlite_master WHERE type = 'index' "
+				+ "AND tbl_name = 'transactions' ORDER BY name", String.class);
+	}
+}
@@ -0,0 +1,84 @@
+package com.ebra.wallet.service;
+
+import com.ebra.wallet.service.ImportRecordReader.ImportRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportRecordReaderTest {
+
+	@Test
+	void next_ReadsCsvSkippingHeaderAndBlankLines() throws IOException {
+		// Given
+		String csv = "username,balance\nalice,10.5\n\n bob ,\ncarol\n";
+
+		// When
+		List<ImportRecord> records = readAll(csv, ImportFormat.CSV);
+
+		// Then
+		assertEquals(3, records.size());
+		assertEquals(new ImportRecord("alice", new BigDecimal("10.50")), records.get(0));
+		assertEquals(new ImportRecord("bob", new BigDecimal("0.00")), records.get(1));
+		assertEquals(new ImportRecord("carol", new BigDecimal("0.00")), records.get(2));
+	}
+
+	@Test
+	void next_ReadsFirstCsvRowWhoseUsernameStartsWithUsername() throws IOException {
+		// When
+		List<ImportRecord> records = readAll("username1,10.00\nbob,1\n", ImportFormat.CSV);
+
+		// Then
+		assertEquals(List.of(new ImportRecord("username1", new BigDecimal("10.00")),
+				new ImportRecord("bob", new BigDecimal("1.00"))), records);
+	}
+
+	@Test
+	void next_MarksUnparseableCsvRowsInvalid() throws IOException {
+		// When
+		List<ImportRecord> records = readAll("alice,abc\n,5\nbob,-1\ncarol,1.001\n", ImportFormat.CSV);
+
+		// Then
+		assertEquals(4, records.size());
+		assertTrue(records.stream().noneMatch(ImportRecord::isValid));
+	}
+
+	@Test
+	void next_ReadsNdjson() throws IOException {
+		// Given
+		String ndjson = "{\"username\": \"alice\", \"balance\": 12.25}\n" +
+				"{\"username\": \"bob\", \"balance\": \"3\"}\n" +
+				"{\"username\": \"carol\"}\n" +
+				"{\"balance\": 1}\n" +
+				"not json\n";
+
+		// When
+		List<ImportRecord> records = readAll(ndjson, ImportFormat.NDJSON);
+
+		// Then
+		assertEquals(5, records.size());
+		assertEquals(new ImportRecord("alice", new BigDecimal("12.25")), records.get(0));
+		assertEquals(new ImportRecord("bob", new BigDecimal("3.00")), records.get(1));
+		assertEquals(new ImportRecord("carol", new BigDecimal("0.00")), records.get(2));
+		assertFalse(records.get(3).isValid());
+		assertFalse(records.get(4).isValid());
+	}
+
+	private static List<ImportRecord> readAll(String input, ImportFormat format) throws IOException {
+		ImportRecordReader reader = new ImportRecordReader(new BufferedReader(new StringReader(input)), format,
+				new ObjectMapper());
+		List<ImportRecord> records = new ArrayList<>();
+		ImportRecord record;
+		while ((record = reader.next()) != null) {
+			records.add(record);
+		}
+		return records;
+	}
+}
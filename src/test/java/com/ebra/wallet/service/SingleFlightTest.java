@@ -0,0 +1,106 @@
+package com.ebra.wallet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+	private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>(16);
+
+	@Test
+	void load_ConcurrentCallersShareOneLoad() throws Exception {
+		// Given
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoader = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			Future<Integer> leader = executor.submit(() -> singleFlight.load("alice", () -> {
+				loads.incrementAndGet();
+				loaderStarted.countDown();
+				await(releaseLoader);
+				return 42;
+			}));
+			assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+			// When
+			Future<Integer> follower = executor.submit(() -> singleFlight.load("alice", () -> {
+				loads.incrementAndGet();
+				return -1;
+			}));
+			waitUntil(() -> singleFlight.coalescedCount() == 1);
+			releaseLoader.countDown();
+
+			// Then
+			assertEquals(42, leader.get(5, TimeUnit.SECONDS));
+			assertEquals(42, follower.get(5, TimeUnit.SECONDS));
+			assertEquals(1, loads.get());
+			assertEquals(1, singleFlight.executedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void load_DoesNotJoinLoadStartedBeforeCompletedWrite() throws Exception {
+		// Given
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoader = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<Integer> stale = executor.submit(() -> singleFlight.load("alice", () -> {
+				loaderStarted.countDown();
+				await(releaseLoader);
+				return 1;
+			}));
+			assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+			// When - a write completes while the first load is still running
+			singleFlight.invalidate("alice");
+			Integer fresh = singleFlight.load("alice", () -> 2);
+			releaseLoader.countDown();
+
+			// Then
+			assertEquals(2, fresh);
+			assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+			assertEquals(0, singleFlight.coalescedCount());
+			assertEquals(2, singleFlight.executedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void load_SharesExceptionsAndDoesNotCacheThem() {
+		// When & Then
+		assertThrows(IllegalStateException.class, () -> singleFlight.load("alice", () -> {
+			throw new IllegalStateException("boom");
+		}));
+		assertEquals(7, singleFlight.load("alice", () -> 7));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+}
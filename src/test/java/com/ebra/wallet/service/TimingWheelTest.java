@@ -0,0 +1,96 @@
+package com.ebra.wallet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+	private static final long TICK = 10;
+
+	@Test
+	void advance_ReturnsIdsOnlyOnceTheirDeadlinePassed() {
+		// Given
+		TimingWheel wheel = new TimingWheel(TICK, 3, 1_000);
+		wheel.add(1L, 1_055);
+		wheel.add(2L, 1_060);
+
+		// When & Then
+		assertEquals(List.of(), wheel.advance(1_050));
+		assertEquals(List.of(1L, 2L), wheel.advance(1_060));
+		assertEquals(List.of(), wheel.advance(2_000));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	void advance_CascadesDistantDeadlinesDownToTheirTick() {
+		// Given - beyond level 0 (64 ticks) and level 1 (4096 ticks)
+		TimingWheel wheel = new TimingWheel(TICK, 3, 0);
+		wheel.add(1L, 700);
+		wheel.add(2L, 50_005);
+
+		// When
+		List<Long> dueAt = new ArrayList<>();
+		long firstDueAt = -1;
+		long secondDueAt = -1;
+		for (long now = 0; now <= 60_000; now += TICK) {
+			for (Long id : wheel.advance(now)) {
+				dueAt.add(id);
+				if (id == 1L) {
+					firstDueAt = now;
+				} else {
+					secondDueAt = now;
+				}
+			}
+		}
+
+		// Then
+		assertEquals(List.of(1L, 2L), dueAt);
+		assertEquals(700, firstDueAt);
+		assertEquals(50_010, secondDueAt);
+	}
+
+	@Test
+	void advance_LargeJumpReturnsEverythingDue() {
+		// Given
+		TimingWheel wheel = new TimingWheel(TICK, 2, 0);
+		for (long id = 1; id <= 100; id++) {
+			wheel.add(id, id * 300);
+		}
+
+		// When
+		List<Long> due = wheel.advance(15_000);
+
+		// Then
+		assertEquals(50, due.size());
+		assertTrue(due.stream().allMatch(id -> id * 300 <= 15_000));
+		assertEquals(50, wheel.size());
+	}
+
+	@Test
+	void add_DeadlineBeyondTopLevelIsParkedUntilDue() {
+		// Given - two levels cover 4096 ticks
+		TimingWheel wheel = new TimingWheel(TICK, 2, 0);
+		wheel.add(1L, 100_000);
+
+		// When & Then
+		assertEquals(List.of(), wheel.advance(99_990));
+		assertEquals(List.of(1L), wheel.advance(100_000));
+	}
+
+	@Test
+	void add_PastDeadlineIsDueOnNextAdvance() {
+		// Given
+		TimingWheel wheel = new TimingWheel(TICK, 2, 5_000);
+
+		// When
+		wheel.add(1L, 1_000);
+
+		// Then
+		assertEquals(1, wheel.size());
+		assertEquals(List.of(1L), wheel.advance(5_000));
+	}
+}
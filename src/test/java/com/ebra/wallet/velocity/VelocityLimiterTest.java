@@ -0,0 +1,165 @@
+package com.ebra.wallet.velocity;
+
+import com.ebra.wallet.dto.RecentCharge;
+import com.ebra.wallet.exception.VelocityLimitExceededException;
+import com.ebra.wallet.repository.TransactionRepository;
+import com.ebra.wallet.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VelocityLimiterTest {
+
+	private static final Duration BUCKET = Duration.ofMinutes(30);
+
+	private final AtomicLong now = new AtomicLong(Duration.ofDays(20_000).toMillis());
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private VelocityLimiter limiter;
+
+	@BeforeEach
+	void setUp() {
+		// 3 charges and 100.00 per 24h by default; premium is more generous
+		Map<String, VelocityLimits> tiers = new LinkedHashMap<>();
+		tiers.put("standard", new VelocityLimits(3, new BigDecimal("100.00")));
+		tiers.put("premium", new VelocityLimits(10, new BigDecimal("1000.00")));
+		limiter = new VelocityLimiter(userRepository, transactionRepository, transactionManager,
+				new SimpleMeterRegistry(), true, Duration.ofHours(24), BUCKET, tiers, "standard", now::get);
+		lenient().when(transactionRepository.findChargesSince(anyString(), any())).thenReturn(List.of());
+		lenient().when(userRepository.findVelocityTierByUsername(anyString())).thenReturn(Optional.empty());
+		lenient().when(userRepository.existsByUsername(anyString())).thenReturn(true);
+	}
+
+	@Test
+	void reserve_RejectsChargesBeyondTheCountLimit() {
+		// Given
+		limiter.reserve("alice", BigDecimal.ONE);
+		limiter.reserve("alice", BigDecimal.ONE);
+		limiter.reserve("alice", BigDecimal.ONE);
+
+		// When & Then
+		VelocityLimitExceededException ex = assertThrows(VelocityLimitExceededException.class,
+				() -> limiter.reserve("alice", BigDecimal.ONE));
+		assertTrue(ex.getRetryAfterSeconds() > Duration.ofHours(23).toSeconds());
+		assertDoesNotThrow(() -> limiter.reserve("bob", BigDecimal.ONE));
+	}
+
+	@Test
+	void reserve_RejectsChargeBeyondTheAmountLimitAndCancelGivesItBack() {
+		// Given
+		VelocityReservation first = limiter.reserve("alice", new BigDecimal("60.00"));
+
+		// When & Then
+		assertThrows(VelocityLimitExceededException.class, () -> limiter.reserve("alice", new BigDecimal("40.01")));
+		first.cancel();
+		first.cancel();
+		assertDoesNotThrow(() -> limiter.reserve("alice", new BigDecimal("100.00")));
+		assertEquals(1, limiter.getUsage("alice").charges());
+	}
+
+	@Test
+	void reserve_ChargesLeaveTheWindowWithTheirBucket() {
+		// Given
+		limiter.reserve("alice", new BigDecimal("100.00"));
+		now.addAndGet(Duration.ofHours(12).toMillis());
+
+		// When & Then - still inside 24h, then one bucket past it
+		assertThrows(VelocityLimitExceededException.class, () -> limiter.reserve("alice", BigDecimal.ONE));
+		now.addAndGet(Duration.ofHours(12).plus(BUCKET).toMillis());
+		assertDoesNotThrow(() -> limiter.reserve("alice", new BigDecimal("100.00")));
+	}
+
+	@Test
+	void reserve_LoadsMissingWindowFromLedgerWithTier() {
+		// Given - 900.00 charged an hour ago on a premium account
+		when(transactionRepository.findChargesSince(eq("carol"), any())).thenReturn(List.of(
+				new RecentCharge(41L, "carol", "premium", hoursAgo(1), new BigDecimal("900.00"))));
+
+		// When & Then
+		assertThrows(VelocityLimitExceededException.class, () -> limiter.reserve("carol", new BigDecimal("100.01")));
+		assertDoesNotThrow(() -> limiter.reserve("carol", new BigDecimal("100.00")));
+		assertEquals("premium", limiter.getUsage("carol").tier());
+	}
+
+	@Test
+	void rebuild_CountsRecentChargesOnly() {
+		// Given - two charges inside the window, then an old one that ends the walk
+		when(transactionRepository.findChargesBefore(eq(Long.MAX_VALUE), any())).thenReturn(List.of(
+				new RecentCharge(3L, "alice", null, hoursAgo(1), new BigDecimal("50.00")),
+				new RecentCharge(2L, "alice", null, hoursAgo(2), new BigDecimal("40.00")),
+				new RecentCharge(1L, "alice", null, hoursAgo(30), new BigDecimal("999.00"))));
+
+		// When
+		limiter.rebuild();
+
+		// Then
+		assertEquals(new BigDecimal("90.00"), limiter.getUsage("alice").amount());
+		verify(transactionRepository, never()).findChargesSince(anyString(), any());
+		// A capture committed after the rebuild is counted, one read by it is not
+		limiter.record("alice", 3L, new BigDecimal("50.00"));
+		limiter.record("alice", 4L, new BigDecimal("5.00"));
+		assertEquals(new BigDecimal("95.00"), limiter.getUsage("alice").amount());
+	}
+
+	@Test
+	void evictIdle_DropsWindowsWithNothingLeftInside() {
+		// Given
+		limiter.reserve("alice", BigDecimal.ONE);
+		limiter.reserve("bob", BigDecimal.ONE).cancel();
+
+		// When
+		limiter.evictIdle();
+
+		// Then
+		assertEquals(1, limiter.trackedUsers());
+		now.addAndGet(Duration.ofHours(25).toMillis());
+		limiter.evictIdle();
+		assertEquals(0, limiter.trackedUsers());
+	}
+
+	@Test
+	void parseTiers_ReadsConfiguredLimits() {
+		// When
+		Map<String, VelocityLimits> tiers = VelocityLimiter.parseTiers("standard=50/5000.00, premium=500/50000");
+
+		// Then
+		assertEquals(List.of("standard", "premium"), List.copyOf(tiers.keySet()));
+		assertEquals(new VelocityLimits(50, new BigDecimal("5000.00")), tiers.get("standard"));
+		assertThrows(IllegalArgumentException.class, () -> VelocityLimiter.parseTiers("standard=50"));
+	}
+
+	private LocalDateTime hoursAgo(long hours) {
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(now.get() - Duration.ofHours(hours).toMillis()),
+				ZoneId.systemDefault());
+	}
+}